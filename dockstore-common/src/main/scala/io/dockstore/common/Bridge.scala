@@ -33,15 +33,31 @@ import scala.util.{Failure, Success, Try}
 /**
   * This exposes the Cromwell methods in an easier way to access from Java
   * until wdltool is released to artifactory.
+  *
+  * Methods that take a namespace work entirely in memory: load the main descriptor with loadWithSecondaryFiles,
+  * which resolves imports from the secondary files and http(s) urls, and nothing touches the filesystem.
   */
 class Bridge(basePath : String) {
-  var secondaryWdlFiles = new util.HashMap[String, String]()
+  var secondaryWdlFiles: util.Map[String, String] = new util.HashMap[String, String]()
   val bridgeHelper = new BridgeHelper()
 
-  def setSecondaryFiles(secondaryFiles: util.HashMap[String, String]): Unit = {
+  /**
+    * For resolving imports from the secondary files only, see loadWithSecondaryFiles
+    */
+  def this() = this(null)
+
+  def setSecondaryFiles(secondaryFiles: util.Map[String, String]): Unit = {
     secondaryWdlFiles = secondaryFiles
   }
 
+  /**
+    * Loads a workflow from the content of its main descriptor, resolving imports from the secondary files and http(s) urls
+    */
+  @throws(classOf[WdlParser.SyntaxError])
+  def loadWithSecondaryFiles(content: String): WdlNamespaceWithWorkflow = {
+    WdlNamespaceWithWorkflow.load(content, Seq(resolveHttpAndSecondaryFiles _)).get
+  }
+
   def main(args: Array[String]): Unit = {
     println("Hello, world!")
   }
@@ -101,10 +117,11 @@ class Bridge(basePath : String) {
   }
 
   def getImportMap(file: JFile): util.LinkedHashMap[String, String] = {
-    val lines = scala.io.Source.fromFile(file).mkString
-    val importMap = new util.LinkedHashMap[String, String]()
+    getImportMap(loadWithSecondaryFiles(scala.io.Source.fromFile(file).mkString))
+  }
 
-    val ns = WdlNamespaceWithWorkflow.load(lines, Seq(resolveHttpAndSecondaryFiles _)).get
+  def getImportMap(ns: WdlNamespaceWithWorkflow): util.LinkedHashMap[String, String] = {
+    val importMap = new util.LinkedHashMap[String, String]()
 
     ns.imports foreach { imported =>
       val importNamespace = imported.namespaceName
@@ -139,8 +156,10 @@ class Bridge(basePath : String) {
 
   @throws(classOf[WdlParser.SyntaxError])
   def getCallsToDockerMap(file: JFile): util.LinkedHashMap[String, String] = {
-    val lines = scala.io.Source.fromFile(file).mkString
-    val ns = WdlNamespaceWithWorkflow.load(lines, Seq(resolveHttpAndSecondaryFiles _)).get
+    getCallsToDockerMap(loadWithSecondaryFiles(scala.io.Source.fromFile(file).mkString))
+  }
+
+  def getCallsToDockerMap(ns: WdlNamespaceWithWorkflow): util.LinkedHashMap[String, String] = {
     val tasks = new util.LinkedHashMap[String, String]()
 
     ns.workflow.calls foreach { call =>
@@ -174,8 +193,10 @@ class Bridge(basePath : String) {
   }
 
   def getCallsToDependencies(file: JFile): util.LinkedHashMap[String, util.List[String]] = {
-    val lines = scala.io.Source.fromFile(file).mkString
-    val ns = WdlNamespaceWithWorkflow.load(lines, Seq(resolveHttpAndSecondaryFiles _)).get
+    getCallsToDependencies(loadWithSecondaryFiles(scala.io.Source.fromFile(file).mkString))
+  }
+
+  def getCallsToDependencies(ns: WdlNamespaceWithWorkflow): util.LinkedHashMap[String, util.List[String]] = {
     val dependencyMap = new util.LinkedHashMap[String, util.List[String]]()
     ns.workflow.calls foreach { call =>
       val dependencies = new util.ArrayList[String]()
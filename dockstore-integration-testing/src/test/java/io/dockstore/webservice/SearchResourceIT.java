@@ -24,6 +24,7 @@ import io.swagger.client.ApiException;
 import io.swagger.client.api.ExtendedGa4GhApi;
 import io.swagger.client.api.WorkflowsApi;
 import io.swagger.client.model.PublishRequest;
+import io.swagger.client.model.ReindexJob;
 import io.swagger.client.model.Workflow;
 import org.junit.Before;
 import org.junit.Rule;
@@ -34,7 +35,9 @@ import org.junit.contrib.java.lang.system.SystemOutRule;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.ExpectedException;
 
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author dyuen
@@ -65,8 +68,9 @@ public class SearchResourceIT extends BaseIT {
         final ApiClient webClient = getWebClient(USER_2_USERNAME);
 
         ExtendedGa4GhApi extendedGa4GhApi = new ExtendedGa4GhApi(webClient);
-        // update the search index
+        // update the search index, which is rebuilt in the background
         extendedGa4GhApi.toolsIndexGet();
+        waitForIndex(extendedGa4GhApi);
 
         WorkflowsApi workflowApi = new WorkflowsApi(webClient);
         workflowApi.manualRegister("github", "DockstoreTestUser2/dockstore_workflow_cnv", "/workflow/cnv.cwl", "", "cwl", "/test.json");
@@ -85,4 +89,20 @@ public class SearchResourceIT extends BaseIT {
         String s = extendedGa4GhApi.toolsIndexSearch(exampleESQuery);
         assertTrue(s.contains(WorkflowIT.DOCKSTORE_TEST_USER2_RELATIVE_IMPORTS_WORKFLOW));
     }
+
+    private static void waitForIndex(ExtendedGa4GhApi extendedGa4GhApi) throws ApiException {
+        for (int i = 0; i < 60; i++) {
+            ReindexJob job = extendedGa4GhApi.toolsIndexStatusGet();
+            if (job.getState() == ReindexJob.StateEnum.COMPLETED) {
+                return;
+            }
+            assertNotEquals("rebuilding the index failed: " + job.getError(), ReindexJob.StateEnum.FAILED, job.getState());
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        fail("the index was not rebuilt in time");
+    }
 }
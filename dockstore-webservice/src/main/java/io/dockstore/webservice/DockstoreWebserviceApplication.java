@@ -30,10 +30,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import io.dockstore.webservice.core.FileContent;
 import io.dockstore.webservice.core.FileFormat;
 import io.dockstore.webservice.core.Group;
 import io.dockstore.webservice.core.Label;
 import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.SourceFileContent;
 import io.dockstore.webservice.core.Tag;
 import io.dockstore.webservice.core.Token;
 import io.dockstore.webservice.core.Tool;
@@ -41,10 +44,18 @@ import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.doi.DOIGeneratorFactory;
+import io.dockstore.webservice.helpers.CommitFileCache;
+import io.dockstore.webservice.helpers.CompressFileContentTask;
 import io.dockstore.webservice.helpers.ElasticManager;
 import io.dockstore.webservice.helpers.GoogleHelper;
+import io.dockstore.webservice.helpers.HibernateCacheHelper;
 import io.dockstore.webservice.helpers.PersistenceExceptionMapper;
+import io.dockstore.webservice.helpers.RefreshJobManager;
+import io.dockstore.webservice.helpers.ReplicaRoutingSessionFactoryFactory;
+import io.dockstore.webservice.helpers.SourceCodeRepoFactory;
+import io.dockstore.webservice.helpers.SourceFileContentListener;
 import io.dockstore.webservice.helpers.TransactionExceptionMapper;
+import io.dockstore.webservice.helpers.WorkflowContentCache;
 import io.dockstore.webservice.jdbi.TagDAO;
 import io.dockstore.webservice.jdbi.TokenDAO;
 import io.dockstore.webservice.jdbi.ToolDAO;
@@ -84,6 +95,7 @@ import io.swagger.api.ToolClassesApi;
 import io.swagger.api.ToolClassesApiV1;
 import io.swagger.api.ToolsApi;
 import io.swagger.api.ToolsApiV1;
+import io.swagger.api.impl.GA4GHToolCache;
 import io.swagger.api.impl.ToolsApiServiceImpl;
 import io.swagger.jaxrs.config.BeanConfig;
 import io.swagger.jaxrs.listing.ApiListingResource;
@@ -117,12 +129,15 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
     private static final int CACHE_IN_MB = 100;
     private static Cache cache = null;
 
+    private final ReplicaRoutingSessionFactoryFactory sessionFactoryFactory = new ReplicaRoutingSessionFactoryFactory();
     private final HibernateBundle<DockstoreWebserviceConfiguration> hibernate = new HibernateBundle<DockstoreWebserviceConfiguration>(
-            Token.class, Tool.class, User.class, Group.class, Tag.class, Label.class, SourceFile.class, Workflow.class,
-            WorkflowVersion.class, FileFormat.class) {
+            ImmutableList.of(Token.class, Tool.class, User.class, Group.class, Tag.class, Label.class, SourceFile.class, FileContent.class,
+            Workflow.class, WorkflowVersion.class, FileFormat.class), sessionFactoryFactory) {
         @Override
         public DataSourceFactory getDataSourceFactory(DockstoreWebserviceConfiguration configuration) {
-            return configuration.getDataSourceFactory();
+            // the only hook before the session factory is built
+            sessionFactoryFactory.setConfig(configuration.getReadReplicaConfig());
+            return HibernateCacheHelper.withCacheProperties(configuration);
         }
     };
 
@@ -208,6 +223,10 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         beanConfig.setResourcePackage("io.dockstore.webservice.resources,io.swagger.api");
         beanConfig.setScan(true);
         ElasticManager.setConfig(configuration);
+        ElasticManager.registerMetrics(environment.metrics());
+        HibernateCacheHelper.registerMetrics(environment.metrics(), hibernate.getSessionFactory());
+        SourceFileContentListener.register(hibernate.getSessionFactory());
+        environment.lifecycle().manage(new ElasticManager());
         environment.jersey().property(CommonProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true);
         environment.jersey().register(new JsonProcessingExceptionMapper(true));
 
@@ -245,7 +264,9 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         environment.jersey().register(new DockerRepoTagResource(toolDAO, tagDAO));
         environment.jersey().register(new TokenResource(tokenDAO, userDAO, httpClient, cachingAuthenticator, configuration));
 
-        environment.jersey().register(new UserResource(getHibernate().getSessionFactory(), workflowResource, dockerRepoResource, cachingAuthenticator, authorizer));
+        final RefreshJobManager refreshJobManager = new RefreshJobManager(configuration.getRefreshJobConfig(), hibernate.getSessionFactory());
+        environment.lifecycle().manage(refreshJobManager);
+        environment.jersey().register(new UserResource(getHibernate().getSessionFactory(), workflowResource, dockerRepoResource, cachingAuthenticator, authorizer, refreshJobManager));
         environment.jersey().register(new MetadataResource(getHibernate().getSessionFactory(), configuration));
         environment.jersey().register(new HostedToolResource(getHibernate().getSessionFactory(), authorizer, configuration.getLimitConfig()));
         environment.jersey().register(new HostedWorkflowResource(getHibernate().getSessionFactory(), authorizer, configuration.getLimitConfig()));
@@ -260,9 +281,18 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         ToolsApiExtendedServiceImpl.setToolDAO(toolDAO);
         ToolsApiExtendedServiceImpl.setWorkflowDAO(workflowDAO);
         ToolsApiExtendedServiceImpl.setConfig(configuration);
+        ToolsApiExtendedServiceImpl.setSessionFactory(hibernate.getSessionFactory());
 
         DOIGeneratorFactory.setConfig(configuration);
 
+        SourceCodeRepoFactory.setConfig(configuration);
+        CommitFileCache.setConfig(configuration);
+        GA4GHToolCache.setConfig(configuration);
+        SourceFileContent.setConfig(configuration);
+        WorkflowContentCache.setConfig(configuration);
+        environment.admin().addTask(new CompressFileContentTask(hibernate.getSessionFactory()));
+        GA4GHToolCache.registerMetrics(environment.metrics());
+
         GoogleHelper.setConfig(configuration);
 
         ToolsApi toolsApi = new ToolsApi(null);
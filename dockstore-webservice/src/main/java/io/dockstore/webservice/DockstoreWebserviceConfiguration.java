@@ -17,7 +17,9 @@
 package io.dockstore.webservice;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -53,6 +55,30 @@ public class DockstoreWebserviceConfiguration extends Configuration {
     @Valid
     private LimitConfig limitConfig = new LimitConfig();
 
+    @Valid
+    private GitHubConfig gitHubConfig = new GitHubConfig();
+
+    @Valid
+    private CommitFileCacheConfig commitFileCacheConfig = new CommitFileCacheConfig();
+
+    @Valid
+    private RefreshJobConfig refreshJobConfig = new RefreshJobConfig();
+
+    @Valid
+    private GA4GHCacheConfig ga4ghCacheConfig = new GA4GHCacheConfig();
+
+    @Valid
+    private HibernateCacheConfig hibernateCacheConfig = new HibernateCacheConfig();
+
+    @Valid
+    private FileContentConfig fileContentConfig = new FileContentConfig();
+
+    @Valid
+    private ReadReplicaConfig readReplicaConfig = new ReadReplicaConfig();
+
+    @Valid
+    private WorkflowContentCacheConfig workflowContentCacheConfig = new WorkflowContentCacheConfig();
+
     @NotEmpty
     private String template;
 
@@ -378,6 +404,78 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         this.limitConfig = limitConfig;
     }
 
+    @JsonProperty("githubConfig")
+    public GitHubConfig getGitHubConfig() {
+        return gitHubConfig;
+    }
+
+    public void setGitHubConfig(GitHubConfig gitHubConfig) {
+        this.gitHubConfig = gitHubConfig;
+    }
+
+    @JsonProperty("commitFileCache")
+    public CommitFileCacheConfig getCommitFileCacheConfig() {
+        return commitFileCacheConfig;
+    }
+
+    public void setCommitFileCacheConfig(CommitFileCacheConfig commitFileCacheConfig) {
+        this.commitFileCacheConfig = commitFileCacheConfig;
+    }
+
+    @JsonProperty("refreshJobs")
+    public RefreshJobConfig getRefreshJobConfig() {
+        return refreshJobConfig;
+    }
+
+    public void setRefreshJobConfig(RefreshJobConfig refreshJobConfig) {
+        this.refreshJobConfig = refreshJobConfig;
+    }
+
+    @JsonProperty("ga4ghCache")
+    public GA4GHCacheConfig getGa4ghCacheConfig() {
+        return ga4ghCacheConfig;
+    }
+
+    public void setGa4ghCacheConfig(GA4GHCacheConfig ga4ghCacheConfig) {
+        this.ga4ghCacheConfig = ga4ghCacheConfig;
+    }
+
+    @JsonProperty("hibernateCache")
+    public HibernateCacheConfig getHibernateCacheConfig() {
+        return hibernateCacheConfig;
+    }
+
+    public void setHibernateCacheConfig(HibernateCacheConfig hibernateCacheConfig) {
+        this.hibernateCacheConfig = hibernateCacheConfig;
+    }
+
+    @JsonProperty("fileContent")
+    public FileContentConfig getFileContentConfig() {
+        return fileContentConfig;
+    }
+
+    public void setFileContentConfig(FileContentConfig fileContentConfig) {
+        this.fileContentConfig = fileContentConfig;
+    }
+
+    @JsonProperty("readReplica")
+    public ReadReplicaConfig getReadReplicaConfig() {
+        return readReplicaConfig;
+    }
+
+    public void setReadReplicaConfig(ReadReplicaConfig readReplicaConfig) {
+        this.readReplicaConfig = readReplicaConfig;
+    }
+
+    @JsonProperty("workflowContentCache")
+    public WorkflowContentCacheConfig getWorkflowContentCacheConfig() {
+        return workflowContentCacheConfig;
+    }
+
+    public void setWorkflowContentCacheConfig(WorkflowContentCacheConfig workflowContentCacheConfig) {
+        this.workflowContentCacheConfig = workflowContentCacheConfig;
+    }
+
     /**
      * This config defines values that define the webservice from the outside world.
      * Most notably, for swagger. But also to configure generated RSS paths and TRS paths
@@ -437,9 +535,45 @@ public class DockstoreWebserviceConfiguration extends Configuration {
     }
 
     public class ElasticSearchConfig {
+        private static final int DEFAULT_MAX_CONNECTIONS = 30;
+        private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+        private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000;
+        private static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 30000;
+        private static final int DEFAULT_INDEX_BATCH_SIZE = 100;
+        private static final int DEFAULT_INDEX_FLUSH_INTERVAL_MILLIS = 1000;
+        private static final int DEFAULT_INDEX_MAX_RETRIES = 3;
+        private static final int DEFAULT_INDEX_RETRY_BACKOFF_MILLIS = 500;
+        private static final int DEFAULT_INDEX_QUEUE_CAPACITY = 10000;
+        private static final int DEFAULT_REINDEX_BATCH_SIZE = 500;
+        private static final int DEFAULT_REINDEX_CONCURRENT_REQUESTS = 2;
+
         private String hostname;
         private int port;
 
+        /**
+         * Connection pool settings for the shared Elasticsearch client, see ElasticManager
+         */
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private int socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+        private int maxRetryTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+
+        /**
+         * Settings for the asynchronous index queue, see ElasticIndexQueue
+         */
+        private int indexBatchSize = DEFAULT_INDEX_BATCH_SIZE;
+        private int indexFlushIntervalMillis = DEFAULT_INDEX_FLUSH_INTERVAL_MILLIS;
+        private int indexMaxRetries = DEFAULT_INDEX_MAX_RETRIES;
+        private int indexRetryBackoffMillis = DEFAULT_INDEX_RETRY_BACKOFF_MILLIS;
+        private int indexQueueCapacity = DEFAULT_INDEX_QUEUE_CAPACITY;
+
+        /**
+         * Settings for full reindexing, see ElasticBulkIndexer
+         */
+        private int reindexBatchSize = DEFAULT_REINDEX_BATCH_SIZE;
+        private int reindexConcurrentRequests = DEFAULT_REINDEX_CONCURRENT_REQUESTS;
+
         public String getHostname() {
             return hostname;
         }
@@ -455,6 +589,102 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         public void setPort(int port) {
             this.port = port;
         }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        public int getSocketTimeoutMillis() {
+            return socketTimeoutMillis;
+        }
+
+        public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+            this.socketTimeoutMillis = socketTimeoutMillis;
+        }
+
+        public int getMaxRetryTimeoutMillis() {
+            return maxRetryTimeoutMillis;
+        }
+
+        public void setMaxRetryTimeoutMillis(int maxRetryTimeoutMillis) {
+            this.maxRetryTimeoutMillis = maxRetryTimeoutMillis;
+        }
+
+        public int getIndexBatchSize() {
+            return indexBatchSize;
+        }
+
+        public void setIndexBatchSize(int indexBatchSize) {
+            this.indexBatchSize = indexBatchSize;
+        }
+
+        public int getIndexFlushIntervalMillis() {
+            return indexFlushIntervalMillis;
+        }
+
+        public void setIndexFlushIntervalMillis(int indexFlushIntervalMillis) {
+            this.indexFlushIntervalMillis = indexFlushIntervalMillis;
+        }
+
+        public int getIndexMaxRetries() {
+            return indexMaxRetries;
+        }
+
+        public void setIndexMaxRetries(int indexMaxRetries) {
+            this.indexMaxRetries = indexMaxRetries;
+        }
+
+        public int getIndexRetryBackoffMillis() {
+            return indexRetryBackoffMillis;
+        }
+
+        public void setIndexRetryBackoffMillis(int indexRetryBackoffMillis) {
+            this.indexRetryBackoffMillis = indexRetryBackoffMillis;
+        }
+
+        public int getIndexQueueCapacity() {
+            return indexQueueCapacity;
+        }
+
+        public void setIndexQueueCapacity(int indexQueueCapacity) {
+            this.indexQueueCapacity = indexQueueCapacity;
+        }
+
+        public int getReindexBatchSize() {
+            return reindexBatchSize;
+        }
+
+        public void setReindexBatchSize(int reindexBatchSize) {
+            this.reindexBatchSize = reindexBatchSize;
+        }
+
+        public int getReindexConcurrentRequests() {
+            return reindexConcurrentRequests;
+        }
+
+        public void setReindexConcurrentRequests(int reindexConcurrentRequests) {
+            this.reindexConcurrentRequests = reindexConcurrentRequests;
+        }
     }
 
     public static class SamConfiguration {
@@ -489,4 +719,364 @@ public class DockstoreWebserviceConfiguration extends Configuration {
             this.workflowVersionLimit = workflowVersionLimit;
         }
     }
+
+    /**
+     * Controls how workflows are refreshed from GitHub
+     */
+    public static class GitHubConfig {
+        private static final int DEFAULT_GRAPHQL_BATCH_SIZE = 25;
+
+        private boolean useGraphQL = false;
+        private int graphQLBatchSize = DEFAULT_GRAPHQL_BATCH_SIZE;
+        private boolean incrementalRefresh = true;
+
+        /**
+         * @return true to refresh workflows with a few batched GraphQL queries instead of several REST calls per branch or tag
+         */
+        public boolean isUseGraphQL() {
+            return useGraphQL;
+        }
+
+        public void setUseGraphQL(boolean useGraphQL) {
+            this.useGraphQL = useGraphQL;
+        }
+
+        /**
+         * @return the number of versions whose files are read in one GraphQL query
+         */
+        public int getGraphQLBatchSize() {
+            return graphQLBatchSize;
+        }
+
+        public void setGraphQLBatchSize(int graphQLBatchSize) {
+            this.graphQLBatchSize = graphQLBatchSize;
+        }
+
+        /**
+         * @return true to only re-process versions whose branch or tag points at a different commit than at the last refresh
+         */
+        public boolean isIncrementalRefresh() {
+            return incrementalRefresh;
+        }
+
+        public void setIncrementalRefresh(boolean incrementalRefresh) {
+            this.incrementalRefresh = incrementalRefresh;
+        }
+    }
+
+    /**
+     * Controls the cache of files read from source code repositories, see CommitFileCache
+     */
+    public static class CommitFileCacheConfig {
+        private static final int DEFAULT_MAX_SIZE_MEGABYTES = 64;
+
+        private int maxSizeMegabytes = DEFAULT_MAX_SIZE_MEGABYTES;
+        private String directory = null;
+
+        /**
+         * @return how much file content to keep in memory
+         */
+        public int getMaxSizeMegabytes() {
+            return maxSizeMegabytes;
+        }
+
+        public void setMaxSizeMegabytes(int maxSizeMegabytes) {
+            this.maxSizeMegabytes = maxSizeMegabytes;
+        }
+
+        /**
+         * @return a directory to also keep file content in, or null to only cache in memory
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Controls the cache of the DAG and tool table of workflow versions, see WorkflowContentCache
+     */
+    public static class WorkflowContentCacheConfig {
+        private static final int DEFAULT_MAX_SIZE_MEGABYTES = 32;
+        private static final int DEFAULT_TIME_TO_LIVE_SECONDS = 3600;
+
+        private int maxSizeMegabytes = DEFAULT_MAX_SIZE_MEGABYTES;
+        private int timeToLiveSeconds = DEFAULT_TIME_TO_LIVE_SECONDS;
+        private boolean persist = false;
+
+        /**
+         * @return how much DAG and tool table JSON to keep in memory
+         */
+        public int getMaxSizeMegabytes() {
+            return maxSizeMegabytes;
+        }
+
+        public void setMaxSizeMegabytes(int maxSizeMegabytes) {
+            this.maxSizeMegabytes = maxSizeMegabytes;
+        }
+
+        /**
+         * @return how long a DAG or tool table is used for, they link to published tools which may be published after they are made
+         */
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        /**
+         * @return true to also keep DAGs and tool tables in the database, so that they survive restarts and are shared between instances
+         */
+        public boolean isPersist() {
+            return persist;
+        }
+
+        public void setPersist(boolean persist) {
+            this.persist = persist;
+        }
+    }
+
+    /**
+     * Controls the cache of GA4GH representations of entries, see GA4GHToolCache
+     */
+    public static class GA4GHCacheConfig {
+        private static final int DEFAULT_MAX_ENTRIES = 1000;
+        private static final int DEFAULT_TIME_TO_LIVE_SECONDS = 3600;
+
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+        private int timeToLiveSeconds = DEFAULT_TIME_TO_LIVE_SECONDS;
+
+        /**
+         * @return how many entries to keep the GA4GH representation of
+         */
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * @return how long a GA4GH representation is used for, in case a change to an entry does not invalidate it
+         */
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    /**
+     * Controls the Hibernate second-level and query caches, see HibernateCacheHelper.
+     * Disabled by default, since rows changed in the database by anything other than this webservice are not seen until they expire.
+     */
+    public static class HibernateCacheConfig {
+        private boolean enabled = false;
+        private CacheRegionConfig defaultRegion = new CacheRegionConfig();
+        private Map<String, CacheRegionConfig> regions = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the size and time to live of regions that are not configured in {@link #getRegions()}
+         */
+        public CacheRegionConfig getDefaultRegion() {
+            return defaultRegion;
+        }
+
+        public void setDefaultRegion(CacheRegionConfig defaultRegion) {
+            this.defaultRegion = defaultRegion;
+        }
+
+        /**
+         * @return the size and time to live of regions by region name, for example entry, label or publishedByPath
+         */
+        public Map<String, CacheRegionConfig> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(Map<String, CacheRegionConfig> regions) {
+            this.regions = regions;
+        }
+
+        public CacheRegionConfig getRegion(String region) {
+            return regions.getOrDefault(region, defaultRegion);
+        }
+    }
+
+    public static class CacheRegionConfig {
+        private static final int DEFAULT_MAX_ENTRIES = 10000;
+        private static final int DEFAULT_TIME_TO_LIVE_SECONDS = 600;
+
+        private long maxEntries = DEFAULT_MAX_ENTRIES;
+        private long timeToLiveSeconds = DEFAULT_TIME_TO_LIVE_SECONDS;
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    /**
+     * Controls how source file content is stored, see SourceFileContent
+     */
+    public static class FileContentConfig {
+        private static final int DEFAULT_MIN_COMPRESSED_BYTES = 4096;
+
+        private boolean compress = false;
+        private int minCompressedBytes = DEFAULT_MIN_COMPRESSED_BYTES;
+
+        /**
+         * @return true to store new content compressed
+         */
+        public boolean isCompress() {
+            return compress;
+        }
+
+        public void setCompress(boolean compress) {
+            this.compress = compress;
+        }
+
+        /**
+         * @return the size of the smallest content to compress, compressing small files saves little
+         */
+        public int getMinCompressedBytes() {
+            return minCompressedBytes;
+        }
+
+        public void setMinCompressedBytes(int minCompressedBytes) {
+            this.minCompressedBytes = minCompressedBytes;
+        }
+    }
+
+    /**
+     * Controls the read replica that read-only units of work are sent to, see ReplicaRoutingDataSource.
+     * Without a database every unit of work uses the primary database.
+     * The replica works with the second-level cache (see HibernateCacheConfig): sessions that read from the replica use the cache but
+     * never put anything in it (CacheMode.GET), since rows from a replica that is behind would otherwise be served from the cache to
+     * every session, including those on the primary, until they expire. Only sessions on the primary fill the cache.
+     */
+    public static class ReadReplicaConfig {
+        private static final int DEFAULT_MAX_LAG_SECONDS = 10;
+        private static final int DEFAULT_LAG_CHECK_INTERVAL_SECONDS = 5;
+        private static final int DEFAULT_READ_YOUR_WRITES_SECONDS = 30;
+
+        @Valid
+        private DataSourceFactory database;
+        private int maxLagSeconds = DEFAULT_MAX_LAG_SECONDS;
+        private int lagCheckIntervalSeconds = DEFAULT_LAG_CHECK_INTERVAL_SECONDS;
+        private int readYourWritesSeconds = DEFAULT_READ_YOUR_WRITES_SECONDS;
+
+        /**
+         * @return the connection to the replica, usually the same as the primary database apart from the url
+         */
+        public DataSourceFactory getDatabase() {
+            return database;
+        }
+
+        public void setDatabase(DataSourceFactory database) {
+            this.database = database;
+        }
+
+        /**
+         * @return how far the replica may fall behind the primary before reads go back to the primary
+         */
+        public int getMaxLagSeconds() {
+            return maxLagSeconds;
+        }
+
+        public void setMaxLagSeconds(int maxLagSeconds) {
+            this.maxLagSeconds = maxLagSeconds;
+        }
+
+        public int getLagCheckIntervalSeconds() {
+            return lagCheckIntervalSeconds;
+        }
+
+        public void setLagCheckIntervalSeconds(int lagCheckIntervalSeconds) {
+            this.lagCheckIntervalSeconds = lagCheckIntervalSeconds;
+        }
+
+        /**
+         * @return how long after a user changes something their reads keep going to the primary, so that they see their own changes
+         */
+        public int getReadYourWritesSeconds() {
+            return readYourWritesSeconds;
+        }
+
+        public void setReadYourWritesSeconds(int readYourWritesSeconds) {
+            this.readYourWritesSeconds = readYourWritesSeconds;
+        }
+    }
+
+    /**
+     * Controls the workers that run refresh jobs in the background, see RefreshJobManager
+     */
+    public static class RefreshJobConfig {
+        private static final int DEFAULT_WORKER_THREADS = 4;
+        private static final int DEFAULT_MAX_QUEUED_JOBS = 100;
+        private static final int DEFAULT_RETENTION_HOURS = 24;
+
+        private int workerThreads = DEFAULT_WORKER_THREADS;
+        private int maxQueuedJobs = DEFAULT_MAX_QUEUED_JOBS;
+        private int retentionHours = DEFAULT_RETENTION_HOURS;
+
+        /**
+         * @return how many refresh jobs run at the same time
+         */
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        /**
+         * @return how many refresh jobs can wait for a worker before new jobs are turned away
+         */
+        public int getMaxQueuedJobs() {
+            return maxQueuedJobs;
+        }
+
+        public void setMaxQueuedJobs(int maxQueuedJobs) {
+            this.maxQueuedJobs = maxQueuedJobs;
+        }
+
+        /**
+         * @return how long the status of a refresh job can be looked up after it was submitted
+         */
+        public int getRetentionHours() {
+            return retentionHours;
+        }
+
+        public void setRetentionHours(int retentionHours) {
+            this.retentionHours = retentionHours;
+        }
+    }
 }
@@ -19,6 +19,7 @@ package io.dockstore.webservice.core;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -47,6 +48,8 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToOne;
 import javax.persistence.OrderBy;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotNull;
@@ -57,7 +60,11 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Ordering;
 import io.dockstore.webservice.helpers.EntryStarredSerializer;
+import io.dockstore.webservice.helpers.HibernateCacheHelper;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -67,6 +74,7 @@ import org.hibernate.annotations.UpdateTimestamp;
  * @author dyuen
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheHelper.ENTRY_REGION)
 @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
 @SuppressWarnings("checkstyle:magicnumber")
 
@@ -108,6 +116,7 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
     private String description;
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 25)
     @JoinTable(name = "entry_label", joinColumns = @JoinColumn(name = "entryid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "labelid", referencedColumnName = "id"))
     @ApiModelProperty(value = "Labels (i.e. meta tags) for describing the purpose and contents of containers", position = 3)
     @OrderBy("id")
@@ -120,12 +129,21 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
     private SortedSet<User> users;
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 25)
     @JoinTable(name = "starred", inverseJoinColumns = @JoinColumn(name = "userid", nullable = false, updatable = false, referencedColumnName = "id"), joinColumns = @JoinColumn(name = "entryid", nullable = false, updatable = false, referencedColumnName = "id"))
     @ApiModelProperty(value = "This indicates the users that have starred this entry, dockstore specific", required = false, position = 5)
     @JsonSerialize(using = EntryStarredSerializer.class)
     @OrderBy("id")
     private SortedSet<User> starredUsers;
 
+    /**
+     * The number of starred users, so that listings can be sorted by stars with an index instead of counting stars for every entry.
+     * Only ever changed in the database by EntryDAO.updateStarCount, so that concurrent stars are not lost
+     */
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "integer default 0")
+    @JsonIgnore
+    private int starCount;
+
     @Column
     @ApiModelProperty(value = "This is the email of the git organization", position = 6)
     private String email;
@@ -169,6 +187,23 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
     @UpdateTimestamp
     private Timestamp dbUpdateDate;
 
+    /**
+     * The fields matched by the filter of published listings, lower cased and joined by new lines.
+     * Kept up to date on every write so that a trigram index can serve the filter, see migrations.1.6.0.xml.
+     * The filter only needs the column, without the pg_trgm extension it works the same but reads every published entry.
+     */
+    @Column(columnDefinition = "text")
+    @JsonIgnore
+    private String searchText;
+
+    /**
+     * The full text vector of searchText that listings sorted by relevance are ranked by, kept up to date by a trigger of
+     * migrations.1.6.0.xml. Without the trigger it stays null and those listings come out newest first.
+     */
+    @Column(columnDefinition = "tsvector", insertable = false, updatable = false)
+    @JsonIgnore
+    private String searchVector;
+
     public Entry() {
         users = new TreeSet<>();
         starredUsers = new TreeSet<>();
@@ -349,6 +384,11 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
     public boolean removeStarredUser(User user) {
         return starredUsers.remove(user);
     }
+
+    @JsonIgnore
+    public int getStarCount() {
+        return starCount;
+    }
     /**
      * Used during refresh to update containers
      *
@@ -388,6 +428,18 @@ public abstract class Entry<S extends Entry, T extends Version> implements Compa
     @JsonIgnore
     public abstract Set<T> getVersions();
 
+    /**
+     * @return the fields matched by the filter of published listings, which may be null
+     */
+    protected abstract String[] searchFields();
+
+    @PrePersist
+    @PreUpdate
+    void updateSearchText() {
+        searchText = Stream.of(searchFields()).filter(Objects::nonNull).map(field -> field.toLowerCase(Locale.ROOT))
+            .collect(Collectors.joining("\n"));
+    }
+
     /**
      * @param newDefaultVersion
      * @return true if defaultVersion is a valid Docker tag
@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.core;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Content stored once for all the source files with the same content, by the SHA-256 hash of the content.
+ * Rows are only ever added, by FileDAO.storeContent when a source file with new content is written, so the entity is read-only.
+ * It is loaded with its source files, source files loaded by a query load the content of up to 25 of them at once.
+ */
+@Entity
+@Table(name = "filecontent")
+@Immutable
+@BatchSize(size = 25)
+@SuppressWarnings("checkstyle:magicnumber")
+public class FileContent {
+    @Id
+    @Column(columnDefinition = "text")
+    private String hash;
+
+    @Column(nullable = false)
+    @Convert(converter = SourceFileContentConverter.class)
+    private SourceFileContent body;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public SourceFileContent getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.core;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * The status of a refresh of all of a user's tools or workflows that runs in the background.
+ * The job is updated by the worker running it while it is being read by status requests, so access is synchronized.
+ */
+@ApiModel(value = "RefreshJob", description = "The progress of a refresh running in the background")
+public class RefreshJob {
+    @ApiModelProperty(value = "Identifies the job when asking for its status")
+    private final String id = UUID.randomUUID().toString();
+    @ApiModelProperty(value = "The user whose entries are refreshed")
+    private final long userId;
+    @ApiModelProperty(value = "Whether tools or workflows are refreshed")
+    private final Type type;
+    @ApiModelProperty(value = "If set, only entries from this organization are refreshed")
+    private final String organization;
+    @ApiModelProperty(value = "Where the job is in its lifecycle")
+    private State state = State.QUEUED;
+    @ApiModelProperty(value = "Why the job failed before it could refresh any entries")
+    private String error;
+    private final Date submitted = new Date();
+    private Date started;
+    private Date finished;
+    @ApiModelProperty(value = "The number of entries that will be refreshed, known once the job is running")
+    private int total;
+    @ApiModelProperty(value = "The result of each entry refreshed so far, in order")
+    private final List<EntryResult> entries = new ArrayList<>();
+
+    public RefreshJob(long userId, Type type, String organization) {
+        this.userId = userId;
+        this.type = type;
+        this.organization = organization;
+    }
+
+    @JsonProperty
+    public String getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public long getUserId() {
+        return userId;
+    }
+
+    @JsonProperty
+    public Type getType() {
+        return type;
+    }
+
+    @JsonProperty
+    public String getOrganization() {
+        return organization;
+    }
+
+    @JsonProperty
+    public synchronized State getState() {
+        return state;
+    }
+
+    @JsonProperty
+    public synchronized String getError() {
+        return error;
+    }
+
+    @JsonProperty
+    public Date getSubmitted() {
+        return submitted;
+    }
+
+    @JsonProperty
+    public synchronized Date getStarted() {
+        return started;
+    }
+
+    @JsonProperty
+    public synchronized Date getFinished() {
+        return finished;
+    }
+
+    @JsonProperty
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    @JsonProperty
+    @ApiModelProperty(value = "The number of entries refreshed so far, including those that failed")
+    public synchronized int getProcessed() {
+        return entries.size();
+    }
+
+    @JsonProperty
+    @ApiModelProperty(value = "The number of entries that could not be refreshed")
+    public synchronized long getFailed() {
+        return entries.stream().filter(entry -> entry.getError() != null).count();
+    }
+
+    @JsonProperty
+    public synchronized List<EntryResult> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public synchronized void start() {
+        state = State.RUNNING;
+        started = new Date();
+    }
+
+    public synchronized void setTotal(int total) {
+        this.total = total;
+    }
+
+    public synchronized void addEntry(EntryResult entry) {
+        entries.add(entry);
+    }
+
+    public synchronized void finish(String failure) {
+        state = failure == null ? State.COMPLETED : State.FAILED;
+        error = failure;
+        finished = new Date();
+    }
+
+    public enum Type { TOOLS, WORKFLOWS }
+
+    /**
+     * A job is COMPLETED once every entry has been tried, even if some of them failed, and FAILED if it could not get that far
+     */
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    /**
+     * How the refresh of one tool or repository of workflows went
+     */
+    @ApiModel(value = "RefreshJobEntry", description = "The result of refreshing one entry in a refresh job")
+    public static class EntryResult {
+        @ApiModelProperty(value = "The path of the tool or repository refreshed")
+        private final String path;
+        @ApiModelProperty(value = "How long the refresh took in milliseconds")
+        private final long durationMillis;
+        @ApiModelProperty(value = "Why the refresh failed, not set if it succeeded")
+        private final String error;
+
+        public EntryResult(String path, long durationMillis, String error) {
+            this.path = path;
+            this.durationMillis = durationMillis;
+            this.error = error;
+        }
+
+        @JsonProperty
+        public String getPath() {
+            return path;
+        }
+
+        @JsonProperty
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @JsonProperty
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.core;
+
+import java.util.Date;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * The status of a rebuild of the search index that runs in the background.
+ * The job is updated by the worker running it while it is being read by status requests, so access is synchronized.
+ */
+@ApiModel(value = "ReindexJob", description = "The progress of a search index rebuild running in the background")
+public class ReindexJob {
+    @ApiModelProperty(value = "Identifies the job")
+    private final String id = UUID.randomUUID().toString();
+    @ApiModelProperty(value = "Where the job is in its lifecycle")
+    private State state = State.QUEUED;
+    @ApiModelProperty(value = "Why the rebuild failed, the index being served is left as it was")
+    private String error;
+    private final Date submitted = new Date();
+    private Date started;
+    private Date finished;
+    @ApiModelProperty(value = "The number of published entries to index, known once the job is running")
+    private long total;
+    @ApiModelProperty(value = "The number of entries indexed, known once the job has completed")
+    private long indexed;
+
+    @JsonProperty
+    public String getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public synchronized State getState() {
+        return state;
+    }
+
+    @JsonProperty
+    public synchronized String getError() {
+        return error;
+    }
+
+    @JsonProperty
+    public Date getSubmitted() {
+        return submitted;
+    }
+
+    @JsonProperty
+    public synchronized Date getStarted() {
+        return started;
+    }
+
+    @JsonProperty
+    public synchronized Date getFinished() {
+        return finished;
+    }
+
+    @JsonProperty
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    @JsonProperty
+    public synchronized long getIndexed() {
+        return indexed;
+    }
+
+    @JsonIgnore
+    public synchronized boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    public synchronized void start() {
+        state = State.RUNNING;
+        started = new Date();
+    }
+
+    public synchronized void setTotal(long total) {
+        this.total = total;
+    }
+
+    public synchronized void setIndexed(long indexed) {
+        this.indexed = indexed;
+    }
+
+    public synchronized void finish(String failure) {
+        state = failure == null ? State.COMPLETED : State.FAILED;
+        error = failure;
+        finished = new Date();
+    }
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+}
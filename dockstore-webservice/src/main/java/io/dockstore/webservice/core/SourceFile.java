@@ -28,13 +28,16 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
+import javax.persistence.ForeignKey;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
+import javax.persistence.ManyToOne;
 import javax.persistence.MapKeyColumn;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotNull;
 
@@ -77,9 +80,22 @@ public class SourceFile implements Comparable<SourceFile> {
     @ApiModelProperty(value = "Enumerates the type of file", required = true, position = 1)
     private FileType type;
 
-    @Column(columnDefinition = "TEXT")
-    @ApiModelProperty(value = "Cache for the contents of the target file", position = 2)
-    private String content;
+    /**
+     * The content is stored once for all source files with the same content, in the filecontent table by its SHA-256 hash.
+     * Content set on a source file is stored by FileDAO.storeContent just before the source file is written, see SourceFileContentListener.
+     */
+    @Column(name = "contenthash", columnDefinition = "text")
+    private String contentHash;
+
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "contenthash", insertable = false, updatable = false, foreignKey = @ForeignKey(name = "fk_sourcefile_contenthash"))
+    private FileContent storedContent;
+
+    /**
+     * Content set since the source file was loaded, stored when the source file is written
+     */
+    @Transient
+    private SourceFileContent content;
 
     @Column(nullable = false)
     @ApiModelProperty(value = "Path to source file in git repo", required = true, position = 3)
@@ -125,12 +141,26 @@ public class SourceFile implements Comparable<SourceFile> {
         this.type = type;
     }
 
+    @ApiModelProperty(value = "Cache for the contents of the target file", position = 2)
     public String getContent() {
-        return content;
+        if (content != null) {
+            return content.get();
+        }
+        return storedContent == null ? null : storedContent.getBody().get();
     }
 
     public void setContent(String content) {
-        this.content = content;
+        this.content = content == null ? null : SourceFileContent.of(content);
+        this.contentHash = this.content == null ? null : this.content.getHash();
+        this.storedContent = null;
+    }
+
+    /**
+     * @return the content set since the source file was loaded, which may not be stored yet, or null
+     */
+    @JsonIgnore
+    public SourceFileContent getUnstoredContent() {
+        return content;
     }
 
     public String getPath() {
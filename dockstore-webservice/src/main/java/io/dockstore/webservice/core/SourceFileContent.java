@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * The content of a source file as stored in the database, see FileContent and SourceFileContentConverter.
+ * Content is stored as UTF-8, or gzipped behind a header when compression is enabled and the content is large enough.
+ * The header is a zero byte, which UTF-8 text only starts with if it starts with a NUL character, the codec, and the SHA-256 hash of
+ * the content. Content is stored by that hash, and compressed and uncompressed copies of the same content have the same hash.
+ * The content is decompressed on first access, loading a source file whose content is never read costs no decompression.
+ */
+@Immutable
+public final class SourceFileContent {
+    private static final byte HEADER = 0;
+    private static final byte GZIP = 1;
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = 2 + HASH_BYTES;
+
+    private static boolean compress = false;
+    private static int minCompressedBytes = new DockstoreWebserviceConfiguration.FileContentConfig().getMinCompressedBytes();
+
+    private final byte[] stored;
+    private String content;
+
+    private SourceFileContent(byte[] stored, String content) {
+        this.stored = stored;
+        this.content = content;
+    }
+
+    public static void setConfig(DockstoreWebserviceConfiguration config) {
+        compress = config.getFileContentConfig().isCompress();
+        minCompressedBytes = config.getFileContentConfig().getMinCompressedBytes();
+    }
+
+    /**
+     * @param content the content of a source file
+     * @return the content, compressed if compression is enabled and the content is large enough
+     */
+    public static SourceFileContent of(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        // content starting with a zero byte would be mistaken for a header, so it is always stored behind one
+        if (compress && bytes.length >= minCompressedBytes || bytes.length > 0 && bytes[0] == HEADER) {
+            return new SourceFileContent(gzip(bytes), content);
+        }
+        return new SourceFileContent(bytes, content);
+    }
+
+    /**
+     * @param content the content of a source file
+     * @return the content compressed, whether or not compression is enabled
+     */
+    public static SourceFileContent compressed(String content) {
+        return new SourceFileContent(gzip(content.getBytes(StandardCharsets.UTF_8)), content);
+    }
+
+    /**
+     * @return the minimum size in bytes of the content that is compressed
+     */
+    public static int getMinCompressedBytes() {
+        return minCompressedBytes;
+    }
+
+    static SourceFileContent fromStored(byte[] stored) {
+        return new SourceFileContent(stored, null);
+    }
+
+    byte[] getStored() {
+        return stored;
+    }
+
+    /**
+     * @return the SHA-256 hash of the content in hex, read from the header of compressed content rather than decompressing it
+     */
+    public String getHash() {
+        if (stored.length > 0 && stored[0] == HEADER) {
+            return BaseEncoding.base16().lowerCase().encode(stored, 2, HASH_BYTES);
+        }
+        return Hashing.sha256().hashBytes(stored).toString();
+    }
+
+    public String get() {
+        if (content == null) {
+            // a race only decodes twice, the result is the same
+            content = decode(stored);
+        }
+        return content;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream stored = new ByteArrayOutputStream(HEADER_BYTES + bytes.length / 2);
+        stored.write(HEADER);
+        stored.write(GZIP);
+        stored.write(Hashing.sha256().hashBytes(bytes).asBytes(), 0, HASH_BYTES);
+        try (OutputStream gzip = new GZIPOutputStream(stored)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stored.toByteArray();
+    }
+
+    private static String decode(byte[] stored) {
+        if (stored.length == 0 || stored[0] != HEADER) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+        if (stored.length < HEADER_BYTES || stored[1] != GZIP) {
+            throw new IllegalStateException("Unknown source file content codec");
+        }
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(stored, HEADER_BYTES, stored.length - HEADER_BYTES))) {
+            return new String(ByteStreams.toByteArray(gzip), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SourceFileContent && Arrays.equals(stored, ((SourceFileContent)o).stored);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(stored);
+    }
+}
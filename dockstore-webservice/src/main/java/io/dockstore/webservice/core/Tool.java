@@ -35,17 +35,23 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.OrderBy;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dockstore.common.LanguageType;
 import io.dockstore.common.Registry;
+import io.dockstore.webservice.helpers.HibernateCacheHelper;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cascade;
 import org.hibernate.annotations.CascadeType;
 import org.hibernate.annotations.Check;
+import org.hibernate.annotations.QueryHints;
 
 /**
  * This describes one tool in the dockstore, extending entry with fields necessary to describe bioinformatics tools.
@@ -65,15 +71,16 @@ import org.hibernate.annotations.Check;
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByNameAndNamespaceAndRegistry", query = "SELECT c FROM Tool c WHERE c.name = :name AND c.namespace = :namespace AND c.registry = :registry"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedById", query = "SELECT c FROM Tool c WHERE c.id = :id AND c.isPublished = true"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.countAllPublished", query = "SELECT COUNT(c.id)" + Tool.PUBLISHED_QUERY),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublished", query = "SELECT c" + Tool.PUBLISHED_QUERY + "ORDER BY size(c.starredUsers) DESC"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublished", query = "SELECT c" + Tool.PUBLISHED_QUERY + "ORDER BY c.starCount DESC"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedSearchRows", query = "SELECT c.id, c.registry, c.namespace, c.name, c.toolname, c.privateAccess, c.author, c.description, c.email, c.gitUrl, c.lastUpdated" + Tool.PUBLISHED_QUERY + "AND c.id > :id ORDER BY c.id"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByMode", query = "SELECT c FROM Tool c WHERE c.mode = :mode"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByNamespace", query = "SELECT c FROM Tool c WHERE lower(c.namespace) = lower(:namespace) AND c.isPublished = true ORDER BY gitUrl"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.isPublished = true"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.isPublished = true", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = HibernateCacheHelper.PUBLISHED_BY_PATH_REGION) }),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname AND c.isPublished = true"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname AND c.isPublished = true", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = HibernateCacheHelper.PUBLISHED_BY_PATH_REGION) }),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL AND c.isPublished = true") })
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL AND c.isPublished = true", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = HibernateCacheHelper.PUBLISHED_BY_PATH_REGION) }) })
 // @formatter:off
 @Check(constraints = "(defaultwdlpath is not null or defaultcwlpath is not null) "
     + "and (toolname NOT LIKE '\\_%')")
@@ -149,12 +156,20 @@ public class Tool extends Entry<Tool, Tag> {
     private Date lastBuild;
 
     @OneToMany(fetch = FetchType.EAGER, orphanRemoval = true)
+    @BatchSize(size = 25)
     @JoinTable(name = "tool_tag", joinColumns = @JoinColumn(name = "toolid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "tagid", referencedColumnName = "id"))
     @ApiModelProperty(value = "Implementation specific tracking of valid build tags for the docker container", position = 26)
     @OrderBy("id")
     @Cascade(CascadeType.DETACH)
     private final SortedSet<Tag> tags;
 
+    /**
+     * The languages of this tool when it is listed without loading its source files, see ToolDAO.loadDescriptorTypes
+     */
+    @Transient
+    @JsonIgnore
+    private List<String> listedDescriptorTypes;
+
     public Tool() {
         tags = new TreeSet<>();
     }
@@ -229,6 +244,9 @@ public class Tool extends Entry<Tool, Tag> {
     @JsonProperty
     @ApiModelProperty(position = 28)
     public List<String> getDescriptorType() {
+        if (listedDescriptorTypes != null) {
+            return listedDescriptorTypes;
+        }
         Set<SourceFile.FileType> set = this.getTags().stream().flatMap(tag -> tag.getSourceFiles().stream()).map(SourceFile::getType)
             .distinct().collect(Collectors.toSet());
         boolean supportsCWL = set.contains(SourceFile.FileType.DOCKSTORE_CWL);
@@ -243,6 +261,10 @@ public class Tool extends Entry<Tool, Tag> {
         return languages;
     }
 
+    public void setListedDescriptorTypes(List<String> listedDescriptorTypes) {
+        this.listedDescriptorTypes = listedDescriptorTypes;
+    }
+
     @JsonProperty
     public Date getLastBuild() {
         return lastBuild;
@@ -301,6 +323,11 @@ public class Tool extends Entry<Tool, Tag> {
         this.defaultWdlPath = defaultWdlPath;
     }
 
+    @Override
+    protected String[] searchFields() {
+        return new String[] { toolname, getAuthor(), name, namespace };
+    }
+
     @JsonProperty
     public String getToolname() {
         return toolname;
@@ -324,16 +351,24 @@ public class Tool extends Entry<Tool, Tag> {
     @JsonProperty("registry")
     @ApiModelProperty(position = 30)
     public Registry getRegistryProvider() {
+        return getRegistryProvider(this.registry);
+    }
+
+    /**
+     * @param registry the registry as stored on a tool
+     * @return the registry as an enum
+     */
+    public static Registry getRegistryProvider(String registry) {
         for (Registry r : Registry.values()) {
-            if (r.toString() != null && r.toString().equals(this.registry)) {
+            if (r.toString() != null && r.toString().equals(registry)) {
                 return r;
             }
         }
 
         // Deal with registries with custom registry paths
-        if (this.registry != null && this.registry.matches("^[a-zA-Z0-9]+\\.dkr\\.ecr\\.[a-zA-Z0-9]+\\.amazonaws\\.com")) {
+        if (registry != null && registry.matches("^[a-zA-Z0-9]+\\.dkr\\.ecr\\.[a-zA-Z0-9]+\\.amazonaws\\.com")) {
             return Registry.AMAZON_ECR;
-        } else if (this.registry.matches("^([a-zA-Z0-9]+-)?images\\.sbgenomics\\.com")) {
+        } else if (registry.matches("^([a-zA-Z0-9]+-)?images\\.sbgenomics\\.com")) {
             return Registry.SEVEN_BRIDGES;
         } else {
             return null;
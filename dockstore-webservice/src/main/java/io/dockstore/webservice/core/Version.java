@@ -48,6 +48,7 @@ import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Ordering;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cascade;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -93,8 +94,10 @@ public abstract class Version<T extends Version> implements Comparable<T> {
     @ApiModelProperty(value = "This indicates the type of git (or other source control) reference")
     private ReferenceType referenceType = ReferenceType.UNSET;
 
-    // watch out for https://hibernate.atlassian.net/browse/HHH-3799 if this is set to EAGER
-    @OneToMany(fetch = FetchType.EAGER, orphanRemoval = true, cascade = CascadeType.ALL)
+    // lazy so that listings do not load descriptor contents, endpoints that return whole entries load them in batches of versions,
+    // see EntryDAO.loadSourceFiles. Also watch out for https://hibernate.atlassian.net/browse/HHH-3799 if this is set to EAGER
+    @OneToMany(fetch = FetchType.LAZY, orphanRemoval = true, cascade = CascadeType.ALL)
+    @BatchSize(size = 25)
     @JoinTable(name = "version_sourcefile", joinColumns = @JoinColumn(name = "versionid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "sourcefileid", referencedColumnName = "id"))
     @ApiModelProperty(value = "Cached files for each version. Includes Dockerfile and Descriptor files", position = 3)
     @Cascade(org.hibernate.annotations.CascadeType.DETACH)
@@ -144,12 +147,14 @@ public abstract class Version<T extends Version> implements Comparable<T> {
     private Timestamp dbUpdateDate;
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 25)
     @JoinTable(name = "version_input_fileformat", joinColumns = @JoinColumn(name = "versionid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "fileformatid", referencedColumnName = "id"))
     @ApiModelProperty(value = "File formats for describing the input file formats of versions (tag/workflowVersion)", position = 20)
     @OrderBy("id")
     private SortedSet<FileFormat> inputFileFormats = new TreeSet<>();
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 25)
     @JoinTable(name = "version_output_fileformat", joinColumns = @JoinColumn(name = "versionid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "fileformatid", referencedColumnName = "id"))
     @ApiModelProperty(value = "File formats for describing the output file formats of versions (tag/workflowVersion)", position = 21)
     @OrderBy("id")
@@ -194,6 +199,8 @@ public abstract class Version<T extends Version> implements Comparable<T> {
     public void update(T version) {
         valid = version.isValid();
         lastModified = version.getLastModified();
+        // keep the commit in step with the source files, they are updated together on refresh
+        commitID = version.getCommitID();
         name = version.getName();
         referenceType = version.getReferenceType();
     }
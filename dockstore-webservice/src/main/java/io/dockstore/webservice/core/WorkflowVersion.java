@@ -20,7 +20,9 @@ import java.util.Objects;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Transient;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ComparisonChain;
@@ -44,6 +46,13 @@ public class WorkflowVersion extends Version<WorkflowVersion> implements Compara
     @ApiModelProperty(value = "Path for the workflow", position = 12)
     private String workflowPath;
 
+    /**
+     * Set on refresh when the reference of this version still points at the commit it was last read at
+     */
+    @Transient
+    @JsonIgnore
+    private boolean unchanged = false;
+
     public WorkflowVersion() {
         super();
     }
@@ -81,6 +90,15 @@ public class WorkflowVersion extends Version<WorkflowVersion> implements Compara
         this.workflowPath = workflowPath;
     }
 
+    @JsonIgnore
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(boolean unchanged) {
+        this.unchanged = unchanged;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
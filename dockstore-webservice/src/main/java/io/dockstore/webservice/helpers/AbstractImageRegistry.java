@@ -119,6 +119,26 @@ public abstract class AbstractImageRegistry {
     public List<Tool> refreshTools(final long userId, final UserDAO userDAO, final ToolDAO toolDAO, final TagDAO tagDAO,
             final FileDAO fileDAO, final FileFormatDAO fileFormatDAO, final HttpClient client, final Token githubToken, final Token bitbucketToken, final Token gitlabToken,
             String organization) {
+        List<Tool> newDBTools = refreshToolList(userId, userDAO, toolDAO, organization);
+
+        // Get tags and update for each tool
+        for (Tool tool : newDBTools) {
+            refreshToolTags(tool, tagDAO, fileDAO, toolDAO, fileFormatDAO, client, githubToken, bitbucketToken, gitlabToken);
+        }
+
+        return newDBTools;
+    }
+
+    /**
+     * Updates/Adds/Deletes tools without their tags, the first half of refreshTools
+     *
+     * @param userId       The ID of the user
+     * @param userDAO      ...
+     * @param toolDAO      ...
+     * @param organization If not null, only refresh tools belonging to the specific organization. Otherwise, refresh all.
+     * @return The list of tools whose tags still need to be refreshed
+     */
+    public List<Tool> refreshToolList(final long userId, final UserDAO userDAO, final ToolDAO toolDAO, String organization) {
         // Get all the namespaces for the given registry
         List<String> namespaces;
         if (organization != null) {
@@ -151,18 +171,21 @@ public abstract class AbstractImageRegistry {
         updateAPIToolsWithBuildInformation(apiTools);
 
         // Update db tools by copying over from api tools
-        List<Tool> newDBTools = updateTools(apiTools, dbTools, user, toolDAO);
-
-        // Get tags and update for each tool
-        for (Tool tool : newDBTools) {
-            List<Tag> toolTags = getTags(tool);
-            final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
-                .createSourceCodeRepo(tool.getGitUrl(), client, bitbucketToken == null ? null : bitbucketToken.getContent(),
-                    gitlabToken == null ? null : gitlabToken.getContent(), githubToken.getContent());
-            updateTags(toolTags, tool, sourceCodeRepo, tagDAO, fileDAO, toolDAO, fileFormatDAO);
-        }
+        return updateTools(apiTools, dbTools, user, toolDAO);
+    }
 
-        return newDBTools;
+    /**
+     * Updates/Adds/Deletes the tags of a tool, the second half of refreshTools
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public void refreshToolTags(final Tool tool, final TagDAO tagDAO, final FileDAO fileDAO, final ToolDAO toolDAO,
+            final FileFormatDAO fileFormatDAO, final HttpClient client, final Token githubToken, final Token bitbucketToken,
+            final Token gitlabToken) {
+        List<Tag> toolTags = getTags(tool);
+        final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
+            .createSourceCodeRepo(tool.getGitUrl(), client, bitbucketToken == null ? null : bitbucketToken.getContent(),
+                gitlabToken == null ? null : gitlabToken.getContent(), githubToken.getContent());
+        updateTags(toolTags, tool, sourceCodeRepo, tagDAO, fileDAO, toolDAO, fileFormatDAO);
     }
 
     /**
@@ -0,0 +1,144 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Supplier;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the content of files read from source code repositories by repository, commit SHA and path.
+ * The content of a file at a commit never changes, so entries never need to be invalidated, only evicted when the cache is full.
+ * Entries are kept in memory up to a configured size, and optionally in a directory on disk as well so that they survive restarts.
+ * Only files that were found are cached, since a missing file cannot be told apart from a failed read.
+ */
+public final class CommitFileCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CommitFileCache.class);
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+
+    private static Cache<String, String> memory = createMemoryCache(
+        new DockstoreWebserviceConfiguration.CommitFileCacheConfig().getMaxSizeMegabytes());
+    private static Path directory = null;
+
+    private CommitFileCache() {
+        // hide the constructor for utility classes
+    }
+
+    public static void setConfig(DockstoreWebserviceConfiguration config) {
+        DockstoreWebserviceConfiguration.CommitFileCacheConfig cacheConfig = config.getCommitFileCacheConfig();
+        memory = createMemoryCache(cacheConfig.getMaxSizeMegabytes());
+        directory = null;
+        if (!Strings.isNullOrEmpty(cacheConfig.getDirectory())) {
+            try {
+                directory = Files.createDirectories(Paths.get(cacheConfig.getDirectory()));
+            } catch (IOException e) {
+                LOG.error("Could not create commit file cache directory " + cacheConfig.getDirectory() + ", only caching in memory", e);
+            }
+        }
+    }
+
+    private static Cache<String, String> createMemoryCache(long maxSizeMegabytes) {
+        // weigh entries by their number of characters, which is close enough to their size
+        return CacheBuilder.newBuilder().maximumWeight(maxSizeMegabytes * BYTES_IN_MB)
+            .weigher((String key, String value) -> key.length() + value.length()).build();
+    }
+
+    /**
+     * Gets the content of a file at a commit, reading it only if it is not cached
+     *
+     * @param repositoryId identifies the git repository, normally something like 'organization/repo_name`
+     * @param commitId     the SHA of the commit the file is read at
+     * @param path         the path of the file
+     * @param reader       reads the file when it is not cached, may return null if the file is not found
+     * @return the content of the file, or null if it is not found
+     */
+    public static String get(String repositoryId, String commitId, String path, Supplier<String> reader) {
+        if (commitId == null) {
+            return reader.get();
+        }
+        String key = repositoryId + '@' + commitId + ':' + path;
+        String content = memory.getIfPresent(key);
+        if (content == null) {
+            content = readFromDisk(key);
+            if (content == null) {
+                content = reader.get();
+                if (content != null) {
+                    writeToDisk(key, content);
+                }
+            }
+            if (content != null) {
+                memory.put(key, content);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * @return the cached content of a file at a commit, or null if it is not cached
+     */
+    public static String getIfPresent(String repositoryId, String commitId, String path) {
+        if (commitId == null) {
+            return null;
+        }
+        return get(repositoryId, commitId, path, () -> null);
+    }
+
+    private static Path getDiskPath(String key) {
+        return directory.resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString());
+    }
+
+    private static String readFromDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = getDiskPath(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Could not read " + key + " from the commit file cache", e);
+            return null;
+        }
+    }
+
+    private static void writeToDisk(String key, String content) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            // write to a temporary file first so that a concurrent reader never sees a partial file
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, getDiskPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write " + key + " to the commit file cache", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dockstore.webservice.core.SourceFileContent;
+import io.dockstore.webservice.jdbi.FileDAO;
+import io.dropwizard.servlets.tasks.Task;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compresses source file content stored before compression was enabled, see SourceFileContent.
+ * Run with POST /tasks/compress-file-content on the admin port, optionally with a batchSize parameter.
+ * Each batch is committed on its own, so the task can be stopped and run again, it continues with the content that is left.
+ */
+public class CompressFileContentTask extends Task {
+    private static final Logger LOG = LoggerFactory.getLogger(CompressFileContentTask.class);
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final SessionFactory sessionFactory;
+    private final FileDAO fileDAO;
+
+    public CompressFileContentTask(SessionFactory sessionFactory) {
+        super("compress-file-content");
+        this.sessionFactory = sessionFactory;
+        this.fileDAO = new FileDAO(sessionFactory);
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) {
+        int batchSize = parameters.get("batchSize").stream().findFirst().map(Integer::parseInt).orElse(DEFAULT_BATCH_SIZE);
+        String lastHash = null;
+        long compressed = 0;
+        while (true) {
+            String afterHash = lastHash;
+            List<Object[]> batch = inTransaction(() -> {
+                List<Object[]> rows = fileDAO.findUncompressedContent(afterHash, SourceFileContent.getMinCompressedBytes(), batchSize);
+                // content that is not compressed is stored as UTF-8
+                rows.forEach(row -> fileDAO.storeCompressed((String)row[0],
+                    SourceFileContent.compressed(new String((byte[])row[1], StandardCharsets.UTF_8))));
+                return rows;
+            });
+            if (batch.isEmpty()) {
+                break;
+            }
+            lastHash = (String)batch.get(batch.size() - 1)[0];
+            compressed += batch.size();
+            LOG.info("Compressed " + compressed + " stored files");
+        }
+        output.println("Compressed " + compressed + " stored files");
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            Transaction transaction = session.beginTransaction();
+            try {
+                T result = work.get();
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+}
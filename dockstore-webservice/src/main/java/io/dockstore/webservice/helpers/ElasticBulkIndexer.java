@@ -0,0 +1,262 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams entries into an elastic search index as a series of fixed-size _bulk requests.
+ * Only one batch is held in memory at a time on the calling thread, and at most a fixed number of _bulk requests are in flight,
+ * so memory use stays flat regardless of how many entries are indexed.
+ * A _bulk request succeeds even when some of its items fail, so the items of each response are checked. Items that are temporarily
+ * rejected (too many requests or a server error) are sent again once everything else is sent, the others are counted as failed.
+ */
+public class ElasticBulkIndexer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticBulkIndexer.class);
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final RestClient restClient;
+    private final String index;
+    private final int batchSize;
+    private final int maxConcurrentRequests;
+    private final int maxRetries;
+    private final int retryBackoffMillis;
+    private final long expectedTotal;
+    private final Semaphore inFlight;
+    private final Gson gson = new GsonBuilder().create();
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Queue<BulkItem> rejected = new ConcurrentLinkedQueue<>();
+
+    private List<BulkItem> batch = new ArrayList<>();
+
+    /**
+     * @param restClient            the client to send requests with
+     * @param index                 the index to populate
+     * @param batchSize             the number of entries per _bulk request
+     * @param maxConcurrentRequests the maximum number of _bulk requests in flight
+     * @param maxRetries            how many times temporarily rejected entries are sent again
+     * @param retryBackoffMillis    how long to wait before sending rejected entries again, doubled on each retry
+     * @param expectedTotal         the number of entries expected, only used to report progress
+     */
+    public ElasticBulkIndexer(RestClient restClient, String index, int batchSize, int maxConcurrentRequests, int maxRetries,
+        int retryBackoffMillis, long expectedTotal) {
+        this.restClient = restClient;
+        this.index = index;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+        this.expectedTotal = expectedTotal;
+        this.inFlight = new Semaphore(this.maxConcurrentRequests);
+    }
+
+    /**
+     * Serialise a search document into the current batch, sending the batch once it is full.
+     * The document is not referenced after this returns.
+     *
+     * @param entry the search document of a published entry
+     */
+    public void add(EntrySearchDocument entry) {
+        Map<String, Map<String, String>> action = new HashMap<>();
+        Map<String, String> internal = new HashMap<>();
+        internal.put("_id", String.valueOf(entry.getId()));
+        internal.put("_type", entry.getType());
+        action.put("index", internal);
+        try {
+            String document = ElasticManager.SEARCH_DOCUMENT_WRITER.writeValueAsString(entry);
+            batch.add(new BulkItem(entry.getType() + " " + entry.getId(), gson.toJson(action) + '\n' + document + '\n'));
+        } catch (JsonProcessingException e) {
+            failed.incrementAndGet();
+            LOGGER.error("Could not convert entry " + entry.getId() + " to an index document. " + e.getMessage());
+        }
+        if (batch.size() >= batchSize) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * @return the number of entries elastic search has indexed so far
+     */
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    /**
+     * Sends the last partial batch, waits for all requests to complete and sends rejected entries again
+     *
+     * @return the number of entries indexed
+     * @throws CustomWebApplicationException if any entry could not be indexed
+     */
+    public long finish() {
+        submitBatch();
+        awaitInFlight();
+        for (int attempt = 0; attempt < maxRetries && !rejected.isEmpty(); attempt++) {
+            LOGGER.info("Sending " + rejected.size() + " entries that elastic search temporarily rejected again");
+            try {
+                Thread.sleep((long)retryBackoffMillis << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CustomWebApplicationException("Interrupted while indexing", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            }
+            for (BulkItem item = rejected.poll(); item != null; item = rejected.poll()) {
+                batch.add(item);
+                if (batch.size() >= batchSize) {
+                    submitBatch();
+                }
+            }
+            submitBatch();
+            awaitInFlight();
+        }
+        failed.addAndGet(rejected.size());
+        rejected.clear();
+        if (failed.get() > 0) {
+            throw new CustomWebApplicationException("Could not index " + failed.get() + " entries in elastic search",
+                HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        return indexed.get();
+    }
+
+    private void submitBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final List<BulkItem> items = batch;
+        StringBuilder body = new StringBuilder();
+        items.forEach(item -> body.append(item.lines));
+        NStringEntity bulkEntity = new NStringEntity(body.toString(), ContentType.APPLICATION_JSON);
+        batch = new ArrayList<>();
+        try {
+            // blocks once enough requests are in flight, which keeps the caller from reading further ahead
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomWebApplicationException("Interrupted while indexing", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        restClient.performRequestAsync("POST", "/" + index + "/_bulk", Collections.emptyMap(), bulkEntity, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                try {
+                    handleResponse(items, EntityUtils.toString(response.getEntity()));
+                } catch (IOException | RuntimeException e) {
+                    failed.addAndGet(items.size());
+                    LOGGER.error("Could not read the response of elastic search. " + e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                if (exception instanceof ResponseException
+                    && ((ResponseException)exception).getResponse().getStatusLine().getStatusCode() == HTTP_TOO_MANY_REQUESTS) {
+                    rejected.addAll(items);
+                } else {
+                    failed.addAndGet(items.size());
+                    LOGGER.error("Could not submit index to elastic search. " + exception.getMessage());
+                }
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Goes through the items of a _bulk response, which are in the order they were sent
+     *
+     * @param items        the items that were sent
+     * @param responseBody the body of the _bulk response
+     */
+    void handleResponse(List<BulkItem> items, String responseBody) {
+        JsonObject response = gson.fromJson(responseBody, JsonObject.class);
+        if (response.has("errors") && response.get("errors").getAsBoolean()) {
+            JsonArray results = response.getAsJsonArray("items");
+            int succeeded = 0;
+            for (int i = 0; i < items.size(); i++) {
+                JsonObject result = results.get(i).getAsJsonObject().getAsJsonObject("index");
+                if (!result.has("error")) {
+                    succeeded++;
+                    continue;
+                }
+                int status = result.get("status").getAsInt();
+                if (status == HTTP_TOO_MANY_REQUESTS || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    rejected.add(items.get(i));
+                } else {
+                    failed.incrementAndGet();
+                    LOGGER.error("Elastic search rejected " + items.get(i).description + ". " + result.get("error"));
+                }
+            }
+            indexed.addAndGet(succeeded);
+        } else {
+            indexed.addAndGet(items.size());
+        }
+        LOGGER.info("Indexed " + indexed.get() + " of " + expectedTotal + " entries");
+    }
+
+    private void awaitInFlight() {
+        try {
+            inFlight.acquire(maxConcurrentRequests);
+            inFlight.release(maxConcurrentRequests);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomWebApplicationException("Interrupted while indexing", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Waits for the requests in flight, without sending what is left. Call {@link #finish()} first to index everything.
+     */
+    @Override
+    public void close() {
+        awaitInFlight();
+    }
+
+    static final class BulkItem {
+        private final String description;
+        private final String lines;
+
+        BulkItem(String description, String lines) {
+            this.description = description;
+            this.lines = lines;
+        }
+    }
+}
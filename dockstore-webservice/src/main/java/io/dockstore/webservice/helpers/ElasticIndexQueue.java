@@ -0,0 +1,395 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects index updates for elastic search and sends them in the background as _bulk requests, so that request threads never
+ * wait on elastic search.
+ * Events are coalesced per entry, only the latest UPDATE or DELETE for an entry is sent.
+ * A batch is flushed when it reaches the configured size or after the flush interval, whichever comes first.
+ * Items that elastic search rejects within a _bulk request are retried when the rejection is temporary (too many requests or a
+ * server error) and logged otherwise.
+ * The queue holds at most the configured capacity of entries, past that changes to new entries wait for the queue to drain.
+ * While the index is rebuilt behind the alias, changes are sent to the new index as well, and the latest change to each entry is
+ * remembered so that it can be replayed over whatever the rebuild copied from the database earlier.
+ */
+public class ElasticIndexQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticIndexQueue.class);
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final Map<String, IndexEvent> pending = new LinkedHashMap<>();
+    private final Map<String, IndexEvent> changedDuringRebuild = new LinkedHashMap<>();
+    private String rebuildIndex = null;
+    private final Gson gson = new GsonBuilder().create();
+    private final int batchSize;
+    private final int flushIntervalMillis;
+    private final int maxRetries;
+    private final int retryBackoffMillis;
+    private final int capacity;
+
+    private final Timer flushTimer = new Timer();
+    private final Meter failedEvents = new Meter();
+    private ScheduledExecutorService executor = null;
+
+    public ElasticIndexQueue(DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig) {
+        this.batchSize = Math.max(1, esConfig.getIndexBatchSize());
+        this.flushIntervalMillis = Math.max(1, esConfig.getIndexFlushIntervalMillis());
+        this.maxRetries = Math.max(0, esConfig.getIndexMaxRetries());
+        this.retryBackoffMillis = Math.max(0, esConfig.getIndexRetryBackoffMillis());
+        this.capacity = Math.max(this.batchSize, esConfig.getIndexQueueCapacity());
+    }
+
+    /**
+     * Register queue depth, flush latency and failures with the Dropwizard metrics registry
+     *
+     * @param registry the application's metric registry
+     */
+    public void registerMetrics(MetricRegistry registry) {
+        registry.register(MetricRegistry.name(ElasticIndexQueue.class, "depth"), (Gauge<Integer>)this::size);
+        registry.register(MetricRegistry.name(ElasticIndexQueue.class, "flush"), flushTimer);
+        registry.register(MetricRegistry.name(ElasticIndexQueue.class, "failed"), failedEvents);
+    }
+
+    public synchronized void start() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("elastic-index-queue-%d").setDaemon(true).build());
+            executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background flushing and sends whatever is still pending
+     */
+    public void stop() {
+        ScheduledExecutorService oldExecutor;
+        synchronized (this) {
+            oldExecutor = executor;
+            executor = null;
+        }
+        if (oldExecutor != null) {
+            oldExecutor.shutdown();
+            try {
+                oldExecutor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Queue an index change for an entry, replacing any change for the same entry that has not been sent yet.
+     * When the queue is not running (i.e. outside of the Dropwizard lifecycle) the change is sent immediately.
+     * When the queue is full the caller waits until it has been drained, unless the change replaces one that is already queued.
+     *
+     * @param entryType "tool" or "workflow"
+     * @param id        the entry's id
+     * @param command   the index command
+     * @param document  the update document, ignored for DELETE
+     */
+    public void enqueue(String entryType, long id, ElasticMode command, String document) {
+        ScheduledExecutorService currentExecutor;
+        boolean full;
+        synchronized (this) {
+            String key = entryType + "/" + id;
+            if (!pending.containsKey(key) && pending.size() >= capacity && executor != null) {
+                executor.execute(this::flush);
+                while (!pending.containsKey(key) && pending.size() >= capacity && executor != null) {
+                    try {
+                        wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            // remove first so that the entry moves to the back of the queue
+            pending.remove(key);
+            IndexEvent event = new IndexEvent(entryType, id, command, document);
+            pending.put(key, event);
+            if (rebuildIndex != null) {
+                changedDuringRebuild.put(key, event);
+            }
+            full = pending.size() >= batchSize;
+            currentExecutor = executor;
+        }
+        if (currentExecutor == null) {
+            flush();
+        } else if (full) {
+            currentExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Start sending changes to an index being rebuilt as well as to the alias
+     *
+     * @param index the index being rebuilt
+     */
+    public synchronized void startRebuild(String index) {
+        rebuildIndex = index;
+        changedDuringRebuild.clear();
+    }
+
+    /**
+     * Send the latest change to every entry changed since the rebuild started to the rebuilt index, since the rebuild may have
+     * copied an entry from the database before it was changed. Changes keep going to both indices until the rebuild ends.
+     *
+     * @return the number of changes that could not be replayed
+     */
+    public int replayRebuildChanges() {
+        String index;
+        List<IndexEvent> changes;
+        synchronized (this) {
+            index = rebuildIndex;
+            changes = new ArrayList<>(changedDuringRebuild.values());
+        }
+        if (index == null) {
+            return 0;
+        }
+        int failed = 0;
+        for (int from = 0; from < changes.size(); from += batchSize) {
+            failed += send(changes.subList(from, Math.min(changes.size(), from + batchSize)), Collections.singletonList(index));
+        }
+        return failed;
+    }
+
+    /**
+     * Stop sending changes to the rebuilt index, once the alias points at it or the rebuild was abandoned
+     */
+    public synchronized void endRebuild() {
+        rebuildIndex = null;
+        changedDuringRebuild.clear();
+    }
+
+    /**
+     * @return the indices changes go to, null is the alias
+     */
+    private synchronized List<String> getTargetIndices() {
+        return rebuildIndex == null ? Collections.singletonList(null) : Arrays.asList(null, rebuildIndex);
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Send everything that is currently pending, one batch at a time
+     */
+    void flush() {
+        List<IndexEvent> batch = drain();
+        while (!batch.isEmpty()) {
+            try (Timer.Context ignored = flushTimer.time()) {
+                failedEvents.mark(send(batch, getTargetIndices()));
+            }
+            batch = drain();
+        }
+    }
+
+    /**
+     * Remove up to one batch of events from the front of the queue
+     *
+     * @return the events to send
+     */
+    synchronized List<IndexEvent> drain() {
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<IndexEvent> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<IndexEvent> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        // wake up callers waiting for room in the queue
+        notifyAll();
+        return batch;
+    }
+
+    /**
+     * Gets the newline delimited json for a _bulk request
+     *
+     * @param batch the events to send
+     * @return the body of the _bulk request
+     */
+    String getBulkBody(List<IndexEvent> batch) {
+        return getBulkBody(batch, getTargetIndices());
+    }
+
+    /**
+     * Gets the newline delimited json for a _bulk request that applies each event to each of the given indices
+     *
+     * @param batch   the events to send
+     * @param indices the indices to change, null for the index the request is sent to
+     * @return the body of the _bulk request
+     */
+    String getBulkBody(List<IndexEvent> batch, List<String> indices) {
+        StringBuilder builder = new StringBuilder();
+        for (IndexEvent event : batch) {
+            for (String index : indices) {
+                Map<String, String> internal = new LinkedHashMap<>();
+                if (index != null) {
+                    internal.put("_index", index);
+                }
+                internal.put("_id", String.valueOf(event.id));
+                internal.put("_type", event.entryType);
+                Map<String, Map<String, String>> action = new LinkedHashMap<>();
+                switch (event.command) {
+                case UPDATE:
+                    action.put("update", internal);
+                    builder.append(gson.toJson(action)).append('\n');
+                    builder.append(event.document).append('\n');
+                    break;
+                case DELETE:
+                    action.put("delete", internal);
+                    builder.append(gson.toJson(action)).append('\n');
+                    break;
+                default:
+                    LOGGER.error("Unrecognized Elasticsearch command: " + event.command);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Send a batch, retrying the whole batch when the request fails and the items elastic search rejected temporarily otherwise
+     *
+     * @param batch   the events to send
+     * @param indices the indices to change, null for the alias
+     * @return the number of events that could not be indexed
+     */
+    private int send(List<IndexEvent> batch, List<String> indices) {
+        List<IndexEvent> remaining = batch;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            String body = getBulkBody(remaining, indices);
+            if (body.isEmpty()) {
+                return 0;
+            }
+            if (attempt > 0) {
+                try {
+                    Thread.sleep((long)retryBackoffMillis << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return remaining.size();
+                }
+            }
+            try {
+                HttpEntity bulkEntity = new NStringEntity(body, ContentType.APPLICATION_JSON);
+                org.elasticsearch.client.Response post = ElasticManager.getRestClient()
+                        .performRequest("POST", "/entry/_bulk", Collections.emptyMap(), bulkEntity);
+                if (post.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                    int sent = remaining.size();
+                    remaining = getRetryableFailures(remaining, EntityUtils.toString(post.getEntity()));
+                    if (remaining.isEmpty()) {
+                        return 0;
+                    }
+                    LOGGER.info(remaining.size() + " of " + sent + " index updates were temporarily rejected by elastic search.");
+                } else {
+                    LOGGER.info("Could not submit index to elastic search. " + post.getStatusLine().getReasonPhrase());
+                }
+            } catch (IOException e) {
+                LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
+            }
+        }
+        return remaining.size();
+    }
+
+    /**
+     * Goes through the items of a _bulk response, logging and counting the items that failed for good
+     *
+     * @param batch        the events that were sent
+     * @param responseBody the body of the _bulk response
+     * @return the events whose items failed but may succeed if sent again
+     */
+    List<IndexEvent> getRetryableFailures(List<IndexEvent> batch, String responseBody) {
+        JsonObject response = gson.fromJson(responseBody, JsonObject.class);
+        if (response == null || !response.has("errors") || !response.get("errors").getAsBoolean()) {
+            return Collections.emptyList();
+        }
+        Map<String, IndexEvent> events = new LinkedHashMap<>();
+        batch.forEach(event -> events.put(event.entryType + "/" + event.id, event));
+        Set<IndexEvent> retryable = new LinkedHashSet<>();
+        for (JsonElement item : response.getAsJsonArray("items")) {
+            // each item is keyed by its action, e.g. {"update": {"_type": "tool", "_id": "1", "status": 200}}
+            for (Map.Entry<String, JsonElement> action : item.getAsJsonObject().entrySet()) {
+                JsonObject result = action.getValue().getAsJsonObject();
+                if (!result.has("error")) {
+                    continue;
+                }
+                IndexEvent event = events.get(result.get("_type").getAsString() + "/" + result.get("_id").getAsString());
+                int status = result.get("status").getAsInt();
+                if (event != null && (status == HTTP_TOO_MANY_REQUESTS || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR)) {
+                    retryable.add(event);
+                } else {
+                    failedEvents.mark();
+                    LOGGER.error("Elastic search rejected " + action.getKey() + " of " + result.get("_type").getAsString() + " "
+                            + result.get("_id").getAsString() + ". " + result.get("error"));
+                }
+            }
+        }
+        return new ArrayList<>(retryable);
+    }
+
+    static class IndexEvent {
+        private final String entryType;
+        private final long id;
+        private final ElasticMode command;
+        private final String document;
+
+        IndexEvent(String entryType, long id, ElasticMode command, String document) {
+            this.entryType = entryType;
+            this.id = id;
+            this.command = command;
+            this.document = document;
+        }
+
+        ElasticMode getCommand() {
+            return command;
+        }
+    }
+}
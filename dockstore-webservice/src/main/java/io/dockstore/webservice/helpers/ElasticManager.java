@@ -16,25 +16,31 @@
 package io.dockstore.webservice.helpers;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import io.dockstore.webservice.CustomWebApplicationException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.Tool;
 import io.dropwizard.jackson.Jackson;
+import io.dropwizard.lifecycle.Managed;
+import io.swagger.api.impl.GA4GHToolCache;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,11 +49,22 @@ import org.slf4j.LoggerFactory;
  * @author gluu
  * @since 26/07/17
  */
-public class ElasticManager {
+public class ElasticManager implements Managed {
+    /**
+     * The name search clients use, an alias to the versioned index currently being served
+     */
+    public static final String ENTRY_ALIAS = "entry";
     public static DockstoreWebserviceConfiguration config;
     private static String hostname;
     private static int port;
+    private static RestClient restClient;
+    private static ElasticIndexQueue indexQueue;
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticManager.class);
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    /**
+     * Shared by everything that writes search documents, ObjectWriter is immutable and thread-safe
+     */
+    static final ObjectWriter SEARCH_DOCUMENT_WRITER = MAPPER.writerFor(Object.class);
 
     public ElasticManager() {
 
@@ -61,6 +78,51 @@ public class ElasticManager {
         ElasticManager.config = config;
         ElasticManager.hostname = config.getEsConfiguration().getHostname();
         ElasticManager.port = config.getEsConfiguration().getPort();
+        ElasticManager.indexQueue = new ElasticIndexQueue(config.getEsConfiguration());
+    }
+
+    public static void registerMetrics(MetricRegistry registry) {
+        indexQueue.registerMetrics(registry);
+    }
+
+    /**
+     * Returns the shared, connection-pooled client used for all communication with elastic search.
+     * The client is normally created when the application starts, but is created lazily for callers outside of the Dropwizard lifecycle.
+     *
+     * @return the shared elastic search client
+     */
+    public static synchronized RestClient getRestClient() {
+        if (restClient == null) {
+            DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig = config.getEsConfiguration();
+            restClient = RestClient.builder(new HttpHost(ElasticManager.hostname, ElasticManager.port, "http"))
+                    .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder.setConnectTimeout(esConfig.getConnectTimeoutMillis())
+                            .setSocketTimeout(esConfig.getSocketTimeoutMillis()))
+                    .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.setMaxConnTotal(esConfig.getMaxConnections())
+                            .setMaxConnPerRoute(esConfig.getMaxConnectionsPerRoute()))
+                    .setMaxRetryTimeoutMillis(esConfig.getMaxRetryTimeoutMillis()).build();
+        }
+        return restClient;
+    }
+
+    private static synchronized void closeRestClient() throws IOException {
+        if (restClient != null) {
+            restClient.close();
+            restClient = null;
+        }
+    }
+
+    @Override
+    public void start() {
+        if (ElasticManager.hostname != null && !ElasticManager.hostname.isEmpty()) {
+            getRestClient();
+            indexQueue.start();
+        }
+    }
+
+    @Override
+    public void stop() throws IOException {
+        indexQueue.stop();
+        closeRestClient();
     }
 
     /**
@@ -70,27 +132,28 @@ public class ElasticManager {
      * @return The entry converted into a json string
      */
     private String getDocumentValueFromEntry(Entry entry) {
-        ObjectMapper mapper = Jackson.newObjectMapper();
-        StringBuilder builder = new StringBuilder();
         Map<String, Object> doc = new HashMap<>();
-        doc.put("doc", entry);
+        doc.put("doc", EntrySearchDocument.fromEntry(entry));
         doc.put("doc_as_upsert", true);
         try {
-            builder.append(mapper.writeValueAsString(doc));
+            return SEARCH_DOCUMENT_WRITER.writeValueAsString(doc);
         } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            LOGGER.error("Could not convert entry " + entry.getId() + " to an index document. " + e.getMessage());
+            return null;
         }
-        return builder.toString();
     }
 
     /**
-     * This handles the index for elastic search
+     * This handles the index for elastic search.
+     * The change is queued and sent in the background, see ElasticIndexQueue.
+     * Every change to an entry ends up here, so the cached GA4GH representation of the entry is dropped here as well.
      *
      * @param entry   The entry to be converted into a document
      * @param command The command to perform for the document, either "update" or "delete" document
      */
     public void handleIndexUpdate(Entry entry, ElasticMode command) {
         LOGGER.info("Performing index update with " + command + ".");
+        GA4GHToolCache.invalidate(entry.getId());
         if (ElasticManager.hostname == null || ElasticManager.hostname.isEmpty()) {
             LOGGER.error("No elastic search host found.");
             return;
@@ -99,31 +162,16 @@ public class ElasticManager {
             LOGGER.error("Could not perform the elastic search index update.");
             return;
         }
-        String json = getDocumentValueFromEntry(entry);
-        try (RestClient restClient = RestClient.builder(new HttpHost(ElasticManager.hostname, ElasticManager.port, "http")).build()) {
-            String entryType = entry instanceof Tool ? "tool" : "workflow";
-            HttpEntity entity = new NStringEntity(json, ContentType.APPLICATION_JSON);
-            org.elasticsearch.client.Response post;
-            switch (command) {
-            case UPDATE:
-                post = restClient
-                        .performRequest("POST", "/entry/" + entryType + "/" + entry.getId() + "/_update", Collections.emptyMap(), entity);
-                break;
-            case DELETE:
-                post = restClient.performRequest("DELETE", "/entry/" + entryType + "/" + entry.getId(), Collections.emptyMap(), entity);
-                break;
-            default:
-                throw new RuntimeException("Unknown index command: " + command);
+        String entryType = entry instanceof Tool ? "tool" : "workflow";
+        // the document must be built now, while the entry is still attached to its session
+        String json = null;
+        if (command == ElasticMode.UPDATE) {
+            json = getDocumentValueFromEntry(entry);
+            if (json == null) {
+                return;
             }
-            int statusCode = post.getStatusLine().getStatusCode();
-            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
-                LOGGER.info("Successful " + command + ".");
-            } else {
-                LOGGER.info("Could not submit index to elastic search. " + post.getStatusLine().getReasonPhrase());
-            }
-        } catch (IOException e) {
-            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
         }
+        indexQueue.enqueue(entryType, entry.getId(), command, json);
     }
 
     /**
@@ -152,43 +200,121 @@ public class ElasticManager {
     }
 
     public void bulkUpsert(List<Entry> entries) {
-        try (RestClient restClient = RestClient.builder(new HttpHost(ElasticManager.hostname, ElasticManager.port, "http")).build()) {
-            String newlineDJSON = getNDJSON(entries);
-            HttpEntity bulkEntity = new NStringEntity(newlineDJSON, ContentType.APPLICATION_JSON);
-            org.elasticsearch.client.Response post = restClient.performRequest("POST", "/entry/_bulk", Collections.emptyMap(), bulkEntity);
-            if (post.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
-                throw new CustomWebApplicationException("Could not submit index to elastic search", HttpStatus.SC_INTERNAL_SERVER_ERROR);
-            }
-        } catch (IOException e) {
-            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
+        try (ElasticBulkIndexer indexer = createBulkIndexer(ENTRY_ALIAS, entries.size())) {
+            entries.forEach(entry -> indexer.add(EntrySearchDocument.fromEntry(entry)));
+            indexer.finish();
+        }
+    }
+
+    /**
+     * Creates an indexer that streams entries into an index in fixed-size batches
+     *
+     * @param index         the index to populate
+     * @param expectedTotal the number of entries that will be added, used to report progress
+     * @return an indexer that must be finished once all entries are added, and closed
+     */
+    public ElasticBulkIndexer createBulkIndexer(String index, long expectedTotal) {
+        DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig = config.getEsConfiguration();
+        return new ElasticBulkIndexer(getRestClient(), index, esConfig.getReindexBatchSize(), esConfig.getReindexConcurrentRequests(),
+                esConfig.getIndexMaxRetries(), esConfig.getIndexRetryBackoffMillis(), expectedTotal);
+    }
+
+    /**
+     * Creates a new, empty index with a unique name to be populated and later swapped in with {@link #swapEntryAlias(String)}
+     *
+     * @param mapping the index mapping and settings
+     * @return the name of the new index
+     * @throws IOException when elastic search cannot be reached
+     */
+    public String createVersionedIndex(String mapping) throws IOException {
+        String index = ENTRY_ALIAS + "_" + System.currentTimeMillis();
+        HttpEntity mappingEntity = new NStringEntity(mapping, ContentType.APPLICATION_JSON);
+        getRestClient().performRequest("PUT", "/" + index, Collections.emptyMap(), mappingEntity);
+        return index;
+    }
+
+    /**
+     * Send index changes to a new index as well as to the alias while the new index is populated, see ElasticIndexQueue
+     *
+     * @param newIndex the index being populated
+     */
+    public void startRebuild(String newIndex) {
+        indexQueue.startRebuild(newIndex);
+    }
+
+    /**
+     * Apply the changes made while a new index was populated over what was copied into it
+     *
+     * @return the number of changes that could not be applied
+     */
+    public int replayRebuildChanges() {
+        return indexQueue.replayRebuildChanges();
+    }
+
+    /**
+     * Stop sending index changes to the new index, once it is served or abandoned
+     */
+    public void endRebuild() {
+        indexQueue.endRebuild();
+    }
+
+    /**
+     * Atomically points the entry alias at a newly populated index and then deletes the indices it used to point at,
+     * so that searches never see an empty or partially populated index
+     *
+     * @param newIndex the fully populated index
+     * @throws IOException when elastic search cannot be reached
+     */
+    public void swapEntryAlias(String newIndex) throws IOException {
+        RestClient client = getRestClient();
+        Set<String> oldIndices = getIndicesForEntryAlias();
+        if (oldIndices.isEmpty() && client.performRequest("HEAD", "/" + ENTRY_ALIAS).getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+            // an index from before aliases were used occupies the name, it has to go before the alias can be created
+            LOGGER.info("Deleting legacy index " + ENTRY_ALIAS + " to replace it with an alias");
+            client.performRequest("DELETE", "/" + ENTRY_ALIAS);
+        }
+        List<Map<String, Map<String, String>>> actions = new ArrayList<>();
+        oldIndices.forEach(oldIndex -> actions.add(aliasAction("remove", oldIndex)));
+        actions.add(aliasAction("add", newIndex));
+        String body = MAPPER.writeValueAsString(Collections.singletonMap("actions", actions));
+        client.performRequest("POST", "/_aliases", Collections.emptyMap(), new NStringEntity(body, ContentType.APPLICATION_JSON));
+        for (String oldIndex : oldIndices) {
+            deleteIndex(oldIndex);
         }
     }
 
     /**
-     * Gets the json used for bulk insert
+     * Deletes an index, logging rather than failing if it cannot be deleted
      *
-     * @param publishedEntries A list of published entries
-     * @return The json used for bulk insert
+     * @param index the index to delete
      */
-    private String getNDJSON(List<Entry> publishedEntries) {
-        ObjectMapper mapper = Jackson.newObjectMapper();
-        Gson gson = new GsonBuilder().create();
-        StringBuilder builder = new StringBuilder();
-        publishedEntries.forEach(entry -> {
-            Map<String, Map<String, String>> index = new HashMap<>();
-            Map<String, String> internal = new HashMap<>();
-            internal.put("_id", String.valueOf(entry.getId()));
-            internal.put("_type", entry instanceof Tool ? "tool" : "workflow");
-            index.put("index", internal);
-            builder.append(gson.toJson(index));
-            builder.append('\n');
-            try {
-                builder.append(mapper.writeValueAsString(entry));
-            } catch (JsonProcessingException e) {
-                e.printStackTrace();
+    public void deleteIndex(String index) {
+        try {
+            getRestClient().performRequest("DELETE", "/" + index);
+        } catch (IOException e) {
+            LOGGER.error("Could not delete index " + index + ". " + e.getMessage());
+        }
+    }
+
+    private Set<String> getIndicesForEntryAlias() throws IOException {
+        try {
+            org.elasticsearch.client.Response response = getRestClient().performRequest("GET", "/_alias/" + ENTRY_ALIAS);
+            JsonNode indices = MAPPER.readTree(response.getEntity().getContent());
+            Set<String> names = new HashSet<>();
+            indices.fieldNames().forEachRemaining(names::add);
+            return names;
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                return Collections.emptySet();
             }
-            builder.append('\n');
-        });
-        return builder.toString();
+            throw e;
+        }
+    }
+
+    private static Map<String, Map<String, String>> aliasAction(String action, String index) {
+        Map<String, String> target = new HashMap<>();
+        target.put("index", index);
+        target.put("alias", ENTRY_ALIAS);
+        return Collections.singletonMap(action, target);
     }
 }
@@ -0,0 +1,271 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dockstore.common.Registry;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.Version;
+import io.dockstore.webservice.core.Workflow;
+
+/**
+ * The document that is stored in the elastic search index for an entry.
+ * Only the fields that are searched or shown in search results are kept, source files, users and the rest of the entry graph
+ * are left out. Field names match the JSON of the entries themselves so that existing queries and facets keep working.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class EntrySearchDocument {
+
+    @JsonProperty
+    private long id;
+    @JsonIgnore
+    private boolean tool;
+    @JsonProperty
+    private String path;
+    @JsonProperty
+    private String author;
+    @JsonProperty
+    private String description;
+    @JsonProperty
+    private String email;
+    @JsonProperty
+    private String gitUrl;
+    @JsonProperty("is_published")
+    private boolean published = true;
+    @JsonProperty
+    private Date lastUpdated;
+
+    // tool fields
+    @JsonProperty("tool_path")
+    private String toolPath;
+    @JsonProperty
+    private String registry;
+    @JsonProperty
+    private String namespace;
+    @JsonProperty
+    private String name;
+    @JsonProperty
+    private String toolname;
+    @JsonProperty("private_access")
+    private Boolean privateAccess;
+
+    // workflow fields
+    @JsonProperty("full_workflow_path")
+    private String workflowPath;
+    @JsonProperty("source_control_provider")
+    private String sourceControlProvider;
+    @JsonProperty
+    private String organization;
+    @JsonProperty
+    private String repository;
+    @JsonProperty
+    private String workflowName;
+
+    @JsonProperty
+    private Set<String> descriptorType = new TreeSet<>();
+    @JsonProperty
+    private List<ValueHolder> labels = new ArrayList<>();
+    @JsonProperty
+    private List<IdHolder> starredUsers = new ArrayList<>();
+    @JsonIgnore
+    private List<VersionSummary> versions = new ArrayList<>();
+    @JsonProperty("input_file_formats")
+    private Set<ValueHolder> inputFileFormats = new TreeSet<>();
+    @JsonProperty("output_file_formats")
+    private Set<ValueHolder> outputFileFormats = new TreeSet<>();
+
+    private EntrySearchDocument(long id, boolean tool) {
+        this.id = id;
+        this.tool = tool;
+    }
+
+    public static EntrySearchDocument forTool(long id, String registry, String namespace, String name, String toolname, boolean privateAccess) {
+        EntrySearchDocument document = new EntrySearchDocument(id, true);
+        Registry registryProvider = Tool.getRegistryProvider(registry);
+        document.registry = registryProvider == null ? null : registryProvider.name();
+        document.namespace = namespace;
+        document.name = name;
+        document.toolname = toolname;
+        document.privateAccess = privateAccess;
+        document.path = registry + '/' + namespace + '/' + name;
+        document.toolPath = document.path + (toolname == null || toolname.isEmpty() ? "" : '/' + toolname);
+        return document;
+    }
+
+    public static EntrySearchDocument forWorkflow(long id, String sourceControl, String sourceControlProvider, String organization,
+        String repository, String workflowName) {
+        EntrySearchDocument document = new EntrySearchDocument(id, false);
+        document.sourceControlProvider = sourceControlProvider;
+        document.organization = organization;
+        document.repository = repository;
+        document.workflowName = workflowName;
+        document.path = sourceControl + '/' + organization + '/' + repository;
+        document.workflowPath = document.path + (workflowName == null || workflowName.isEmpty() ? "" : '/' + workflowName);
+        return document;
+    }
+
+    /**
+     * Builds the document from an entry that is already loaded, used for single index updates
+     *
+     * @param entry a tool or workflow
+     * @return the search document for the entry
+     */
+    public static EntrySearchDocument fromEntry(Entry<?, ?> entry) {
+        EntrySearchDocument document;
+        if (entry instanceof Tool) {
+            Tool tool = (Tool)entry;
+            document = forTool(tool.getId(), tool.getRegistry(), tool.getNamespace(), tool.getName(), tool.getToolname(),
+                tool.isPrivateAccess());
+            document.descriptorType.addAll(tool.getDescriptorType());
+        } else {
+            Workflow workflow = (Workflow)entry;
+            document = forWorkflow(workflow.getId(), workflow.getSourceControl().toString(), workflow.getSourceControlProvider(),
+                workflow.getOrganization(), workflow.getRepository(), workflow.getWorkflowName());
+            document.addDescriptorType(workflow.getDescriptorType());
+        }
+        document.setDetails(entry.getAuthor(), entry.getDescription(), entry.getEmail(), entry.getGitUrl(), entry.getLastUpdated());
+        document.published = entry.getIsPublished();
+        entry.getLabels().forEach(label -> document.addLabel(label.getValue()));
+        entry.getStarredUsers().forEach(user -> document.addStarredUser(user.getId()));
+        for (Version<?> version : entry.getVersions()) {
+            document.addVersion(version.getName(), version.isVerified(), version.getVerifiedSource());
+            version.getInputFileFormats().forEach(format -> document.addInputFileFormat(format.getValue()));
+            version.getOutputFileFormats().forEach(format -> document.addOutputFileFormat(format.getValue()));
+        }
+        return document;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public String getType() {
+        return tool ? "tool" : "workflow";
+    }
+
+    public void setDetails(String newAuthor, String newDescription, String newEmail, String newGitUrl, Date newLastUpdated) {
+        this.author = newAuthor;
+        this.description = newDescription;
+        this.email = newEmail;
+        this.gitUrl = newGitUrl;
+        this.lastUpdated = newLastUpdated;
+    }
+
+    public void addDescriptorType(String type) {
+        if (type != null) {
+            descriptorType.add(type);
+        }
+    }
+
+    public void addLabel(String value) {
+        labels.add(new ValueHolder(value));
+    }
+
+    public void addStarredUser(long userId) {
+        starredUsers.add(new IdHolder(userId));
+    }
+
+    public void addVersion(String versionName, boolean verified, String verifiedSource) {
+        versions.add(new VersionSummary(versionName, verified, verifiedSource));
+    }
+
+    public void addInputFileFormat(String value) {
+        inputFileFormats.add(new ValueHolder(value));
+    }
+
+    public void addOutputFileFormat(String value) {
+        outputFileFormats.add(new ValueHolder(value));
+    }
+
+    @JsonProperty
+    public int getStars() {
+        return starredUsers.size();
+    }
+
+    @JsonProperty("tags")
+    public List<VersionSummary> getTags() {
+        return tool ? versions : null;
+    }
+
+    @JsonProperty("workflowVersions")
+    public List<VersionSummary> getWorkflowVersions() {
+        return tool ? null : versions;
+    }
+
+    /**
+     * Same shape as labels and file formats in the entry JSON
+     */
+    public static class ValueHolder implements Comparable<ValueHolder> {
+        @JsonProperty
+        private final String value;
+
+        ValueHolder(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(ValueHolder that) {
+            return String.valueOf(this.value).compareTo(String.valueOf(that.value));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ValueHolder && compareTo((ValueHolder)o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return String.valueOf(value).hashCode();
+        }
+    }
+
+    /**
+     * Same shape as starred users in the entry JSON, see EntryStarredSerializer
+     */
+    public static class IdHolder {
+        @JsonProperty
+        private final long id;
+
+        IdHolder(long id) {
+            this.id = id;
+        }
+    }
+
+    public static class VersionSummary {
+        @JsonProperty
+        private final String name;
+        @JsonProperty
+        private final boolean verified;
+        @JsonProperty
+        private final String verifiedSource;
+
+        VersionSummary(String name, boolean verified, String verifiedSource) {
+            this.name = name;
+            this.verified = verified;
+            this.verifiedSource = verifiedSource;
+        }
+    }
+}
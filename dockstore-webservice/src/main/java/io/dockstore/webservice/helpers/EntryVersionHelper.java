@@ -50,6 +50,7 @@ import io.dockstore.webservice.resources.AuthenticatedResourceInterface;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.http.HttpStatus;
+import org.hibernate.Hibernate;
 
 /**
  * This interface contains code for interacting with the files of versions for all types of entries (currently, tools and workflows)
@@ -125,8 +126,9 @@ public interface EntryVersionHelper<T extends Entry<T, U>, U extends Version, W
             // clear users which are also lazy loaded
             entry.setUsers(null);
             // need to have this evicted so that hibernate does not actually delete the tags and users
+            // source files are lazy, listings normally do not load them at all
             Set<Version> versions = entry.getVersions();
-            versions.forEach(version ->
+            versions.stream().filter(version -> Hibernate.isInitialized(version.getSourceFiles())).forEach(version ->
                 version.getSourceFiles().forEach(sourceFile ->
                         ((SourceFile)sourceFile).setContent(null))
             );
@@ -0,0 +1,313 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.apache.http.HttpStatus;
+import org.kohsuke.github.GitHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes GitHub workflows with the GitHub GraphQL API.
+ * All branches and tags with their commit dates, and the descriptor and test parameter file of every version, are read in a handful of
+ * batched queries instead of several REST calls per branch or tag. Everything else is left to the REST implementation, as are files
+ * that cannot be read directly from a blob, such as symbolic links.
+ */
+public class GitHubGraphQLSourceCodeRepo extends GitHubSourceCodeRepo {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GitHubGraphQLSourceCodeRepo.class);
+    private static final String GRAPHQL_URL = "https://api.github.com/graphql";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final OkHttpClient CLIENT = new OkHttpClient();
+    private static final int REFS_PER_PAGE = 100;
+    /**
+     * git file mode of a symbolic link, 0120000 in octal
+     */
+    private static final int SYMLINK_MODE = 40960;
+
+    private static final String REFS_QUERY = "query($owner: String!, $name: String!, $prefix: String!, $cursor: String) {"
+        + " rateLimit { cost remaining }"
+        + " repository(owner: $owner, name: $name) {"
+        + "  refs(refPrefix: $prefix, first: " + REFS_PER_PAGE + ", after: $cursor) {"
+        + "   pageInfo { hasNextPage endCursor }"
+        + "   nodes { name target { oid ... on Commit { committedDate } ... on Tag { target { oid ... on Commit { committedDate } } } } }"
+        + "  }"
+        + " }"
+        + "}";
+
+    private final String githubTokenContent;
+    private final int batchSize;
+    private final HttpUrl graphqlUrl;
+    private final Gson gson = new Gson();
+
+    GitHubGraphQLSourceCodeRepo(String gitUsername, String githubTokenContent, int batchSize) {
+        super(gitUsername, githubTokenContent);
+        this.githubTokenContent = githubTokenContent;
+        this.batchSize = Math.max(1, batchSize);
+        this.graphqlUrl = HttpUrl.parse(GRAPHQL_URL);
+    }
+
+    /**
+     * @param github an already connected client for the REST API, for tests
+     * @param graphqlUrl where to send GraphQL queries, for tests
+     */
+    GitHubGraphQLSourceCodeRepo(String gitUsername, GitHub github, String githubTokenContent, int batchSize, HttpUrl graphqlUrl) {
+        super(gitUsername, github);
+        this.githubTokenContent = githubTokenContent;
+        this.batchSize = Math.max(1, batchSize);
+        this.graphqlUrl = graphqlUrl;
+    }
+
+    @Override
+    public Workflow setupWorkflowVersions(String repositoryId, Workflow workflow, Optional<Workflow> existingWorkflow,
+            Map<String, WorkflowVersion> existingDefaults) {
+        String owner = StringUtils.substringBefore(repositoryId, "/");
+        String name = StringUtils.substringAfter(repositoryId, "/");
+
+        // when getting a full workflow, look for versions and check each version for valid workflows
+        List<Triple<String, Date, String>> references = new ArrayList<>();
+        try {
+            references.addAll(getReferences(owner, name, "refs/heads/"));
+            references.addAll(getReferences(owner, name, "refs/tags/"));
+        } catch (IOException e) {
+            LOG.info(gitUsername + ": Cannot get branches or tags for workflow {}");
+            throw new CustomWebApplicationException("Could not reach GitHub, please try again later", HttpStatus.SC_SERVICE_UNAVAILABLE);
+        }
+
+        List<WorkflowVersion> versions = new ArrayList<>();
+        for (Triple<String, Date, String> ref : references) {
+            WorkflowVersion version = initializeWorkflowVersion(ref.getLeft(), existingWorkflow, existingDefaults);
+            version.setLastModified(ref.getMiddle());
+            version.setCommitID(ref.getRight());
+            // versions still at the same commit are not read again
+            if (reuseUnchangedVersion(workflow, version, existingDefaults)) {
+                workflow.addWorkflowVersion(version);
+            } else {
+                versions.add(version);
+            }
+        }
+
+        // read the files of a batch of versions per query, in reference order
+        for (List<WorkflowVersion> batch : Lists.partition(versions, batchSize)) {
+            List<Pair<String, String>> contents = readVersionFiles(owner, name, repositoryId, workflow, batch);
+            for (int i = 0; i < batch.size(); i++) {
+                addWorkflowVersion(repositoryId, workflow, batch.get(i), contents.get(i), existingDefaults);
+            }
+        }
+        return workflow;
+    }
+
+    /**
+     * @param prefix either refs/heads/ or refs/tags/
+     * @return the name, commit date and commit SHA of every reference with the prefix
+     */
+    List<Triple<String, Date, String>> getReferences(String owner, String name, String prefix) throws IOException {
+        List<Triple<String, Date, String>> references = new ArrayList<>();
+        String cursor = null;
+        boolean hasNextPage = true;
+        while (hasNextPage) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("owner", owner);
+            variables.put("name", name);
+            variables.put("prefix", prefix);
+            variables.put("cursor", cursor);
+            JsonObject refs = getRepository(query(REFS_QUERY, variables)).getAsJsonObject("refs");
+            for (JsonElement node : refs.getAsJsonArray("nodes")) {
+                JsonObject ref = node.getAsJsonObject();
+                JsonObject target = ref.getAsJsonObject("target");
+                // annotated tags point at a tag object, which in turn points at the commit
+                if (target.has("target")) {
+                    target = target.getAsJsonObject("target");
+                }
+                Date commitDate = new Date(0);
+                if (target.has("committedDate")) {
+                    Date date = Date.from(Instant.parse(target.get("committedDate").getAsString()));
+                    commitDate = date.before(commitDate) ? commitDate : date;
+                }
+                references.add(Triple.of(ref.get("name").getAsString(), commitDate, target.get("oid").getAsString()));
+            }
+            JsonObject pageInfo = refs.getAsJsonObject("pageInfo");
+            hasNextPage = pageInfo.get("hasNextPage").getAsBoolean();
+            cursor = hasNextPage ? pageInfo.get("endCursor").getAsString() : null;
+        }
+        return references;
+    }
+
+    /**
+     * Reads the descriptor and test parameter file of a batch of versions in one query.
+     * Files that cannot be read from a blob at the version's commit are read with the REST API instead.
+     * @return the content of the descriptor and of the test parameter file for each version, in the same order as the versions
+     */
+    List<Pair<String, String>> readVersionFiles(String owner, String name, String repositoryId, Workflow workflow,
+            List<WorkflowVersion> versions) {
+        StringBuilder fields = new StringBuilder();
+        for (int i = 0; i < versions.size(); i++) {
+            WorkflowVersion version = versions.get(i);
+            appendFileFields(fields, "d" + i, repositoryId, version.getCommitID(), version.getWorkflowPath());
+            if (readsTestParameterFile(workflow, version)) {
+                appendFileFields(fields, "t" + i, repositoryId, version.getCommitID(), workflow.getDefaultTestParameterFilePath());
+            }
+        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("owner", owner);
+        variables.put("name", name);
+        JsonObject repository = null;
+        try {
+            // when every file is cached there is nothing left to query
+            repository = fields.length() == 0 ? null : getRepository(query("query($owner: String!, $name: String!) { rateLimit { cost remaining } "
+                + "repository(owner: $owner, name: $name) {" + fields + " } }", variables));
+        } catch (IOException | RuntimeException e) {
+            LOG.info(gitUsername + ": could not read files with GraphQL, falling back to REST", e);
+        }
+
+        List<Pair<String, String>> contents = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            WorkflowVersion version = versions.get(i);
+            String descriptor = getFile(repository, "d" + i, repositoryId, version.getWorkflowPath(), version);
+            String testParameterFile = null;
+            if (descriptor != null && readsTestParameterFile(workflow, version)) {
+                testParameterFile = getFile(repository, "t" + i, repositoryId, workflow.getDefaultTestParameterFilePath(), version);
+            }
+            contents.add(Pair.of(descriptor, testParameterFile));
+        }
+        return contents;
+    }
+
+    /**
+     * Use default test parameter file if either new version or existing version that hasn't been edited
+     */
+    private boolean readsTestParameterFile(Workflow workflow, WorkflowVersion version) {
+        return !version.isDirtyBit() && workflow.getDefaultTestParameterFilePath() != null;
+    }
+
+    /**
+     * Adds the blob at a path, and the entries of its parent directory to tell symbolic links apart, to a query
+     */
+    private void appendFileFields(StringBuilder fields, String alias, String repositoryId, String sha, String path) {
+        if (sha == null || path == null || CommitFileCache.getIfPresent(repositoryId, sha, path) != null) {
+            return;
+        }
+        String filePath = StringUtils.stripStart(path, "/");
+        String directory = FilenameUtils.getPathNoEndSeparator(filePath);
+        fields.append(' ').append(alias).append(": object(expression: ").append(gson.toJson(sha + ':' + filePath))
+            .append(") { ... on Blob { text isBinary isTruncated } }");
+        fields.append(' ').append(alias).append("dir: object(expression: ").append(gson.toJson(sha + ':' + directory))
+            .append(") { ... on Tree { entries { name mode } } }");
+    }
+
+    private String getFile(JsonObject repository, String alias, String repositoryId, String path, WorkflowVersion version) {
+        return CommitFileCache.get(repositoryId, version.getCommitID(), path, () -> getUncachedFile(repository, alias, repositoryId, path,
+            version));
+    }
+
+    private String getUncachedFile(JsonObject repository, String alias, String repositoryId, String path, WorkflowVersion version) {
+        if (repository != null && repository.has(alias)) {
+            if (repository.get(alias).isJsonNull()) {
+                // nothing at that path, unless one of the directories on it is a symbolic link
+                if (repository.has(alias + "dir") && !repository.get(alias + "dir").isJsonNull()) {
+                    return null;
+                }
+            } else {
+                JsonObject blob = repository.getAsJsonObject(alias);
+                if (blob.has("text") && !blob.get("text").isJsonNull() && !blob.get("isTruncated").getAsBoolean() && !isSymlink(repository,
+                    alias, path)) {
+                    return blob.get("text").getAsString();
+                }
+            }
+        }
+        return readFile(repositoryId, path, commitOrReference(version));
+    }
+
+    private boolean isSymlink(JsonObject repository, String alias, String path) {
+        String fileName = FilenameUtils.getName(path);
+        if (!repository.has(alias + "dir") || repository.get(alias + "dir").isJsonNull()) {
+            return true;
+        }
+        for (JsonElement entry : repository.getAsJsonObject(alias + "dir").getAsJsonArray("entries")) {
+            JsonObject treeEntry = entry.getAsJsonObject();
+            if (fileName.equals(treeEntry.get("name").getAsString())) {
+                return treeEntry.get("mode").getAsInt() == SYMLINK_MODE;
+            }
+        }
+        return true;
+    }
+
+    private JsonObject getRepository(JsonObject data) throws IOException {
+        if (data == null || !data.has("repository") || data.get("repository").isJsonNull()) {
+            throw new IOException("repository not found");
+        }
+        return data.getAsJsonObject("repository");
+    }
+
+    /**
+     * Runs a GraphQL query
+     * @return the data of the response
+     */
+    private JsonObject query(String query, Map<String, Object> variables) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", query);
+        body.put("variables", variables);
+        Request request = new Request.Builder().url(graphqlUrl).header("Authorization", "bearer " + githubTokenContent)
+            .post(RequestBody.create(JSON, gson.toJson(body))).build();
+        try (Response response = CLIENT.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("GitHub GraphQL request failed with " + response.code());
+            }
+            JsonObject result = new JsonParser().parse(response.body().string()).getAsJsonObject();
+            if (result.has("errors")) {
+                // parts of the result may still be usable, missing files are read with REST
+                LOG.debug(gitUsername + ": GitHub GraphQL errors " + result.get("errors"));
+            }
+            if (!result.has("data") || result.get("data").isJsonNull()) {
+                throw new IOException("GitHub GraphQL request returned no data");
+            }
+            JsonObject data = result.getAsJsonObject("data");
+            if (data.has("rateLimit") && !data.get("rateLimit").isJsonNull()) {
+                JsonObject rateLimit = data.getAsJsonObject("rateLimit");
+                LOG.debug(gitUsername + ": GitHub GraphQL query cost " + rateLimit.get("cost") + ", " + rateLimit.get("remaining") + " remaining");
+            }
+            return data;
+        }
+    }
+}
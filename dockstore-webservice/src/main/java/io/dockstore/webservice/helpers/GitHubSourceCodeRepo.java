@@ -18,6 +18,7 @@ package io.dockstore.webservice.helpers;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceApplication;
@@ -64,7 +65,13 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -77,6 +84,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
 
     private static final Logger LOG = LoggerFactory.getLogger(GitHubSourceCodeRepo.class);
+    /**
+     * The most requests made at once while refreshing a single repository
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+    /**
+     * How much of the remaining rate limit is needed for each thread fetching from a repository
+     */
+    private static final int RATE_LIMIT_PER_REQUEST_THREAD = 100;
+    /**
+     * Files are also read at commits, which are not references
+     */
+    private static final Pattern COMMIT_SHA = Pattern.compile("[0-9a-f]{40}");
     private final GitHub github;
 
     GitHubSourceCodeRepo(String gitUsername, String githubTokenContent) {
@@ -89,6 +108,14 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         }
     }
 
+    /**
+     * @param github an already connected client, for tests
+     */
+    GitHubSourceCodeRepo(String gitUsername, GitHub github) {
+        this.gitUsername = gitUsername;
+        this.github = github;
+    }
+
     @Override
     public String readFile(String repositoryId, String fileName, String reference) {
         checkNotNull(fileName, "The fileName given is null.");
@@ -180,9 +207,11 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         // retrieval of directory content is cached as opposed to retrieving individual files
         String fullPathNoEndSeparator = FilenameUtils.getFullPathNoEndSeparator(fileName);
         // but tags on quay.io that do not match github are costly, avoid by checking cached references
-        GHRef[] refs = repo.getRefs();
-        if (Lists.newArrayList(refs).stream().noneMatch(ref -> ref.getRef().contains(reference))) {
-            return null;
+        if (!COMMIT_SHA.matcher(reference).matches()) {
+            GHRef[] refs = repo.getRefs();
+            if (Lists.newArrayList(refs).stream().noneMatch(ref -> ref.getRef().contains(reference))) {
+                return null;
+            }
         }
         // only look at github if the reference exists
         List<GHContent> directoryContent = repo.getDirectoryContent(fullPathNoEndSeparator, reference);
@@ -277,116 +306,205 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
             Map<String, WorkflowVersion> existingDefaults) {
         GHRepository repository;
         GHRateLimit startRateLimit = getGhRateLimitQuietly();
-
-        // when getting a full workflow, look for versions and check each version for valid workflows
-        List<Triple<String, Date, String>> references = new ArrayList<>();
+        ExecutorService executor = createFetchExecutor(startRateLimit);
         try {
-            repository = github.getRepository(repositoryId);
-            final Date epochStart = new Date(0);
-            GHRef[] refs = repository.getRefs();
-            for (GHRef ref : refs) {
-                Date branchDate = new Date(0);
-                String refName = ref.getRef();
-                String sha = null;
-                if (refName.startsWith("refs/heads/")) {
-                    refName = StringUtils.removeStart(refName, "refs/heads/");
-                } else if (refName.startsWith("refs/tags/")) {
-                    refName = StringUtils.removeStart(refName, "refs/tags/");
-                } else if (refName.startsWith("refs/pull/")) {
-                    // ignore these strange pull request objects that this library produces
-                    continue;
-                }
-                try {
-                    sha = ref.getObject().getSha();
-                    if (ref.getObject().getType().equals("tag")) {
-                        GHTagObject tagObject = repository.getTagObject(sha);
-                        sha = tagObject.getObject().getSha();
-                    } else if (ref.getObject().getType().equals("branch")) {
-                        GHBranch branch = repository.getBranch(refName);
-                        sha = branch.getSHA1();
-                    }
+            // when getting a full workflow, look for versions and check each version for valid workflows
+            List<Triple<String, Date, String>> references;
+            try {
+                repository = github.getRepository(repositoryId);
+                GHRef[] refs = repository.getRefs();
+                references = fetchInParallel(executor, Arrays.asList(refs), ref -> resolveReference(repository, ref));
+                references.removeIf(Objects::isNull);
+            } catch (IOException e) {
+                LOG.info(gitUsername + ": Cannot get branches or tags for workflow {}");
+                throw new CustomWebApplicationException("Could not reach GitHub, please try again later", HttpStatus.SC_SERVICE_UNAVAILABLE);
+            }
 
-                    GHCommit commit = repository.getCommit(sha);
-                    branchDate = commit.getCommitDate();
-                    if (branchDate.before(epochStart)) {
-                        branchDate = epochStart;
-                    }
-                } catch (IOException e) {
-                    LOG.info("unable to retrieve commit date for branch " + refName);
+            // Initialize a workflow version for each branch (reference) found, versions still at the same commit are not read again
+            List<WorkflowVersion> versions = new ArrayList<>();
+            for (Triple<String, Date, String> ref : references) {
+                WorkflowVersion version = initializeWorkflowVersion(ref.getLeft(), existingWorkflow, existingDefaults);
+                version.setLastModified(ref.getMiddle());
+                version.setCommitID(ref.getRight());
+                if (reuseUnchangedVersion(workflow, version, existingDefaults)) {
+                    workflow.addWorkflowVersion(version);
+                } else {
+                    versions.add(version);
                 }
-                references.add(Triple.of(refName, branchDate, sha));
+            }
+
+            // Read the descriptor and test parameter file of every version at once
+            List<Pair<String, String>> contents = fetchInParallel(executor, versions,
+                version -> readVersionFiles(repositoryId, repository, workflow, version));
+
+            // Find the associated descriptor files in reference order, so that the result does not depend on the order fetches finished in
+            for (int i = 0; i < versions.size(); i++) {
+                addWorkflowVersion(repositoryId, workflow, versions.get(i), contents.get(i), existingDefaults);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        GHRateLimit endRateLimit = getGhRateLimitQuietly();
+        reportOnRateLimit("setupWorkflowVersions", startRateLimit, endRateLimit);
+
+        return workflow;
+    }
+
+    /**
+     * Resolves the commit that a branch or tag points at and the date of that commit
+     * @param repository the repository the reference is in
+     * @param ref a branch or tag
+     * @return the reference name, commit date and commit SHA, or null for references that are not branches or tags
+     */
+    private Triple<String, Date, String> resolveReference(GHRepository repository, GHRef ref) {
+        final Date epochStart = new Date(0);
+        Date branchDate = new Date(0);
+        String refName = ref.getRef();
+        String sha = null;
+        if (refName.startsWith("refs/heads/")) {
+            refName = StringUtils.removeStart(refName, "refs/heads/");
+        } else if (refName.startsWith("refs/tags/")) {
+            refName = StringUtils.removeStart(refName, "refs/tags/");
+        } else if (refName.startsWith("refs/pull/")) {
+            // ignore these strange pull request objects that this library produces
+            return null;
+        }
+        try {
+            sha = ref.getObject().getSha();
+            if (ref.getObject().getType().equals("tag")) {
+                GHTagObject tagObject = repository.getTagObject(sha);
+                sha = tagObject.getObject().getSha();
+            } else if (ref.getObject().getType().equals("branch")) {
+                GHBranch branch = repository.getBranch(refName);
+                sha = branch.getSHA1();
+            }
+
+            GHCommit commit = repository.getCommit(sha);
+            branchDate = commit.getCommitDate();
+            if (branchDate.before(epochStart)) {
+                branchDate = epochStart;
             }
         } catch (IOException e) {
-            LOG.info(gitUsername + ": Cannot get branches or tags for workflow {}");
-            throw new CustomWebApplicationException("Could not reach GitHub, please try again later", HttpStatus.SC_SERVICE_UNAVAILABLE);
+            LOG.info("unable to retrieve commit date for branch " + refName);
         }
+        return Triple.of(refName, branchDate, sha);
+    }
 
-        // For each branch (reference) found, create a workflow version and find the associated descriptor files
-        for (Triple<String, Date, String> ref : references) {
-            LOG.info(gitUsername + ": Looking at reference: " + ref.toString());
-            // Initialize the workflow version
-            WorkflowVersion version = initializeWorkflowVersion(ref.getLeft(), existingWorkflow, existingDefaults);
-            version.setLastModified(ref.getMiddle());
-            version.setCommitID(ref.getRight());
-            String calculatedPath = version.getWorkflowPath();
+    /**
+     * Reads the files of a version that can be fetched without looking at the descriptor first
+     * @param repositoryId identifies the git repository, normally something like 'organization/repo_name`
+     * @param repository the repository to read from
+     * @param workflow the workflow the version belongs to
+     * @param version a newly initialized version
+     * @return the content of the descriptor and of the test parameter file, either may be null
+     */
+    private Pair<String, String> readVersionFiles(String repositoryId, GHRepository repository, Workflow workflow, WorkflowVersion version) {
+        LOG.info(gitUsername + ": Looking at reference: " + version.getReference());
+        String decodedContent = null;
+        String testJsonContent = null;
+        try {
+            decodedContent = CommitFileCache.get(repositoryId, version.getCommitID(), version.getWorkflowPath(),
+                () -> this.readFileFromRepo(version.getWorkflowPath(), commitOrReference(version), repository));
+            // Use default test parameter file if either new version or existing version that hasn't been edited
+            if (decodedContent != null && !version.isDirtyBit() && workflow.getDefaultTestParameterFilePath() != null) {
+                testJsonContent = CommitFileCache.get(repositoryId, version.getCommitID(), workflow.getDefaultTestParameterFilePath(),
+                    () -> this.readFileFromRepo(workflow.getDefaultTestParameterFilePath(), commitOrReference(version), repository));
+            }
+        } catch (RuntimeException ex) {
+            LOG.info(gitUsername + ": could not read files on " + version.getReference(), ex);
+        }
+        return Pair.of(decodedContent, testJsonContent);
+    }
 
-            SourceFile.FileType identifiedType = workflow.getFileType();
+    /**
+     * Combines a version with its descriptor and test parameter file and adds it to the workflow
+     * @param content the content of the descriptor and of the test parameter file, either may be null
+     */
+    void addWorkflowVersion(String repositoryId, Workflow workflow, WorkflowVersion initialVersion, Pair<String, String> content,
+            Map<String, WorkflowVersion> existingDefaults) {
+        WorkflowVersion version = initialVersion;
+        String calculatedPath = version.getWorkflowPath();
+        SourceFile.FileType identifiedType = workflow.getFileType();
 
-            // Grab workflow file from github
-            try {
-                // Get contents of descriptor file and store
-                String decodedContent = this.readFileFromRepo(calculatedPath, ref.getLeft(), repository);
-                if (decodedContent != null) {
-                    boolean validWorkflow = LanguageHandlerFactory.getInterface(identifiedType).isValidWorkflow(decodedContent);
-                    // if we have a valid workflow document
-                    SourceFile file = new SourceFile();
-                    file.setContent(decodedContent);
-                    file.setPath(calculatedPath);
-                    file.setType(identifiedType);
-                    version.setValid(validWorkflow);
-                    version = combineVersionAndSourcefile(repositoryId, file, workflow, identifiedType, version, existingDefaults);
-
-
-                    // Use default test parameter file if either new version or existing version that hasn't been edited
-                    // TODO: why is this here? Does this code not have a counterpart in BitBucket and GitLab?
-                    if (!version.isDirtyBit() && workflow.getDefaultTestParameterFilePath() != null) {
-                        String testJsonContent = this.readFileFromRepo(workflow.getDefaultTestParameterFilePath(), ref.getLeft(), repository);
-                        if (testJsonContent != null) {
-                            SourceFile testJson = new SourceFile();
-
-                            // Set Filetype
-                            if (identifiedType.equals(SourceFile.FileType.DOCKSTORE_CWL)) {
-                                testJson.setType(SourceFile.FileType.CWL_TEST_JSON);
-                            } else if (identifiedType.equals(SourceFile.FileType.DOCKSTORE_WDL)) {
-                                testJson.setType(SourceFile.FileType.WDL_TEST_JSON);
-                            } else if (identifiedType.equals(SourceFile.FileType.NEXTFLOW_CONFIG)) {
-                                testJson.setType(SourceFile.FileType.NEXTFLOW_TEST_PARAMS);
-                            }
-
-                            testJson.setPath(workflow.getDefaultTestParameterFilePath());
-                            testJson.setContent(testJsonContent);
-
-                            // Check if test parameter file has already been added
-                            long duplicateCount = version.getSourceFiles().stream().filter((SourceFile v) -> v.getPath().equals(workflow.getDefaultTestParameterFilePath()) && v.getType() == testJson.getType()).count();
-                            if (duplicateCount == 0) {
-                                version.getSourceFiles().add(testJson);
-                            }
-                        }
+        try {
+            // Store contents of descriptor file
+            String decodedContent = content.getLeft();
+            if (decodedContent != null) {
+                boolean validWorkflow = LanguageHandlerFactory.getInterface(identifiedType).isValidWorkflow(decodedContent);
+                // if we have a valid workflow document
+                SourceFile file = new SourceFile();
+                file.setContent(decodedContent);
+                file.setPath(calculatedPath);
+                file.setType(identifiedType);
+                version.setValid(validWorkflow);
+                version = combineVersionAndSourcefile(repositoryId, file, workflow, identifiedType, version, existingDefaults);
+
+
+                // Use default test parameter file if either new version or existing version that hasn't been edited
+                // TODO: why is this here? Does this code not have a counterpart in BitBucket and GitLab?
+                String testJsonContent = content.getRight();
+                if (!version.isDirtyBit() && testJsonContent != null) {
+                    SourceFile testJson = new SourceFile();
+
+                    // Set Filetype
+                    if (identifiedType.equals(SourceFile.FileType.DOCKSTORE_CWL)) {
+                        testJson.setType(SourceFile.FileType.CWL_TEST_JSON);
+                    } else if (identifiedType.equals(SourceFile.FileType.DOCKSTORE_WDL)) {
+                        testJson.setType(SourceFile.FileType.WDL_TEST_JSON);
+                    } else if (identifiedType.equals(SourceFile.FileType.NEXTFLOW_CONFIG)) {
+                        testJson.setType(SourceFile.FileType.NEXTFLOW_TEST_PARAMS);
                     }
-                }
 
-            } catch (Exception ex) {
-                LOG.info(gitUsername + ": " + workflow.getDefaultWorkflowPath() + " on " + ref + " was not valid workflow", ex);
-            }
+                    testJson.setPath(workflow.getDefaultTestParameterFilePath());
+                    testJson.setContent(testJsonContent);
 
+                    // Check if test parameter file has already been added
+                    long duplicateCount = version.getSourceFiles().stream().filter((SourceFile v) -> v.getPath().equals(workflow.getDefaultTestParameterFilePath()) && v.getType() == testJson.getType()).count();
+                    if (duplicateCount == 0) {
+                        version.getSourceFiles().add(testJson);
+                    }
+                }
+            }
 
-            workflow.addWorkflowVersion(version);
+        } catch (Exception ex) {
+            LOG.info(gitUsername + ": " + workflow.getDefaultWorkflowPath() + " on " + version.getReference() + " was not valid workflow", ex);
         }
 
-        GHRateLimit endRateLimit = getGhRateLimitQuietly();
-        reportOnRateLimit("setupWorkflowVersions", startRateLimit, endRateLimit);
 
-        return workflow;
+        workflow.addWorkflowVersion(version);
+    }
+
+    /**
+     * Creates the executor for fetching from one repository.
+     * The more of the rate limit is left, the more requests are made at once, near the limit fetching is serial.
+     * @param rateLimit the rate limit before fetching
+     * @return an executor that must be shut down by the caller
+     */
+    ExecutorService createFetchExecutor(GHRateLimit rateLimit) {
+        int threads = rateLimit == null ? 1 : Math.max(1, Math.min(MAX_CONCURRENT_REQUESTS, rateLimit.remaining / RATE_LIMIT_PER_REQUEST_THREAD));
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("github-fetch-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Applies a fetch to every item on the executor
+     * @return the results, in the same order as the items
+     */
+    <T, R> List<R> fetchInParallel(ExecutorService executor, List<T> items, Function<T, R> fetch) {
+        List<Future<R>> futures = items.stream().map(item -> executor.submit(() -> fetch.apply(item))).collect(Collectors.toList());
+        List<R> results = new ArrayList<>();
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomWebApplicationException("Interrupted while reading from GitHub", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        } catch (ExecutionException e) {
+            LOG.error(gitUsername + ": could not read from GitHub", e.getCause());
+            throw new CustomWebApplicationException("Could not reach GitHub, please try again later", HttpStatus.SC_SERVICE_UNAVAILABLE);
+        }
+        return results;
     }
 
     private void reportOnRateLimit(String id, GHRateLimit startRateLimit, GHRateLimit endRateLimit) {
@@ -0,0 +1,93 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import io.dockstore.webservice.core.SourceFileContent;
+import io.dockstore.webservice.core.SourceFileContentConverter;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Moves the content of existing source files into the filecontent table during the 1.6.0 migration. The hash is computed here rather
+ * than in the database so that it is the same as the hash of content written later, without needing the pgcrypto extension.
+ */
+public class HashSourceFileContentChange implements CustomTaskChange {
+    private static final int BATCH_SIZE = 500;
+
+    private long hashed = 0;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection)database.getConnection();
+        SourceFileContentConverter converter = new SourceFileContentConverter();
+        try (PreparedStatement select = connection.prepareStatement(
+            "SELECT id, content FROM sourcefile WHERE content IS NOT NULL AND id > ? ORDER BY id LIMIT " + BATCH_SIZE);
+            PreparedStatement insert = connection.prepareStatement("INSERT INTO filecontent (hash, body) VALUES (?, ?) ON CONFLICT (hash) DO NOTHING");
+            PreparedStatement update = connection.prepareStatement("UPDATE sourcefile SET contenthash = ? WHERE id = ?")) {
+            long lastId = Long.MIN_VALUE;
+            boolean more = true;
+            while (more) {
+                select.setLong(1, lastId);
+                more = false;
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        more = true;
+                        lastId = resultSet.getLong(1);
+                        SourceFileContent content = SourceFileContent.of(resultSet.getString(2));
+                        insert.setString(1, content.getHash());
+                        insert.setBytes(2, converter.convertToDatabaseColumn(content));
+                        insert.addBatch();
+                        update.setString(1, content.getHash());
+                        update.setLong(2, lastId);
+                        update.addBatch();
+                        hashed++;
+                    }
+                }
+                insert.executeBatch();
+                update.executeBatch();
+            }
+        } catch (DatabaseException | SQLException e) {
+            throw new CustomChangeException("Could not store the content of source files", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Stored the content of " + hashed + " source files by hash";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dropwizard.db.DataSourceFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Sets up the Hibernate second-level and query caches, backed by Caffeine through JCache.
+ * Entities opt in with a {@link org.hibernate.annotations.Cache} annotation naming their region, queries with the cacheable hint.
+ * Each region is created here with the size and time to live from the configuration, so that no region is ever unbounded.
+ */
+public final class HibernateCacheHelper {
+    /**
+     * Regions of cached entities and queries, named in the annotations of the entities
+     */
+    public static final String ENTRY_REGION = "entry";
+    public static final String LABEL_REGION = "label";
+    public static final String FILE_FORMAT_REGION = "fileFormat";
+    public static final String GROUP_REGION = "group";
+    public static final String TOKEN_REGION = "token";
+    public static final String PUBLISHED_BY_PATH_REGION = "publishedByPath";
+    public static final String BY_VALUE_REGION = "byValue";
+
+    private static final String QUERY_RESULTS_REGION = "org.hibernate.cache.internal.StandardQueryCache";
+    private static final String UPDATE_TIMESTAMPS_REGION = "org.hibernate.cache.spi.UpdateTimestampsCache";
+    private static final String CACHING_PROVIDER = "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider";
+
+    private HibernateCacheHelper() {
+        // hide the constructor for utility classes
+    }
+
+    /**
+     * Adds the cache settings to the Hibernate properties of the database configuration and creates the cache regions,
+     * does nothing if the cache is disabled. Safe to call more than once.
+     *
+     * @param configuration the application configuration
+     * @return the database configuration
+     */
+    public static DataSourceFactory withCacheProperties(DockstoreWebserviceConfiguration configuration) {
+        DataSourceFactory dataSourceFactory = configuration.getDataSourceFactory();
+        DockstoreWebserviceConfiguration.HibernateCacheConfig cacheConfig = configuration.getHibernateCacheConfig();
+        if (!cacheConfig.isEnabled()) {
+            return dataSourceFactory;
+        }
+        Map<String, String> properties = dataSourceFactory.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", "true");
+        properties.put("hibernate.cache.use_query_cache", "true");
+        properties.put("hibernate.cache.region.factory_class", "org.hibernate.cache.jcache.JCacheRegionFactory");
+        properties.put("hibernate.javax.cache.provider", CACHING_PROVIDER);
+        // needed for the cache metrics
+        properties.put("hibernate.generate_statistics", "true");
+
+        CacheManager cacheManager = Caching.getCachingProvider(CACHING_PROVIDER).getCacheManager();
+        for (String region : new String[] { ENTRY_REGION, LABEL_REGION, FILE_FORMAT_REGION, GROUP_REGION, TOKEN_REGION,
+            PUBLISHED_BY_PATH_REGION, BY_VALUE_REGION, QUERY_RESULTS_REGION }) {
+            if (cacheManager.getCache(region) == null) {
+                cacheManager.createCache(region, getRegionConfiguration(cacheConfig.getRegion(region)));
+            }
+        }
+        // cached query results are checked against the last update of their tables, so these must never be evicted
+        if (cacheManager.getCache(UPDATE_TIMESTAMPS_REGION) == null) {
+            cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>());
+        }
+        return dataSourceFactory;
+    }
+
+    private static CaffeineConfiguration<Object, Object> getRegionConfiguration(DockstoreWebserviceConfiguration.CacheRegionConfig regionConfig) {
+        CaffeineConfiguration<Object, Object> caffeineConfiguration = new CaffeineConfiguration<>();
+        caffeineConfiguration.setMaximumSize(OptionalLong.of(regionConfig.getMaxEntries()));
+        caffeineConfiguration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(regionConfig.getTimeToLiveSeconds())));
+        return caffeineConfiguration;
+    }
+
+    /**
+     * Register the hits, misses and puts of the second-level and query caches with the Dropwizard metrics registry
+     *
+     * @param registry       the application's metric registry
+     * @param sessionFactory the session factory the caches belong to
+     */
+    public static void registerMetrics(MetricRegistry registry, SessionFactory sessionFactory) {
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        registry.register(MetricRegistry.name(HibernateCacheHelper.class, "secondLevel", "hits"), (Gauge<Long>)statistics::getSecondLevelCacheHitCount);
+        registry.register(MetricRegistry.name(HibernateCacheHelper.class, "secondLevel", "misses"),
+            (Gauge<Long>)statistics::getSecondLevelCacheMissCount);
+        registry.register(MetricRegistry.name(HibernateCacheHelper.class, "secondLevel", "puts"), (Gauge<Long>)statistics::getSecondLevelCachePutCount);
+        registry.register(MetricRegistry.name(HibernateCacheHelper.class, "query", "hits"), (Gauge<Long>)statistics::getQueryCacheHitCount);
+        registry.register(MetricRegistry.name(HibernateCacheHelper.class, "query", "misses"), (Gauge<Long>)statistics::getQueryCacheMissCount);
+        registry.register(MetricRegistry.name(HibernateCacheHelper.class, "query", "puts"), (Gauge<Long>)statistics::getQueryCachePutCount);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.apache.http.HttpStatus;
+
+/**
+ * An opaque token marking the last entry of a page, for keyset (seek) pagination.
+ * The next page is everything ordered after the sort key and id of that entry, which the database can find with an index
+ * instead of reading and discarding every row before an offset. Entry ids come from one sequence, so the id breaks ties
+ * between entries with the same sort key, even across tools and workflows.
+ * Tokens are passed in the existing offset parameters, a numeric offset still selects a page by position.
+ */
+public final class PageCursor {
+    private static final char SEPARATOR = '\n';
+    private static final int PARTS_WITH_KEY = 3;
+    private static final int NANOS_IN_MILLI = 1000000;
+    private static final int MILLIS_IN_SECOND = 1000;
+
+    private final String sort;
+    private final long id;
+    private final String key;
+
+    /**
+     * @param sort describes the ordering the cursor was made for, a cursor cannot be used with another ordering
+     * @param id   the id of the last entry of the page
+     * @param key  the sort key of the last entry of the page as made by {@link #toKey(Object)}, null when ordered by id only
+     */
+    public PageCursor(String sort, long id, String key) {
+        this.sort = sort;
+        this.id = id;
+        this.key = key;
+    }
+
+    /**
+     * @param offset the offset parameter of a request
+     * @return true if the offset is a cursor rather than a position
+     */
+    public static boolean isCursor(String offset) {
+        return !Strings.isNullOrEmpty(offset) && !CharMatcher.inRange('0', '9').matchesAllOf(offset);
+    }
+
+    /**
+     * @param token a token made by {@link #encode()}
+     * @param sort  the ordering of the request the token was passed to, starting with the sort column if not ordered by id only
+     * @return the cursor, which has a sort key unless ordered by id only
+     */
+    public static PageCursor decode(String token, String sort) {
+        String decoded;
+        try {
+            decoded = new String(BaseEncoding.base64Url().omitPadding().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CustomWebApplicationException("Invalid page cursor " + token, HttpStatus.SC_BAD_REQUEST);
+        }
+        String[] parts = decoded.split(String.valueOf(SEPARATOR), PARTS_WITH_KEY);
+        if (parts.length < 2 || !parts[0].equals(sort)) {
+            throw new CustomWebApplicationException("The page cursor does not match the sort order of the request", HttpStatus.SC_BAD_REQUEST);
+        }
+        if (parts.length < PARTS_WITH_KEY && !sort.startsWith(" ")) {
+            throw new CustomWebApplicationException("Invalid page cursor " + token, HttpStatus.SC_BAD_REQUEST);
+        }
+        try {
+            return new PageCursor(parts[0], Long.parseLong(parts[1]), parts.length == PARTS_WITH_KEY ? parts[2] : null);
+        } catch (NumberFormatException e) {
+            throw new CustomWebApplicationException("Invalid page cursor " + token, HttpStatus.SC_BAD_REQUEST);
+        }
+    }
+
+    public String encode() {
+        String value = sort + SEPARATOR + id + (key == null ? "" : SEPARATOR + key);
+        return BaseEncoding.base64Url().omitPadding().encode(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Dates keep their nanoseconds, since the database compares timestamps more precisely than milliseconds
+     *
+     * @param value the sort key of an entry, not null
+     * @return the sort key as stored in a cursor
+     */
+    public static String toKey(Object value) {
+        if (value instanceof Date) {
+            Date date = (Date)value;
+            int nanos = date instanceof Timestamp ? ((Timestamp)date).getNanos() : (int)(date.getTime() % MILLIS_IN_SECOND) * NANOS_IN_MILLI;
+            return date.getTime() + ":" + nanos;
+        }
+        if (value instanceof Enum) {
+            return ((Enum)value).name();
+        }
+        return value.toString();
+    }
+
+    /**
+     * @param type the type of the sort key
+     * @return the sort key stored in this cursor as that type
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Comparable<?> getKey(Class<?> type) {
+        try {
+            if (type == String.class) {
+                return key;
+            } else if (type == Long.class || type == long.class) {
+                return Long.valueOf(key);
+            } else if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(key);
+            } else if (type == Boolean.class || type == boolean.class) {
+                return Boolean.valueOf(key);
+            } else if (Date.class.isAssignableFrom(type)) {
+                String[] parts = key.split(":");
+                Timestamp timestamp = new Timestamp(Long.parseLong(parts[0]));
+                timestamp.setNanos(Integer.parseInt(parts[1]));
+                return timestamp;
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class)type, key);
+            }
+        } catch (RuntimeException e) {
+            throw new CustomWebApplicationException("Invalid page cursor", HttpStatus.SC_BAD_REQUEST);
+        }
+        throw new CustomWebApplicationException("Cannot page with a cursor when sorting by this column, use a numeric offset",
+            HttpStatus.SC_BAD_REQUEST);
+    }
+}
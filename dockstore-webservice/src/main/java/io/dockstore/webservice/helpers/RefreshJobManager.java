@@ -0,0 +1,181 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.ws.rs.WebApplicationException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.HttpStatus;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs refreshes of all of a user's tools or workflows in the background so that they are not limited by request timeouts.
+ * Jobs run on a bounded pool of workers. A job first plans its work in one transaction, then refreshes each entry in a
+ * transaction of its own, so that a failure only rolls back that entry and no transaction stays open for the whole refresh.
+ * Job status is kept in memory for a configured time after the job is submitted.
+ */
+public class RefreshJobManager implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshJobManager.class);
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final SessionFactory sessionFactory;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, RefreshJob> jobs;
+
+    public RefreshJobManager(DockstoreWebserviceConfiguration.RefreshJobConfig config, SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+        int threads = Math.max(1, config.getWorkerThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.getMaxQueuedJobs())),
+            new ThreadFactoryBuilder().setNameFormat("refresh-job-%d").setDaemon(true).build());
+        this.jobs = CacheBuilder.newBuilder().expireAfterWrite(config.getRetentionHours(), TimeUnit.HOURS).build();
+    }
+
+    @Override
+    public void start() {
+        // workers are started as jobs are submitted
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        executor.shutdownNow();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.warn("Refresh jobs did not stop in time");
+        }
+    }
+
+    /**
+     * Queues a refresh, unless the same refresh is already queued or running for the user in which case that job is returned
+     *
+     * @param job     the job to track progress in
+     * @param planner lists the entries to refresh by path and the work to refresh each of them, run in its own transaction.
+     *                Each piece of work is then run in its own transaction as well.
+     * @return the job that will do the refresh
+     */
+    public RefreshJob submit(RefreshJob job, Supplier<Map<String, Runnable>> planner) {
+        synchronized (jobs) {
+            Optional<RefreshJob> pending = jobs.asMap().values().stream()
+                .filter(other -> other.getUserId() == job.getUserId() && other.getType() == job.getType()
+                    && Objects.equals(other.getOrganization(), job.getOrganization())
+                    && (other.getState() == RefreshJob.State.QUEUED || other.getState() == RefreshJob.State.RUNNING)).findFirst();
+            if (pending.isPresent()) {
+                return pending.get();
+            }
+            jobs.put(job.getId(), job);
+            try {
+                executor.execute(() -> run(job, planner));
+            } catch (RejectedExecutionException e) {
+                jobs.invalidate(job.getId());
+                throw new CustomWebApplicationException("Too many refreshes are queued, please try again later.",
+                    HttpStatus.SC_SERVICE_UNAVAILABLE);
+            }
+            return job;
+        }
+    }
+
+    /**
+     * @param jobId the ID of a job
+     * @return the job, or null if it does not exist or is no longer retained
+     */
+    public RefreshJob getJob(String jobId) {
+        return jobs.getIfPresent(jobId);
+    }
+
+    private void run(RefreshJob job, Supplier<Map<String, Runnable>> planner) {
+        job.start();
+        LOG.info("Starting " + job.getType() + " refresh job " + job.getId() + " for user " + job.getUserId());
+        Map<String, Runnable> work;
+        try {
+            work = inTransaction(planner);
+        } catch (RuntimeException e) {
+            LOG.error("Could not plan refresh job " + job.getId(), e);
+            job.finish(describe(e));
+            return;
+        }
+        job.setTotal(work.size());
+        for (Map.Entry<String, Runnable> entry : work.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                job.finish("The refresh was stopped because the webservice is shutting down");
+                return;
+            }
+            long start = System.currentTimeMillis();
+            String error = null;
+            try {
+                inTransaction(() -> {
+                    entry.getValue().run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                LOG.error("Could not refresh " + entry.getKey() + " in refresh job " + job.getId(), e);
+                error = describe(e);
+            }
+            job.addEntry(new RefreshJob.EntryResult(entry.getKey(), System.currentTimeMillis() - start, error));
+        }
+        job.finish(null);
+        LOG.info("Finished refresh job " + job.getId() + ", " + job.getFailed() + " of " + job.getTotal() + " entries failed");
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            Transaction transaction = session.beginTransaction();
+            try {
+                T result = work.get();
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    /**
+     * The message of a CustomWebApplicationException is in its response, which is what an error refreshing in a request would show
+     */
+    private static String describe(RuntimeException e) {
+        if (e instanceof WebApplicationException && ((WebApplicationException)e).getResponse().getEntity() instanceof String) {
+            return (String)((WebApplicationException)e).getResponse().getEntity();
+        }
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+}
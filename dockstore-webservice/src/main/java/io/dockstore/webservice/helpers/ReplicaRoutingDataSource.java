@@ -0,0 +1,225 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dropwizard.db.ManagedDataSource;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the connections of read-only units of work (@UnitOfWork(readOnly = true)) to a read replica and everything else to the
+ * primary database. Dropwizard binds the session of a unit of work before beginning its transaction, which is when the connection is
+ * taken, so the session tells which kind of unit of work is asking.
+ * Reads go back to the primary when the replica cannot be reached, when it falls too far behind, and for clients that changed something
+ * recently (see ReplicaRoutingFilter), so that publishing and then fetching an entry never shows the entry as it was before.
+ * Sessions on the replica only read the second-level cache, see ReadReplicaConfig.
+ */
+public class ReplicaRoutingDataSource implements ManagedDataSource {
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> false);
+    private static final int FIRST_VERSION_WITH_LSN_FUNCTIONS = 10;
+
+    private final ManagedDataSource primary;
+    private final ManagedDataSource replica;
+    private final int maxLagSeconds;
+    private final int lagCheckIntervalSeconds;
+    private final Counter replicaConnections = new Counter();
+    private final Counter primaryFallbacks = new Counter();
+    private volatile SessionFactory sessionFactory = null;
+    private volatile boolean replicaUsable = false;
+    private volatile double lagSeconds = -1;
+    private ScheduledExecutorService lagChecker = null;
+
+    public ReplicaRoutingDataSource(ManagedDataSource primary, ManagedDataSource replica,
+        DockstoreWebserviceConfiguration.ReadReplicaConfig config) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagSeconds = config.getMaxLagSeconds();
+        this.lagCheckIntervalSeconds = Math.max(1, config.getLagCheckIntervalSeconds());
+    }
+
+    /**
+     * @param sessionFactory the session factory built on this data source, until it is set every connection goes to the primary
+     */
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * @param required true to send the read-only units of work of the current thread to the primary as well
+     */
+    static void setPrimaryRequired(boolean required) {
+        PRIMARY_REQUIRED.set(required);
+    }
+
+    /**
+     * Register the replica lag and how many connections went to the replica or fell back to the primary
+     *
+     * @param registry the application's metric registry
+     */
+    public void registerMetrics(MetricRegistry registry) {
+        registry.register(MetricRegistry.name(ReplicaRoutingDataSource.class, "lagSeconds"), (Gauge<Double>)() -> lagSeconds);
+        registry.register(MetricRegistry.name(ReplicaRoutingDataSource.class, "replicaUsable"), (Gauge<Boolean>)() -> replicaUsable);
+        registry.register(MetricRegistry.name(ReplicaRoutingDataSource.class, "replicaConnections"), replicaConnections);
+        registry.register(MetricRegistry.name(ReplicaRoutingDataSource.class, "primaryFallbacks"), primaryFallbacks);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Session session = replicaUsable && !PRIMARY_REQUIRED.get() ? readOnlyUnitOfWork() : null;
+        if (session != null) {
+            try {
+                Connection connection = replica.getConnection();
+                replicaConnections.inc();
+                // the replica may be behind, so what it returns must not end up in the second-level cache, where reads of the primary
+                // would find it. The session still reads from the cache.
+                session.setCacheMode(CacheMode.GET);
+                return connection;
+            } catch (SQLException e) {
+                // the next lag check decides when to try the replica again
+                replicaUsable = false;
+                primaryFallbacks.inc();
+                LOG.warn("Could not connect to the read replica, using the primary database", e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * @return the session of the read-only unit of work running on this thread, or null if there is none
+     */
+    private Session readOnlyUnitOfWork() {
+        SessionFactory factory = sessionFactory;
+        if (factory == null || !ManagedSessionContext.hasBind(factory)) {
+            return null;
+        }
+        Session session = factory.getCurrentSession();
+        return session.isDefaultReadOnly() ? session : null;
+    }
+
+    /**
+     * Measures how far the replica is behind the primary. A replica that has replayed everything it received is not behind, even if
+     * the primary has not written anything for a while.
+     */
+    private void checkLag() {
+        boolean wasUsable = replicaUsable;
+        try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+            boolean lsnFunctions = connection.getMetaData().getDatabaseMajorVersion() >= FIRST_VERSION_WITH_LSN_FUNCTIONS;
+            String received = lsnFunctions ? "pg_last_wal_receive_lsn()" : "pg_last_xlog_receive_location()";
+            String replayed = lsnFunctions ? "pg_last_wal_replay_lsn()" : "pg_last_xlog_replay_location()";
+            try (ResultSet resultSet = statement.executeQuery("SELECT CASE WHEN NOT pg_is_in_recovery() OR " + received + " = " + replayed
+                + " THEN 0 ELSE coalesce(extract(epoch FROM now() - pg_last_xact_replay_timestamp()), 0) END")) {
+                resultSet.next();
+                lagSeconds = resultSet.getDouble(1);
+            }
+            replicaUsable = lagSeconds <= maxLagSeconds;
+            if (wasUsable && !replicaUsable) {
+                LOG.warn("The read replica is " + lagSeconds + " seconds behind, using the primary database until it catches up");
+            }
+        } catch (SQLException e) {
+            lagSeconds = -1;
+            replicaUsable = false;
+            if (wasUsable) {
+                LOG.warn("Could not check the lag of the read replica, using the primary database", e);
+            }
+        }
+        if (!wasUsable && replicaUsable) {
+            LOG.info("Using the read replica for read-only requests");
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+        primary.start();
+        try {
+            replica.start();
+        } catch (Exception e) {
+            // reads use the primary until a lag check reaches the replica
+            LOG.warn("Could not start the read replica pool", e);
+        }
+        checkLag();
+        lagChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("replica-lag-check-%d").setDaemon(true).build());
+        lagChecker.scheduleWithFixedDelay(this::checkLag, lagCheckIntervalSeconds, lagCheckIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        replica.stop();
+        primary.stop();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return primary.isWrapperFor(iface);
+    }
+}
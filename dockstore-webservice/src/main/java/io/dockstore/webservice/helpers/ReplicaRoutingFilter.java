@@ -0,0 +1,75 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.apache.http.HttpStatus;
+
+/**
+ * Sends the reads of clients that changed something recently to the primary database, since the read replica may not have the
+ * change yet. Clients are told apart by their Authorization header rather than by user, since most read-only endpoints do not
+ * authenticate even when the client sends a token.
+ */
+public class ReplicaRoutingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final int MAX_RECENT_WRITERS = 100000;
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReplicaRoutingFilter(DockstoreWebserviceConfiguration.ReadReplicaConfig config) {
+        this.recentWriters = CacheBuilder.newBuilder().maximumSize(MAX_RECENT_WRITERS)
+            .expireAfterWrite(config.getReadYourWritesSeconds(), TimeUnit.SECONDS).build();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String client = client(requestContext);
+        ReplicaRoutingDataSource.setPrimaryRequired(client != null && recentWriters.getIfPresent(client) != null);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        String client = client(requestContext);
+        if (client != null && isWrite(requestContext.getMethod()) && responseContext.getStatus() < HttpStatus.SC_BAD_REQUEST) {
+            recentWriters.put(client, true);
+        }
+        ReplicaRoutingDataSource.setPrimaryRequired(false);
+    }
+
+    private static boolean isWrite(String method) {
+        return !HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method) && !HttpMethod.OPTIONS.equals(method);
+    }
+
+    /**
+     * @return a hash of the Authorization header, so that tokens are not kept in memory, or null for anonymous clients
+     */
+    private static String client(ContainerRequestContext requestContext) {
+        String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+        return authorization == null ? null : Hashing.sha256().hashString(authorization, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.util.List;
+
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.setup.Environment;
+import org.hibernate.SessionFactory;
+
+/**
+ * Builds the session factory on a ReplicaRoutingDataSource when a read replica is configured, and on the primary database alone
+ * otherwise. DAOs and units of work keep using the one session factory either way.
+ */
+public class ReplicaRoutingSessionFactoryFactory extends SessionFactoryFactory {
+    private DockstoreWebserviceConfiguration.ReadReplicaConfig config = null;
+
+    /**
+     * Must be called before the hibernate bundle runs, its getDataSourceFactory is the place to do it
+     */
+    public void setConfig(DockstoreWebserviceConfiguration.ReadReplicaConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public SessionFactory build(HibernateBundle<?> bundle, Environment environment, PooledDataSourceFactory dbConfig,
+        List<Class<?>> entities, String name) {
+        ManagedDataSource primary = dbConfig.build(environment.metrics(), name);
+        if (config == null || config.getDatabase() == null) {
+            return build(bundle, environment, dbConfig, primary, entities);
+        }
+        ManagedDataSource replica = config.getDatabase().build(environment.metrics(), name + "-replica");
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, replica, config);
+        dataSource.registerMetrics(environment.metrics());
+        SessionFactory sessionFactory = build(bundle, environment, dbConfig, dataSource, entities);
+        dataSource.setSessionFactory(sessionFactory);
+        environment.jersey().register(new ReplicaRoutingFilter(config));
+        return sessionFactory;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.regex.Pattern;
 
 import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.core.Token;
 import io.dockstore.webservice.core.TokenType;
 import org.apache.http.HttpStatus;
@@ -38,14 +39,31 @@ public final class SourceCodeRepoFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(SourceCodeRepoFactory.class);
 
+    private static DockstoreWebserviceConfiguration.GitHubConfig gitHubConfig = new DockstoreWebserviceConfiguration.GitHubConfig();
+
     private SourceCodeRepoFactory() {
         // hide the constructor for utility classes
     }
 
+    public static void setConfig(DockstoreWebserviceConfiguration config) {
+        SourceCodeRepoFactory.gitHubConfig = config.getGitHubConfig();
+    }
+
+    private static GitHubSourceCodeRepo createGitHubSourceCodeRepo(String gitUsername, String githubTokenContent) {
+        GitHubSourceCodeRepo repo;
+        if (gitHubConfig.isUseGraphQL()) {
+            repo = new GitHubGraphQLSourceCodeRepo(gitUsername, githubTokenContent, gitHubConfig.getGraphQLBatchSize());
+        } else {
+            repo = new GitHubSourceCodeRepo(gitUsername, githubTokenContent);
+        }
+        repo.setIncremental(gitHubConfig.isIncrementalRefresh());
+        return repo;
+    }
+
     public static SourceCodeRepoInterface createSourceCodeRepo(Token token, HttpClient client) {
         SourceCodeRepoInterface repo;
         if (Objects.equals(token.getTokenSource(), TokenType.GITHUB_COM)) {
-            repo = new GitHubSourceCodeRepo(token.getUsername(), token.getContent());
+            repo = createGitHubSourceCodeRepo(token.getUsername(), token.getContent());
         } else if (Objects.equals(token.getTokenSource(), TokenType.BITBUCKET_ORG)) {
             repo = new BitBucketSourceCodeRepo(token.getUsername(), token.getContent());
         } else if (Objects.equals(token.getTokenSource(), TokenType.GITLAB_COM)) {
@@ -73,7 +91,7 @@ public final class SourceCodeRepoFactory {
 
         SourceCodeRepoInterface repo;
         if (SourceControl.GITHUB.toString().equals(source)) {
-            repo = new GitHubSourceCodeRepo(gitUsername, githubTokenContent);
+            repo = createGitHubSourceCodeRepo(gitUsername, githubTokenContent);
         } else if (SourceControl.BITBUCKET.toString().equals(source)) {
             if (bitbucketTokenContent != null) {
                 repo = new BitBucketSourceCodeRepo(gitUsername, bitbucketTokenContent);
@@ -59,6 +59,14 @@ public abstract class SourceCodeRepoInterface {
     public static final int BYTES_IN_KB = 1024;
 
     String gitUsername;
+    boolean incremental = true;
+
+    /**
+     * @param incremental true to reuse versions whose reference still points at the same commit instead of reading them again
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
 
     /**
      * If this interface is pointed at a specific repository, grab a
@@ -402,8 +410,9 @@ public abstract class SourceCodeRepoInterface {
 
             List<SourceFile> testParameterFiles = existingVersion.getSourceFiles().stream()
                 .filter((SourceFile u) -> u.getType() == workflowDescriptorType).collect(Collectors.toList());
+            // read at the new version, the commit of the existing version may be out of date
             testParameterFiles
-                .forEach(file -> this.readFile(repositoryId, existingVersion, sourceFileSet, workflowDescriptorType, file.getPath()));
+                .forEach(file -> this.readFile(repositoryId, version, sourceFileSet, workflowDescriptorType, file.getPath()));
         }
 
         // If source file is found and valid then add it
@@ -475,12 +484,73 @@ public abstract class SourceCodeRepoInterface {
         }
 
         if (!fileName.isEmpty()) {
-            return this.readFile(repositoryId, fileName, reference);
+            return this.readFileAtCommit(repositoryId, fileName, version);
         } else {
             return null;
         }
     }
 
+    /**
+     * Reads a file at the commit that a version was last seen at, from the cache when it has been read at that commit before
+     * @param repositoryId identifies the git repository that we wish to use, normally something like 'organization/repo_name`
+     * @param fileName the name of the file (full path) to retrieve
+     * @param version the version to read the file from
+     * @return content of the file
+     */
+    String readFileAtCommit(String repositoryId, String fileName, Version version) {
+        return CommitFileCache.get(repositoryId, version.getCommitID(), fileName,
+            () -> this.readFile(repositoryId, fileName, commitOrReference(version)));
+    }
+
+    /**
+     * Files are cached under the commit of a version, so they are read at that commit rather than at the reference, which may have
+     * moved on since the commit was looked up
+     * @return the commit ID of the version, or its reference if the commit is not known
+     */
+    static String commitOrReference(Version version) {
+        return version.getCommitID() == null ? version.getReference() : version.getCommitID();
+    }
+
+    /**
+     * Fills in a version from the existing version with the same reference when the reference still points at the same commit.
+     * The files of the existing version were read at that commit, so nothing needs to be read again.
+     * @param workflow the workflow the version belongs to
+     * @param version a newly initialized version with its commit ID set
+     * @param existingDefaults the existing versions by reference
+     * @return true if the version was filled in from the existing version and marked as unchanged
+     */
+    boolean reuseUnchangedVersion(Workflow workflow, WorkflowVersion version, Map<String, WorkflowVersion> existingDefaults) {
+        if (!incremental) {
+            return false;
+        }
+        WorkflowVersion existingVersion = existingDefaults.get(version.getReference());
+        if (existingVersion == null || version.getCommitID() == null || !version.getCommitID().equals(existingVersion.getCommitID())
+            || !Objects.equals(version.getWorkflowPath(), existingVersion.getWorkflowPath()) || existingVersion.getSourceFiles().isEmpty()) {
+            return false;
+        }
+        // the default test parameter file may have been changed since the existing version was read
+        String testParameterFilePath = workflow.getDefaultTestParameterFilePath();
+        if (!existingVersion.isDirtyBit() && testParameterFilePath != null && existingVersion.getSourceFiles().stream()
+            .noneMatch(file -> testParameterFilePath.equals(file.getPath()))) {
+            return false;
+        }
+        LOG.info(gitUsername + ": " + version.getReference() + " is unchanged at " + version.getCommitID());
+        version.setUnchanged(true);
+        version.setValid(existingVersion.isValid());
+        // the reference type and file formats of a commit do not change either
+        version.setReferenceType(existingVersion.getReferenceType());
+        version.getInputFileFormats().addAll(existingVersion.getInputFileFormats());
+        version.getOutputFileFormats().addAll(existingVersion.getOutputFileFormats());
+        for (SourceFile existingFile : existingVersion.getSourceFiles()) {
+            SourceFile file = new SourceFile();
+            file.setType(existingFile.getType());
+            file.setPath(existingFile.getPath());
+            file.setContent(existingFile.getContent());
+            version.getSourceFiles().add(file);
+        }
+        return true;
+    }
+
     Map<String, SourceFile> resolveImports(String repositoryId, String content, SourceFile.FileType fileType, Version version) {
         LanguageHandlerInterface languageInterface = LanguageHandlerFactory.getInterface(fileType);
         return languageInterface.processImports(repositoryId, content, version, this);
@@ -0,0 +1,71 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.SourceFileContent;
+import io.dockstore.webservice.jdbi.FileDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+
+/**
+ * Stores the content of a source file right before the source file is inserted or updated, so that the content its hash refers to
+ * exists. Source files are written by cascades from versions as often as by FileDAO, this catches every one of those writes.
+ */
+public final class SourceFileContentListener implements PreInsertEventListener, PreUpdateEventListener {
+
+    private SourceFileContentListener() {
+    }
+
+    /**
+     * @param sessionFactory the session factory whose sessions write source files
+     */
+    public static void register(SessionFactory sessionFactory) {
+        SourceFileContentListener listener = new SourceFileContentListener();
+        EventListenerRegistry registry = sessionFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PRE_INSERT, listener);
+        registry.appendListeners(EventType.PRE_UPDATE, listener);
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        storeContent(event.getEntity(), event.getSession());
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        storeContent(event.getEntity(), event.getSession());
+        return false;
+    }
+
+    private static void storeContent(Object entity, EventSource session) {
+        if (entity instanceof SourceFile) {
+            SourceFileContent content = ((SourceFile)entity).getUnstoredContent();
+            if (content != null) {
+                FileDAO.storeContent(session, content);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.jdbi.WorkflowVersionDAO;
+import io.dockstore.webservice.languages.LanguageHandlerInterface;
+
+/**
+ * Caches the DAG and tool table JSON of workflow versions, which are expensive to make since every descriptor of the version is parsed.
+ * Content is cached by version and kind together with a hash of what it was made from: the file type, the main descriptor path
+ * and the path and content hash of every source file. Whenever a source file changes, on refresh or a hosted edit, the hash no longer
+ * matches and the content is made again, so nothing needs to be invalidated explicitly.
+ * Content is kept in memory, and optionally in the database so that it survives restarts and is shared between instances.
+ * Content also expires after a while, since it links to published tools which may be published after it is made.
+ */
+public final class WorkflowContentCache {
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+    private static final long MILLIS_IN_SECOND = 1000L;
+
+    private static DockstoreWebserviceConfiguration.WorkflowContentCacheConfig cacheConfig =
+        new DockstoreWebserviceConfiguration.WorkflowContentCacheConfig();
+    private static Cache<String, CachedContent> memory = createMemoryCache(cacheConfig);
+
+    private WorkflowContentCache() {
+        // hide the constructor for utility classes
+    }
+
+    public static void setConfig(DockstoreWebserviceConfiguration config) {
+        cacheConfig = config.getWorkflowContentCacheConfig();
+        memory = createMemoryCache(cacheConfig);
+    }
+
+    private static Cache<String, CachedContent> createMemoryCache(DockstoreWebserviceConfiguration.WorkflowContentCacheConfig config) {
+        // weigh entries by their number of characters, which is close enough to their size
+        return CacheBuilder.newBuilder().maximumWeight(config.getMaxSizeMegabytes() * BYTES_IN_MB)
+            .weigher((String key, CachedContent value) -> key.length() + value.hash.length() + value.content.length())
+            .expireAfterWrite(config.getTimeToLiveSeconds(), TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Gets the DAG or tool table of a workflow version, making it only if it is not cached
+     *
+     * @param fileType        the descriptor language of the workflow
+     * @param workflowVersion the version
+     * @param type            DAG or TOOLS
+     * @param dao             reads the source file hashes of the version, and stores content when the cache is persisted
+     * @param maker           makes the content when it is not cached, may return null when there is nothing to make it from
+     * @return the content, or null if it cannot be made
+     */
+    public static String get(SourceFile.FileType fileType, WorkflowVersion workflowVersion, LanguageHandlerInterface.Type type,
+        WorkflowVersionDAO dao, Supplier<String> maker) {
+        long versionId = workflowVersion.getId();
+        String hash = Hashing.sha256().hashString(fileType + "\n" + workflowVersion.getWorkflowPath() + "\n" + dao.findSourceFilesHash(versionId),
+            StandardCharsets.UTF_8).toString();
+        String key = versionId + ":" + type;
+        CachedContent cached = memory.getIfPresent(key);
+        if (cached != null && cached.hash.equals(hash)) {
+            return cached.content;
+        }
+        String content = null;
+        if (cacheConfig.isPersist()) {
+            Timestamp notOlderThan = new Timestamp(System.currentTimeMillis() - cacheConfig.getTimeToLiveSeconds() * MILLIS_IN_SECOND);
+            content = dao.findCachedContent(versionId, type.toString(), hash, notOlderThan);
+        }
+        if (content == null) {
+            content = maker.get();
+            if (content == null) {
+                return null;
+            }
+            if (cacheConfig.isPersist()) {
+                dao.storeCachedContent(versionId, type.toString(), hash, content);
+            }
+        }
+        memory.put(key, new CachedContent(hash, content));
+        return content;
+    }
+
+    private static final class CachedContent {
+        private final String hash;
+        private final String content;
+
+        private CachedContent(String hash, String content) {
+            this.hash = hash;
+            this.content = content;
+        }
+    }
+}
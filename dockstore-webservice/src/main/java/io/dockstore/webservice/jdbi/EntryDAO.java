@@ -20,27 +20,39 @@ import java.lang.reflect.ParameterizedType;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
+import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.helpers.EntrySearchDocument;
+import io.dockstore.webservice.helpers.PageCursor;
 import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.http.HttpStatus;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +62,17 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T> {
 
+    /**
+     * Index of the author column in the findPublishedSearchRows queries, followed by description, email, gitUrl and lastUpdated
+     */
+    static final int SEARCH_ROW_DETAILS = 6;
+
     private static final Logger LOG = LoggerFactory.getLogger(EntryDAO.class);
+    private static final int SEARCH_DOCUMENT_PAGE_SIZE = 100;
+    /**
+     * Sort column for ordering filtered listings by how well they match the filter
+     */
+    private static final String RELEVANCE = "relevance";
 
     final int registryIndex = 0;
     final int orgIndex = 1;
@@ -67,8 +89,35 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
         this.typeOfT = (Class<T>)((ParameterizedType)getClass().getGenericSuperclass()).getActualTypeArguments()[0];
     }
 
+    /**
+     * Source files are lazy so that listings do not load the content of every descriptor.
+     * Lookups of a single entry, which are returned in full or used to build GA4GH responses, load them up front with this
+     * before the session closes. Versions are batch fetched so this takes a query per batch of versions rather than per version.
+     *
+     * @param entry an entry attached to the current session, may be null
+     * @return the same entry
+     */
+    public static <E extends Entry> E loadSourceFiles(E entry) {
+        if (entry != null) {
+            for (Object version : entry.getVersions()) {
+                Hibernate.initialize(((Version)version).getSourceFiles());
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @see #loadSourceFiles(Entry)
+     */
+    public static <E extends Entry, C extends Collection<E>> C loadSourceFiles(C entries) {
+        if (entries != null) {
+            entries.forEach(EntryDAO::loadSourceFiles);
+        }
+        return entries;
+    }
+
     public T findById(Long id) {
-        return get(id);
+        return loadSourceFiles(get(id));
     }
 
     public MutablePair<String, Entry> findEntryByPath(String path, boolean isPublished) {
@@ -114,14 +163,26 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
             BigInteger id = (BigInteger)(pair.get(0))[1];
             Long longId = id.longValue();
             if ("workflow".equals(type)) {
-                results = new MutablePair<>("workflow", this.currentSession().get(Workflow.class, Objects.requireNonNull(longId)));
+                results = new MutablePair<>("workflow", loadSourceFiles(this.currentSession().get(Workflow.class, Objects.requireNonNull(longId))));
             } else {
-                results = new MutablePair<>("tool", this.currentSession().get(Tool.class, Objects.requireNonNull(longId)));
+                results = new MutablePair<>("tool", loadSourceFiles(this.currentSession().get(Tool.class, Objects.requireNonNull(longId))));
             }
         }
         return results;
     }
 
+    /**
+     * Changes the star count of an entry in place in the database, rather than writing a count read earlier,
+     * so that stars added or removed concurrently are all counted
+     *
+     * @param id    the id of the entry
+     * @param delta 1 when the entry was starred, -1 when it was unstarred
+     */
+    public void updateStarCount(long id, int delta) {
+        currentSession().createQuery("UPDATE " + typeOfT.getSimpleName() + " c SET c.starCount = c.starCount + :delta WHERE c.id = :id")
+            .setParameter("delta", delta).setParameter("id", id).executeUpdate();
+    }
+
     public long create(T entry) {
         return persist(entry).getId();
     }
@@ -133,27 +194,56 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
     }
 
     public Entry<? extends Entry, ? extends Version> getGenericEntryById(long id) {
-        return uniqueResult(namedQuery("Entry.getGenericEntryById").setParameter("id", id));
+        return loadSourceFiles(uniqueResult(namedQuery("Entry.getGenericEntryById").setParameter("id", id)));
     }
 
     public Entry<? extends Entry, ? extends Version> getGenericEntryByAlias(String alias) {
-        return uniqueResult(namedQuery("Entry.getGenericEntryByAlias").setParameter("alias", alias));
+        return loadSourceFiles(uniqueResult(namedQuery("Entry.getGenericEntryByAlias").setParameter("alias", alias)));
     }
 
     public T findPublishedById(long id) {
-        return (T)uniqueResult(
-            namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findPublishedById").setParameter("id", id));
+        return loadSourceFiles((T)uniqueResult(
+            namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findPublishedById").setParameter("id", id)));
     }
 
+    /**
+     * @param offset either the position of the first entry to return, or a cursor from {@link #getNextPageCursor} to return the
+     *               entries after the last entry of the previous page. A cursor lets the database seek straight to the page
+     *               rather than reading and discarding every entry before it.
+     */
+    @SuppressWarnings("unchecked")
     public List<T> findAllPublished(String offset, Integer limit, String filter, String sortCol, String sortOrder) {
         CriteriaBuilder cb = currentSession().getCriteriaBuilder();
         CriteriaQuery<T> query = criteriaQuery();
         Root<T> entry = query.from(typeOfT);
         processQuery(filter, sortCol, sortOrder, cb, query, entry);
         query.select(entry);
+        boolean ranked = RELEVANCE.equalsIgnoreCase(sortCol);
+        Expression<Comparable> sortKey = ranked ? null : getSortKey(sortCol, cb, entry);
+        if (sortKey == null && !ranked) {
+            // pages need a stable order
+            query.orderBy(cb.desc(entry.get("id")));
+        }
 
         //TODO: getting the entity manager to convert the criteria query to a TypedQuery is weird, there must be a different way
         EntityManager entityManager = currentSession().getEntityManagerFactory().createEntityManager();
+        if (PageCursor.isCursor(offset)) {
+            if (ranked) {
+                // ranks are floating point and computed per query, so they cannot be sought to
+                throw new CustomWebApplicationException("Cannot page with a cursor when sorting by relevance, use a numeric offset",
+                    HttpStatus.SC_BAD_REQUEST);
+            }
+            PageCursor cursor = PageCursor.decode(offset, getSortDescription(sortCol, sortOrder));
+            Predicate afterId = cb.lessThan(entry.get("id"), cursor.getId());
+            if (sortKey == null) {
+                query.where(query.getRestriction(), afterId);
+            } else {
+                Comparable key = cursor.getKey(sortKey.getJavaType());
+                Predicate beyondKey = "desc".equalsIgnoreCase(sortOrder) ? cb.lessThan(sortKey, key) : cb.greaterThan(sortKey, key);
+                query.where(query.getRestriction(), cb.or(beyondKey, cb.and(cb.equal(sortKey, key), afterId)));
+            }
+            return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+        }
         int primitiveOffset = Integer.parseInt(MoreObjects.firstNonNull(offset, "0"));
         TypedQuery<T> typedQuery = entityManager.createQuery(query).setFirstResult(primitiveOffset).setMaxResults(limit);
         return typedQuery.getResultList();
@@ -163,6 +253,132 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
         return list(namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findAllPublished"));
     }
 
+    /**
+     * @param page a page returned by {@link #findAllPublished(String, Integer, String, String, String)}
+     * @return a cursor for the page after it, or null if it is the last page
+     */
+    public String getNextPageCursor(List<T> page, Integer limit, String sortCol, String sortOrder) {
+        if (page.isEmpty() || page.size() < limit || RELEVANCE.equalsIgnoreCase(sortCol)) {
+            return null;
+        }
+        T last = page.get(page.size() - 1);
+        String key = null;
+        if ("stars".equalsIgnoreCase(sortCol)) {
+            key = PageCursor.toKey(last.getStarCount());
+        } else if (!Strings.isNullOrEmpty(sortCol)) {
+            Object value = ((SessionFactoryImplementor)currentSession().getSessionFactory()).getMetamodel().entityPersister(typeOfT)
+                .getPropertyValue(last, sortCol);
+            // entries without a value for the sort column are not listed
+            key = PageCursor.toKey(value);
+        }
+        return new PageCursor(getSortDescription(sortCol, sortOrder), last.getId(), key).encode();
+    }
+
+    private static String getSortDescription(String sortCol, String sortOrder) {
+        return Strings.nullToEmpty(sortCol) + ' ' + ("desc".equalsIgnoreCase(sortOrder) ? "desc" : "asc");
+    }
+
+    /**
+     * @return what listings are sorted by before id, matching processQuery, or null if they are only sorted by id
+     */
+    @SuppressWarnings("unchecked")
+    private Expression<Comparable> getSortKey(String sortCol, CriteriaBuilder cb, Root<T> entry) {
+        if (Strings.isNullOrEmpty(sortCol)) {
+            return null;
+        }
+        if ("stars".equalsIgnoreCase(sortCol)) {
+            return entry.get("starCount");
+        }
+        return entry.get(sortCol);
+    }
+
+    /**
+     * Walks the search documents of all published entries, in order of id.
+     * Documents are built from scalar queries a page at a time rather than from loaded entities, so no versions, source files
+     * or users are pulled into the session and memory stays flat regardless of the number of published entries.
+     *
+     * @param consumer called once per published entry, in order of id
+     * @return the number of entries visited
+     */
+    public long forEachPublishedSearchDocument(Consumer<EntrySearchDocument> consumer) {
+        long count = 0;
+        long lastId = 0;
+        List<EntrySearchDocument> page;
+        do {
+            page = findPublishedSearchDocuments(lastId, SEARCH_DOCUMENT_PAGE_SIZE);
+            for (EntrySearchDocument document : page) {
+                consumer.accept(document);
+                lastId = document.getId();
+                count++;
+            }
+        } while (page.size() == SEARCH_DOCUMENT_PAGE_SIZE);
+        return count;
+    }
+
+    /**
+     * @param afterId only entries with a greater id are returned
+     * @param limit   the maximum number of documents to return
+     * @return the search documents of the next page of published entries, in order of id
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    public List<EntrySearchDocument> findPublishedSearchDocuments(long afterId, int limit) {
+        List<Object[]> rows = currentSession()
+            .createNamedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findPublishedSearchRows", Object[].class)
+            .setParameter("id", afterId).setMaxResults(limit).setReadOnly(true).list();
+        Map<Long, EntrySearchDocument> documents = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            EntrySearchDocument document = createSearchDocument(row);
+            document.setDetails((String)row[SEARCH_ROW_DETAILS], (String)row[SEARCH_ROW_DETAILS + 1], (String)row[SEARCH_ROW_DETAILS + 2],
+                (String)row[SEARCH_ROW_DETAILS + 3], (Date)row[SEARCH_ROW_DETAILS + 4]);
+            documents.put(document.getId(), document);
+        }
+        if (documents.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String entity = typeOfT.getSimpleName();
+        String versions = typeOfT == Tool.class ? "tags" : "workflowVersions";
+        for (Object[] row : searchRows("SELECT c.id, l.value FROM " + entity + " c JOIN c.labels l WHERE c.id IN (:ids)", documents)) {
+            documents.get(row[0]).addLabel((String)row[1]);
+        }
+        for (Object[] row : searchRows("SELECT c.id, u.id FROM " + entity + " c JOIN c.starredUsers u WHERE c.id IN (:ids)", documents)) {
+            documents.get(row[0]).addStarredUser((Long)row[1]);
+        }
+        for (Object[] row : searchRows("SELECT c.id, v.name, v.verified, v.verifiedSource FROM " + entity + " c JOIN c." + versions
+            + " v WHERE c.id IN (:ids) ORDER BY v.id", documents)) {
+            documents.get(row[0]).addVersion((String)row[1], (Boolean)row[2], (String)row[3]);
+        }
+        for (Object[] row : searchRows("SELECT DISTINCT c.id, f.value FROM " + entity + " c JOIN c." + versions
+            + " v JOIN v.inputFileFormats f WHERE c.id IN (:ids)", documents)) {
+            documents.get(row[0]).addInputFileFormat((String)row[1]);
+        }
+        for (Object[] row : searchRows("SELECT DISTINCT c.id, f.value FROM " + entity + " c JOIN c." + versions
+            + " v JOIN v.outputFileFormats f WHERE c.id IN (:ids)", documents)) {
+            documents.get(row[0]).addOutputFileFormat((String)row[1]);
+        }
+        addSearchDetails(documents);
+        return new ArrayList<>(documents.values());
+    }
+
+    /**
+     * @param row a row of the findPublishedSearchRows query, type specific columns come first
+     * @return the search document with the type specific fields filled in
+     */
+    abstract EntrySearchDocument createSearchDocument(Object[] row);
+
+    /**
+     * Hook for type specific fields that need their own query
+     *
+     * @param documents search documents by entry id
+     */
+    void addSearchDetails(Map<Long, EntrySearchDocument> documents) {
+    }
+
+    List<Object[]> searchRows(String queryString, Map<Long, EntrySearchDocument> documents) {
+        return currentSession().createQuery(queryString, Object[].class).setParameterList("ids", documents.keySet()).setReadOnly(true)
+            .list();
+    }
+
     public long countAllHosted(long userid) {
         return ((BigInteger)namedQuery("Entry.hostedWorkflowCount").setParameter("userid", userid).getSingleResult()).longValueExact();
     }
@@ -188,29 +404,25 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDockstoreDAO<T>
     private void processQuery(String filter, String sortCol, String sortOrder, CriteriaBuilder cb, CriteriaQuery query, Root<T> entry) {
         List<Predicate> predicates = new ArrayList<>();
         if (!Strings.isNullOrEmpty(filter)) {
-            // TODO: handle all search attributes that we want to hook up, this sucks since we didn't handle polymorphism quite right
-            boolean toolMode = typeOfT == Tool.class;
-            String nameName = toolMode ? "toolname" : "workflowName";
-            String repoName = toolMode ? "name" : "repository";
-            String orgName = toolMode ? "namespace" : "organization";
-
+            // the name, author, repository and organization are kept lower cased in one column with a trigram index, see Entry.searchFields
             predicates.add(cb.and(// get published workflows
                 cb.isTrue(entry.get("isPublished")),
-                // ensure we deal with null values and then do like queries on those non-null values
-                cb.or(cb.and(cb.isNotNull(entry.get(nameName)), cb.like(entry.get(nameName), "%" + filter + "%")), //
-                    cb.and(cb.isNotNull(entry.get("author")), cb.like(entry.get("author"), "%" + filter + "%")), //
-                    cb.and(cb.isNotNull(entry.get(repoName)), cb.like(entry.get(repoName), "%" + filter + "%")), //
-                    cb.and(cb.isNotNull(entry.get(orgName)), cb.like(entry.get(orgName), "%" + filter + "%")))));
+                cb.like(entry.get("searchText"), "%" + filter.toLowerCase(Locale.ROOT) + "%")));
         } else {
             predicates.add(cb.isTrue(entry.get("isPublished")));
         }
         if (!Strings.isNullOrEmpty(sortCol)) {
-            // sorting by stars is a special case since it needs a join
-            if ("stars".equalsIgnoreCase(sortCol)) {
+            if (RELEVANCE.equalsIgnoreCase(sortCol)) {
+                // best matches for the filter first, by full text rank of the matched fields, see Entry.searchVector
+                Expression<Float> rank = cb.function("ts_rank", Float.class, entry.get("searchVector"),
+                    cb.function("plainto_tsquery", Object.class, cb.literal(Strings.nullToEmpty(filter))));
+                query.orderBy(cb.desc(rank), cb.desc(entry.get("id")));
+            } else if ("stars".equalsIgnoreCase(sortCol)) {
+                // sorting by stars is a special case since the count of stars is kept in its own column
                 if ("desc".equalsIgnoreCase(sortOrder)) {
-                    query.orderBy(cb.desc(cb.size(entry.<Collection>get("starredUsers"))), cb.desc(entry.get("id")));
+                    query.orderBy(cb.desc(entry.get("starCount")), cb.desc(entry.get("id")));
                 } else {
-                    query.orderBy(cb.asc(cb.size(entry.<Collection>get("starredUsers"))), cb.desc(entry.get("id")));
+                    query.orderBy(cb.asc(entry.get("starCount")), cb.desc(entry.get("id")));
                 }
             } else {
                 Path<Object> sortPath = entry.get(sortCol);
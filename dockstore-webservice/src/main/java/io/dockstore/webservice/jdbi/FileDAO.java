@@ -16,8 +16,14 @@
 
 package io.dockstore.webservice.jdbi;
 
+import java.sql.PreparedStatement;
+import java.util.List;
+
 import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.SourceFileContent;
+import io.dockstore.webservice.core.SourceFileContentConverter;
 import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 
 /**
@@ -35,4 +41,47 @@ public class FileDAO extends AbstractDAO<SourceFile> {
     public long create(SourceFile file) {
         return persist(file).getId();
     }
+
+    /**
+     * Stores content unless content with the same hash is already stored. Called while the session is being flushed, so the
+     * statement goes straight to the connection rather than through a query that could flush the session again.
+     *
+     * @param session the session writing a source file with the content
+     * @param content the content
+     */
+    public static void storeContent(Session session, SourceFileContent content) {
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO filecontent (hash, body) VALUES (?, ?) ON CONFLICT (hash) DO NOTHING")) {
+                statement.setString(1, content.getHash());
+                statement.setBytes(2, new SourceFileContentConverter().convertToDatabaseColumn(content));
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Finds stored content that is not compressed, in order of hash
+     *
+     * @param afterHash only content with a hash after this one is found, null to start from the first
+     * @param minBytes  the size of the smallest content to find
+     * @param limit     the maximum number of rows to find
+     * @return pairs of hash and stored content
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findUncompressedContent(String afterHash, int minBytes, int limit) {
+        return currentSession().createNativeQuery("SELECT hash, body FROM filecontent WHERE substring(body from 1 for 1) <> decode('00', 'hex') "
+            + "AND hash > :afterHash AND octet_length(body) >= :minBytes ORDER BY hash").setParameter("afterHash", afterHash == null ? "" : afterHash)
+            .setParameter("minBytes", minBytes).setMaxResults(limit).list();
+    }
+
+    /**
+     * Replaces stored content with its compressed form, which has the same hash.
+     * FileContent is immutable and not cached, the query space keeps Hibernate from evicting the whole second-level cache.
+     */
+    public void storeCompressed(String hash, SourceFileContent content) {
+        currentSession().createNativeQuery("UPDATE filecontent SET body = :body WHERE hash = :hash")
+            .setParameter("body", new SourceFileContentConverter().convertToDatabaseColumn(content)).setParameter("hash", hash)
+            .addSynchronizedQuerySpace("filecontent").executeUpdate();
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.jdbi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.Workflow;
+
+/**
+ * The filters of the GA4GH tools listing. Each filter, when set, matches entries whose field contains it or whose field is not set.
+ * Checked in memory by {@link #matches(Entry)} and translated to SQL by ToolDAO for listings of the whole catalogue.
+ */
+public class GA4GHToolFilter {
+    private final String registry;
+    private final String organization;
+    private final String name;
+    private final String toolname;
+    private final String description;
+    private final String author;
+    private final Boolean checker;
+
+    public GA4GHToolFilter(String registry, String organization, String name, String toolname, String description, String author,
+        Boolean checker) {
+        this.registry = registry;
+        this.organization = organization;
+        this.name = name;
+        this.toolname = toolname;
+        this.description = description;
+        this.author = author;
+        this.checker = checker;
+    }
+
+    public boolean matches(Entry entry) {
+        if (entry instanceof Tool) {
+            Tool tool = (Tool)entry;
+            // tools are never checker workflows
+            if (!contains(tool.getRegistry(), registry) || !contains(tool.getNamespace(), organization) || !contains(tool.getName(), name)
+                || !contains(tool.getToolname(), toolname) || checker != null && checker) {
+                return false;
+            }
+        }
+        if (entry instanceof Workflow) {
+            Workflow workflow = (Workflow)entry;
+            String sourceControl = workflow.getSourceControl() == null ? null : workflow.getSourceControl().toString();
+            if (!contains(sourceControl, registry) || !contains(workflow.getOrganization(), organization) || !contains(workflow.getRepository(),
+                name) || !contains(workflow.getWorkflowName(), toolname) || checker != null && workflow.isIsChecker() != checker) {
+                return false;
+            }
+        }
+        return contains(entry.getDescription(), description) && contains(entry.getAuthor(), author);
+    }
+
+    private static boolean contains(String field, String filter) {
+        return filter == null || field == null || field.contains(filter);
+    }
+
+    /**
+     * @return false if no tools can match, since tools are never checker workflows
+     */
+    boolean includesTools() {
+        return checker == null || !checker;
+    }
+
+    Boolean getChecker() {
+        return checker;
+    }
+
+    /**
+     * @param toolColumns true for the columns of the tool table, false for the columns of the workflow table
+     * @return the text filters by the column they apply to, filters that are not set are left out
+     */
+    Map<String, String> getTextFilters(boolean toolColumns) {
+        Map<String, String> filters = new LinkedHashMap<>();
+        putIfSet(filters, toolColumns ? "registry" : "sourcecontrol", registry);
+        putIfSet(filters, toolColumns ? "namespace" : "organization", organization);
+        putIfSet(filters, toolColumns ? "name" : "repository", name);
+        putIfSet(filters, toolColumns ? "toolname" : "workflowname", toolname);
+        putIfSet(filters, "description", description);
+        putIfSet(filters, "author", author);
+        return filters;
+    }
+
+    private static void putIfSet(Map<String, String> filters, String column, String value) {
+        if (value != null) {
+            filters.put(column, value);
+        }
+    }
+}
@@ -16,22 +16,172 @@
 
 package io.dockstore.webservice.jdbi;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
+import io.dockstore.common.LanguageType;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.SourceFile;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.ToolMode;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.helpers.EntrySearchDocument;
 import io.dockstore.webservice.helpers.JsonLdRetriever;
+import io.dockstore.webservice.helpers.PageCursor;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 
 /**
  * @author xliu
  */
 public class ToolDAO extends EntryDAO<Tool> {
+    private static final String DESCRIPTOR_TYPES_QUERY = "SELECT DISTINCT c.id, s.type FROM Tool c JOIN c.tags v JOIN v.sourceFiles s "
+        + "WHERE c.id IN (:ids)";
+
     public ToolDAO(SessionFactory factory) {
         super(factory);
     }
 
+    @SuppressWarnings("checkstyle:magicnumber")
+    @Override
+    EntrySearchDocument createSearchDocument(Object[] row) {
+        return EntrySearchDocument.forTool((Long)row[0], (String)row[1], (String)row[2], (String)row[3], (String)row[4], (Boolean)row[5]);
+    }
+
+    /**
+     * The languages of a tool are derived from the types of descriptors in its tags, see Tool.getDescriptorType()
+     */
+    @Override
+    void addSearchDetails(Map<Long, EntrySearchDocument> documents) {
+        for (Object[] row : searchRows(DESCRIPTOR_TYPES_QUERY, documents)) {
+            String language = toLanguage(row[1]);
+            if (language != null) {
+                documents.get(row[0]).addDescriptorType(language);
+            }
+        }
+    }
+
+    /**
+     * Fetch plan for listings of tools, which do not load source files. Sets the languages of each tool from one query
+     * instead of loading the source files of every tag to work them out, see Tool.getDescriptorType()
+     *
+     * @param tools tools attached to the current session
+     * @return the same tools
+     */
+    public <C extends Collection<Tool>> C loadDescriptorTypes(C tools) {
+        if (tools.isEmpty()) {
+            return tools;
+        }
+        Map<Long, Set<String>> languages = new HashMap<>();
+        tools.forEach(tool -> languages.put(tool.getId(), new TreeSet<>()));
+        List<Object[]> rows = currentSession().createQuery(DESCRIPTOR_TYPES_QUERY, Object[].class)
+            .setParameterList("ids", languages.keySet()).setReadOnly(true).list();
+        for (Object[] row : rows) {
+            String language = toLanguage(row[1]);
+            if (language != null) {
+                languages.get(row[0]).add(language);
+            }
+        }
+        tools.forEach(tool -> tool.setListedDescriptorTypes(new ArrayList<>(languages.get(tool.getId()))));
+        return tools;
+    }
+
+    private static String toLanguage(Object fileType) {
+        if (fileType == SourceFile.FileType.DOCKSTORE_CWL) {
+            return LanguageType.CWL.toString();
+        } else if (fileType == SourceFile.FileType.DOCKSTORE_WDL) {
+            return LanguageType.WDL.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Finds a page of the published tools and workflows matching GA4GH filters, in order of git URL then id.
+     * Tools and workflows are filtered and paged together in the database, so only the entries of the page are loaded.
+     * Git URLs are compared byte by byte, which is the order Java sorts them in.
+     *
+     * @param filter the filters
+     * @param after  if set, only entries after this cursor are found, which must have been made for git URL order
+     * @param first  the position of the first entry to find
+     * @param limit  the maximum number of entries to find
+     * @return the entries, tools and workflows mixed
+     */
+    @SuppressWarnings("unchecked")
+    public List<Entry> findPublishedForGA4GH(GA4GHToolFilter filter, PageCursor after, int first, int limit) {
+        String sql = "SELECT id, type FROM (" + getGA4GHUnion(filter) + ") entries";
+        if (after != null) {
+            sql += " WHERE giturl COLLATE \"C\" > :afterGitUrl OR giturl = :afterGitUrl AND id > :afterId";
+        }
+        NativeQuery<Object[]> query = currentSession().createNativeQuery(sql + " ORDER BY giturl COLLATE \"C\", id");
+        setGA4GHParameters(query, filter);
+        if (after != null) {
+            query.setParameter("afterGitUrl", after.getKey(String.class)).setParameter("afterId", after.getId());
+        }
+        List<Object[]> rows = query.setFirstResult(first).setMaxResults(limit).list();
+
+        List<Long> toolIds = new ArrayList<>();
+        List<Long> workflowIds = new ArrayList<>();
+        rows.forEach(row -> ("tool".equals(row[1]) ? toolIds : workflowIds).add(((Number)row[0]).longValue()));
+        Map<Long, Entry> entries = new HashMap<>();
+        currentSession().byMultipleIds(Tool.class).multiLoad(toolIds).forEach(tool -> entries.put(tool.getId(), tool));
+        currentSession().byMultipleIds(Workflow.class).multiLoad(workflowIds).forEach(workflow -> entries.put(workflow.getId(), workflow));
+        return rows.stream().map(row -> entries.get(((Number)row[0]).longValue())).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the number of published tools and workflows matching GA4GH filters
+     */
+    public long countPublishedForGA4GH(GA4GHToolFilter filter) {
+        NativeQuery query = currentSession().createNativeQuery("SELECT count(*) FROM (" + getGA4GHUnion(filter) + ") entries");
+        setGA4GHParameters(query, filter);
+        return ((Number)query.getSingleResult()).longValue();
+    }
+
+    private static String getGA4GHUnion(GA4GHToolFilter filter) {
+        StringBuilder workflows = new StringBuilder("SELECT id, giturl, 'workflow' AS type FROM workflow WHERE ispublished");
+        appendTextFilters(workflows, filter.getTextFilters(false));
+        if (filter.getChecker() != null) {
+            workflows.append(" AND ischecker = :checker");
+        }
+        if (!filter.includesTools()) {
+            return workflows.toString();
+        }
+        StringBuilder tools = new StringBuilder("SELECT id, giturl, 'tool' AS type FROM tool WHERE ispublished");
+        appendTextFilters(tools, filter.getTextFilters(true));
+        return tools + " UNION ALL " + workflows;
+    }
+
+    /**
+     * Matches what String.contains would, so wildcards typed in a filter are escaped
+     */
+    private static void appendTextFilters(StringBuilder sql, Map<String, String> filters) {
+        int index = 0;
+        for (String column : filters.keySet()) {
+            sql.append(" AND (").append(column).append(" IS NULL OR ").append(column).append(" LIKE :filter").append(index++)
+                .append(" ESCAPE '\\')");
+        }
+    }
+
+    private static void setGA4GHParameters(NativeQuery query, GA4GHToolFilter filter) {
+        // the text filters are in the same order for tools and workflows, so each parameter applies to both
+        int index = 0;
+        for (String value : filter.getTextFilters(false).values()) {
+            String escaped = value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            query.setParameter("filter" + index++, "%" + escaped + "%");
+        }
+        if (filter.getChecker() != null) {
+            query.setParameter("checker", filter.getChecker());
+        }
+    }
+
     public List<Tool> findByMode(final ToolMode mode) {
         return list(namedQuery("io.dockstore.webservice.core.Tool.findByMode").setParameter("mode", mode));
     }
@@ -72,7 +222,41 @@ public class ToolDAO extends EntryDAO<Tool> {
             .setParameter("namespace", namespace)
             .setParameter("name", name);
 
-        return list(query);
+        return loadSourceFiles(list(query));
+    }
+
+    /**
+     * Finds which of the given paths have a published tool, like findAllByPath but for many paths in one query (ignores tool name)
+     *
+     * @param paths tool paths, those that are not valid paths are ignored
+     * @return the paths among them that have at least one published tool
+     */
+    public Set<String> findPublishedPaths(Collection<String> paths) {
+        Set<String> registries = new TreeSet<>();
+        Set<String> namespaces = new TreeSet<>();
+        Set<String> names = new TreeSet<>();
+        for (String path : paths) {
+            String[] splitPath = Tool.splitPath(path);
+            if (splitPath != null) {
+                registries.add(splitPath[registryIndex]);
+                namespaces.add(splitPath[orgIndex]);
+                names.add(splitPath[repoIndex]);
+            }
+        }
+        if (registries.isEmpty()) {
+            return new TreeSet<>();
+        }
+
+        // the query matches every combination of the parts, so only keep the paths that were asked for
+        Set<String> found = currentSession()
+            .createQuery("SELECT DISTINCT c.registry, c.namespace, c.name FROM Tool c WHERE c.isPublished = true AND c.registry IN (:registries) "
+                + "AND c.namespace IN (:namespaces) AND c.name IN (:names)", Object[].class)
+            .setParameterList("registries", registries).setParameterList("namespaces", namespaces).setParameterList("names", names)
+            .setReadOnly(true).list().stream().map(row -> row[0] + "/" + row[1] + "/" + row[2]).collect(Collectors.toSet());
+        return paths.stream().filter(path -> {
+            String[] splitPath = Tool.splitPath(path);
+            return splitPath != null && found.contains(splitPath[registryIndex] + "/" + splitPath[orgIndex] + "/" + splitPath[repoIndex]);
+        }).collect(Collectors.toSet());
     }
 
     /**
@@ -126,7 +310,7 @@ public class ToolDAO extends EntryDAO<Tool> {
             query.setParameter("toolname", toolname);
         }
 
-        return uniqueResult(query);
+        return loadSourceFiles(uniqueResult(query));
     }
 
     public List<Tool> findPublishedByNamespace(String namespace) {
@@ -18,8 +18,10 @@ package io.dockstore.webservice.jdbi;
 
 import java.util.List;
 
+import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.core.SourceControlConverter;
 import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.helpers.EntrySearchDocument;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.Query;
 
@@ -31,6 +33,16 @@ public class WorkflowDAO extends EntryDAO<Workflow> {
         super(factory);
     }
 
+    @SuppressWarnings("checkstyle:magicnumber")
+    @Override
+    EntrySearchDocument createSearchDocument(Object[] row) {
+        SourceControl sourceControl = (SourceControl)row[1];
+        EntrySearchDocument document = EntrySearchDocument
+            .forWorkflow((Long)row[0], sourceControl.toString(), sourceControl.name(), (String)row[2], (String)row[3], (String)row[4]);
+        document.addDescriptorType((String)row[5]);
+        return document;
+    }
+
     /**
      * Finds all workflows with the given path (ignores workflow name)
      * When findPublished is true, will only look at published workflows
@@ -68,7 +80,7 @@ public class WorkflowDAO extends EntryDAO<Workflow> {
             .setParameter("organization", organization)
             .setParameter("repository", repository);
 
-        return list(query);
+        return loadSourceFiles(list(query));
     }
 
     /**
@@ -124,7 +136,7 @@ public class WorkflowDAO extends EntryDAO<Workflow> {
             query.setParameter("workflowname", workflowname);
         }
 
-        return uniqueResult(query);
+        return loadSourceFiles(uniqueResult(query));
     }
 
 
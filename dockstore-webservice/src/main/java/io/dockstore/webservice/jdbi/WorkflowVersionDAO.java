@@ -13,9 +13,13 @@
  *    See the License for the specific language governing permissions and
  *    limitations under the License.
  */
-
 package io.dockstore.webservice.jdbi;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+
+import com.google.common.hash.Hashing;
 import io.dockstore.webservice.core.WorkflowVersion;
 import org.hibernate.SessionFactory;
 
@@ -27,4 +31,45 @@ public class WorkflowVersionDAO extends VersionDAO<WorkflowVersion> {
     public WorkflowVersionDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
     }
+
+    /**
+     * Hashes the paths and content hashes of the source files of a version without loading their content
+     *
+     * @param versionId the id of the version
+     * @return a hash that changes whenever a source file of the version is added, removed, moved or changed
+     */
+    public String findSourceFilesHash(long versionId) {
+        String files = (String)currentSession().createNativeQuery("SELECT coalesce(string_agg(sf.path || ':' || "
+            + "coalesce(sf.contenthash, ''), E'\\n' ORDER BY sf.path), '') FROM version_sourcefile vs "
+            + "JOIN sourcefile sf ON sf.id = vs.sourcefileid WHERE vs.versionid = :versionId").setParameter("versionId", versionId)
+            .uniqueResult();
+        return Hashing.sha256().hashString(files, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * @param versionId    the id of the version
+     * @param type         the kind of content, for example DAG
+     * @param contentHash  the hash of what the content was made from
+     * @param notOlderThan content made before this is not found
+     * @return the stored content, or null if none was stored for this hash
+     */
+    @SuppressWarnings("unchecked")
+    public String findCachedContent(long versionId, String type, String contentHash, Timestamp notOlderThan) {
+        List<String> content = currentSession().createNativeQuery("SELECT content FROM versioncontentcache WHERE versionid = :versionId "
+            + "AND type = :type AND contenthash = :contentHash AND computed >= :notOlderThan").setParameter("versionId", versionId)
+            .setParameter("type", type).setParameter("contentHash", contentHash).setParameter("notOlderThan", notOlderThan).list();
+        return content.isEmpty() ? null : content.get(0);
+    }
+
+    /**
+     * Stores content made from a version, replacing whatever was stored for the same version and type.
+     * No entity maps the versioncontentcache table, so the query space keeps Hibernate from evicting the whole second-level cache.
+     */
+    public void storeCachedContent(long versionId, String type, String contentHash, String content) {
+        currentSession().createNativeQuery("INSERT INTO versioncontentcache (versionid, type, contenthash, content, computed) "
+            + "VALUES (:versionId, :type, :contentHash, :content, now()) ON CONFLICT (versionid, type) DO UPDATE SET "
+            + "contenthash = excluded.contenthash, content = excluded.content, computed = excluded.computed")
+            .setParameter("versionId", versionId).setParameter("type", type).setParameter("contentHash", contentHash)
+            .setParameter("content", content).addSynchronizedQuerySpace("versioncontentcache").executeUpdate();
+    }
 }
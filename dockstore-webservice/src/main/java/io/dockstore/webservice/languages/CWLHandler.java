@@ -143,28 +143,8 @@ public class CWLHandler implements LanguageHandlerInterface {
 
     @Override
     public Map<String, SourceFile> processImports(String repositoryId, String content, Version version, SourceCodeRepoInterface sourceCodeRepoInterface) {
-        return processImports(repositoryId, "", content, version, sourceCodeRepoInterface);
-    }
-
-    private Map<String, SourceFile> processImports(String repositoryId, String workingDirectoryForFile, String content, Version version,
-        SourceCodeRepoInterface sourceCodeRepoInterface) {
-        Map<String, SourceFile> imports = new HashMap<>();
-        Yaml yaml = new Yaml();
-        try {
-            Map<String, ?> map = yaml.loadAs(content, Map.class);
-            handleMap(repositoryId, workingDirectoryForFile, version, imports, map, sourceCodeRepoInterface);
-        } catch (YAMLException e) {
-            SourceCodeRepoInterface.LOG.error("Could not process content from workflow as yaml");
-        }
-
-        Map<String, SourceFile> recursiveImports = new HashMap<>();
-        for (SourceFile file : imports.values()) {
-            String workingDirectory = FilenameUtils.getFullPath(file.getPath());
-            final Map<String, SourceFile> sourceFiles = processImports(repositoryId, workingDirectory, file.getContent(), version, sourceCodeRepoInterface);
-            recursiveImports.putAll(sourceFiles);
-        }
-        recursiveImports.putAll(imports);
-        return recursiveImports;
+        return new ImportResolver(repositoryId, version, SourceFile.FileType.DOCKSTORE_CWL, sourceCodeRepoInterface)
+            .resolve(content, new CWLImportFinder());
     }
 
     /**
@@ -223,6 +203,7 @@ public class CWLHandler implements LanguageHandlerInterface {
 
             // Initialize data structures for Tool table
             Map<String, Triple<String, String, String>> nodeDockerInfo = new HashMap<>(); // map of stepId -> (run path, docker image, docker url)
+            Map<String, String> stepToDocker = new HashMap<>(); // map of stepId -> docker image, for steps that link to their image
 
             // Convert YAML to JSON
             Map<String, Object> mapping = yaml.loadAs(mainDescriptor, Map.class);
@@ -343,23 +324,30 @@ public class CWLHandler implements LanguageHandlerInterface {
                         }
                     }
 
-                    String dockerUrl = null;
+                    // the docker url is filled in once the images of all steps are known
                     if (!stepToType.get(workflowStepId).equals(workflowType) && !Strings.isNullOrEmpty(stepDockerRequirement)) {
-                        dockerUrl = getURLFromEntry(stepDockerRequirement, dao);
+                        stepToDocker.put(workflowStepId, stepDockerRequirement);
                     }
 
                     if (type == LanguageHandlerInterface.Type.DAG) {
-                        nodePairs.add(new MutablePair<>(workflowStepId, dockerUrl));
+                        nodePairs.add(new MutablePair<>(workflowStepId, null));
                     }
 
                     if (secondaryFile != null) {
-                        nodeDockerInfo.put(workflowStepId, new MutableTriple<>(secondaryFile, stepDockerRequirement, dockerUrl));
+                        nodeDockerInfo.put(workflowStepId, new MutableTriple<>(secondaryFile, stepDockerRequirement, null));
                     } else {
-                        nodeDockerInfo.put(workflowStepId, new MutableTriple<>(mainDescName, stepDockerRequirement, dockerUrl));
+                        nodeDockerInfo.put(workflowStepId, new MutableTriple<>(mainDescName, stepDockerRequirement, null));
                     }
 
                 }
 
+                // Look up the URLs of all docker images at once rather than one step at a time
+                Map<String, String> dockerUrls = DockerImageUrls.getURLs(new HashSet<>(stepToDocker.values()), dao);
+                nodePairs.replaceAll(node -> stepToDocker.containsKey(node.getLeft())
+                    ? new MutablePair<>(node.getLeft(), dockerUrls.get(stepToDocker.get(node.getLeft()))) : node);
+                nodeDockerInfo.replaceAll((stepId, info) -> stepToDocker.containsKey(stepId)
+                    ? new MutableTriple<>(info.getLeft(), info.getMiddle(), dockerUrls.get(stepToDocker.get(stepId))) : info);
+
                 if (type == LanguageHandlerInterface.Type.DAG) {
                     // Determine steps that point to end
                     List<String> endDependencies = new ArrayList<>();
@@ -407,60 +395,6 @@ public class CWLHandler implements LanguageHandlerInterface {
         }
     }
 
-    private void handleMap(String repositoryId, String workingDirectoryForFile, Version version, Map<String, SourceFile> imports, Map<String, ?> map,
-        SourceCodeRepoInterface sourceCodeRepoInterface) {
-        Set<String> importKeywords = Sets.newHashSet("$import", "$include", "$mixin", "import", "include", "mixin");
-        for (Map.Entry<String, ?> e : map.entrySet()) {
-            final Object mapValue = e.getValue();
-            if (importKeywords.contains(e.getKey().toLowerCase())) {
-                // handle imports and includes
-                if (mapValue instanceof String) {
-                    handleImport(repositoryId, workingDirectoryForFile, version, imports, (String)mapValue, sourceCodeRepoInterface);
-                }
-            } else if (e.getKey().equalsIgnoreCase("run")) {
-                // for workflows, bare files may be referenced. See https://github.com/ga4gh/dockstore/issues/208
-                //ex:
-                //  run: {import: revtool.cwl}
-                //  run: revtool.cwl
-                if (mapValue instanceof String) {
-                    handleImport(repositoryId, workingDirectoryForFile, version, imports, (String)mapValue, sourceCodeRepoInterface);
-                } else if (mapValue instanceof Map) {
-                    // this handles the case where an import is used
-                    handleMap(repositoryId, workingDirectoryForFile, version, imports, (Map)mapValue, sourceCodeRepoInterface);
-                }
-            } else {
-                handleMapValue(repositoryId, workingDirectoryForFile, version, imports, mapValue, sourceCodeRepoInterface);
-            }
-        }
-    }
-
-    private void handleMapValue(String repositoryId, String workingDirectoryForFile, Version version, Map<String, SourceFile> imports,
-        Object mapValue, SourceCodeRepoInterface sourceCodeRepoInterface) {
-        if (mapValue instanceof Map) {
-            handleMap(repositoryId, workingDirectoryForFile, version, imports, (Map)mapValue, sourceCodeRepoInterface);
-        } else if (mapValue instanceof List) {
-            for (Object listMember : (List)mapValue) {
-                handleMapValue(repositoryId, workingDirectoryForFile, version, imports, listMember, sourceCodeRepoInterface);
-            }
-        }
-    }
-
-    private void handleImport(String repositoryId, String workingDirectoryForFile, Version version, Map<String, SourceFile> imports, String mapValue, SourceCodeRepoInterface sourceCodeRepoInterface) {
-        SourceFile.FileType fileType = SourceFile.FileType.DOCKSTORE_CWL;
-        // create a new source file
-        String constructedPath = workingDirectoryForFile + mapValue;
-        final String fileResponse = sourceCodeRepoInterface.readGitRepositoryFile(repositoryId, fileType, version, constructedPath);
-        if (fileResponse == null) {
-            LOG.error("Could not read: " + mapValue);
-            return;
-        }
-        SourceFile sourceFile = new SourceFile();
-        sourceFile.setType(fileType);
-        sourceFile.setContent(fileResponse);
-        sourceFile.setPath(constructedPath);
-        imports.put(constructedPath, sourceFile);
-    }
-
     /**
      * Will determine dockerPull from requirements or hints (requirements takes precedence)
      *
@@ -643,4 +577,62 @@ public class CWLHandler implements LanguageHandlerInterface {
 
         return filteredArray;
     }
+
+    /**
+     * Finds the imports of CWL files with one YAML parser, imports are relative to the directory of the importing file
+     */
+    private static final class CWLImportFinder implements ImportResolver.ImportFinder {
+        private static final Set<String> IMPORT_KEYWORDS = Sets.newHashSet("$import", "$include", "$mixin", "import", "include", "mixin");
+
+        private final Yaml yaml = new Yaml();
+
+        @Override
+        public List<String> findImports(String path, String content) {
+            List<String> imports = new ArrayList<>();
+            try {
+                Map<String, ?> map = yaml.loadAs(content, Map.class);
+                if (map != null) {
+                    handleMap(path == null ? "" : FilenameUtils.getFullPath(path), imports, map);
+                }
+            } catch (YAMLException e) {
+                SourceCodeRepoInterface.LOG.error("Could not process content from workflow as yaml");
+            }
+            return imports;
+        }
+
+        private void handleMap(String workingDirectoryForFile, List<String> imports, Map<String, ?> map) {
+            for (Map.Entry<String, ?> e : map.entrySet()) {
+                final Object mapValue = e.getValue();
+                if (IMPORT_KEYWORDS.contains(e.getKey().toLowerCase())) {
+                    // handle imports and includes
+                    if (mapValue instanceof String) {
+                        imports.add(workingDirectoryForFile + mapValue);
+                    }
+                } else if (e.getKey().equalsIgnoreCase("run")) {
+                    // for workflows, bare files may be referenced. See https://github.com/ga4gh/dockstore/issues/208
+                    //ex:
+                    //  run: {import: revtool.cwl}
+                    //  run: revtool.cwl
+                    if (mapValue instanceof String) {
+                        imports.add(workingDirectoryForFile + mapValue);
+                    } else if (mapValue instanceof Map) {
+                        // this handles the case where an import is used
+                        handleMap(workingDirectoryForFile, imports, (Map)mapValue);
+                    }
+                } else {
+                    handleMapValue(workingDirectoryForFile, imports, mapValue);
+                }
+            }
+        }
+
+        private void handleMapValue(String workingDirectoryForFile, List<String> imports, Object mapValue) {
+            if (mapValue instanceof Map) {
+                handleMap(workingDirectoryForFile, imports, (Map)mapValue);
+            } else if (mapValue instanceof List) {
+                for (Object listMember : (List)mapValue) {
+                    handleMapValue(workingDirectoryForFile, imports, listMember);
+                }
+            }
+        }
+    }
 }
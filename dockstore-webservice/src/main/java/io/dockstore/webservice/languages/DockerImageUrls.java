@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.languages;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dockstore.webservice.jdbi.ToolDAO;
+
+/**
+ * Turns the docker images used by the steps of a workflow into URLs, linking to the tool on Dockstore when it is published there.
+ * All the images of a workflow are looked up on Dockstore with one query, and the URLs are kept for a short while since the same
+ * images show up in the DAG and tool table of many versions. The while is short since tools may be published in the meantime.
+ */
+final class DockerImageUrls {
+    private static final String QUAY_IO_PATH = "https://quay.io/repository/";
+    private static final String DOCKER_HUB_PATH_R = "https://hub.docker.com/r/"; // For type repo/subrepo:tag
+    private static final String DOCKER_HUB_PATH_UNDERSCORE = "https://hub.docker.com/_/"; // For type repo:tag
+    private static final String DOCKSTORE_PATH = "https://www.dockstore.org/containers/"; // Update to tools once UI is updated to use /tools instead of /containers
+    private static final String DOCKER_HUB_REGISTRY = "registry.hub.docker.com/";
+    private static final Pattern TAG_PATTERN = Pattern.compile("([^:]+):?(\\S+)?");
+    private static final int CACHE_SIZE = 10000;
+    private static final int CACHE_SECONDS = 60;
+    private static final Cache<String, String> URLS = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+        .expireAfterWrite(CACHE_SECONDS, TimeUnit.SECONDS).build();
+
+    private DockerImageUrls() {
+        // hide the constructor for utility classes
+    }
+
+    /**
+     * Given docker entries (quay or dockerhub), return URLs to the given entries
+     *
+     * @param dockerEntries the docker names, possibly with tags
+     * @param toolDAO       used to find which entries are published on Dockstore
+     * @return the URL of each docker entry that has one
+     */
+    static Map<String, String> getURLs(Collection<String> dockerEntries, ToolDAO toolDAO) {
+        Map<String, String> urls = new HashMap<>();
+        // For now ignore tag, later on it may be more useful
+        Map<String, String> imagesToLookUp = new HashMap<>();
+        for (String dockerEntry : dockerEntries) {
+            String image = removeTag(dockerEntry);
+            String url = URLS.getIfPresent(image);
+            if (url != null) {
+                urls.put(dockerEntry, url);
+            } else {
+                imagesToLookUp.put(dockerEntry, image);
+            }
+        }
+        if (imagesToLookUp.isEmpty()) {
+            return urls;
+        }
+
+        // TODO: How to deal with multiple entries of a tool? For now just grab the first
+        // TODO: How do we check that the URL is valid? If not then the entry is likely a local docker build
+        Set<String> toolPaths = new HashSet<>();
+        imagesToLookUp.values().forEach(image -> {
+            String toolPath = getToolPath(image);
+            if (toolPath != null) {
+                toolPaths.add(toolPath);
+            }
+        });
+        Set<String> publishedPaths = toolPaths.isEmpty() ? toolPaths : toolDAO.findPublishedPaths(toolPaths);
+
+        imagesToLookUp.forEach((dockerEntry, image) -> {
+            String url = getURL(image, publishedPaths);
+            if (url != null) {
+                URLS.put(image, url);
+                urls.put(dockerEntry, url);
+            }
+        });
+        return urls;
+    }
+
+    private static String removeTag(String dockerEntry) {
+        Matcher m = TAG_PATTERN.matcher(dockerEntry);
+        return m.matches() ? m.group(1) : dockerEntry;
+    }
+
+    /**
+     * @return the path the image would have as a tool on Dockstore, null for images that cannot be on Dockstore
+     */
+    private static String getToolPath(String image) {
+        if (image.startsWith("quay.io/")) {
+            return image;
+        } else if (image.split("/").length == 2) {
+            // if the path looks like pancancer/pcawg-oxog-tools
+            return DOCKER_HUB_REGISTRY + image;
+        }
+        return null;
+    }
+
+    private static String getURL(String image, Set<String> publishedPaths) {
+        String toolPath = getToolPath(image);
+        if (toolPath != null && publishedPaths.contains(toolPath)) {
+            // when we found a published tool, link to the tool on Dockstore
+            return DOCKSTORE_PATH + toolPath;
+        } else if (image.startsWith("quay.io/")) {
+            // when we cannot find a published tool on Dockstore, link to quay.io
+            return image.replaceFirst("quay\\.io/", QUAY_IO_PATH);
+        } else if (toolPath != null) {
+            // when we cannot find a published tool on Dockstore, link to docker hub
+            return DOCKER_HUB_PATH_R + image;
+        }
+        // if the path looks like debian:8 or debian
+        return Strings.isNullOrEmpty(image) ? null : DOCKER_HUB_PATH_UNDERSCORE + image;
+    }
+}
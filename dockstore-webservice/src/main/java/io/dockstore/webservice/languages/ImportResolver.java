@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.languages;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Version;
+import io.dockstore.webservice.helpers.SourceCodeRepoInterface;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the imports of a descriptor one level at a time: every file imported by the files of a level is read at once, and the
+ * imports of those files make up the next level.
+ * Each file is read once per normalised path, however many files import it and whichever path they use, which also stops import
+ * cycles. Files are read through readGitRepositoryFile, so files read at the same commit before come from the CommitFileCache.
+ * Finding the imports of a file runs on the calling thread, so an ImportFinder may reuse a parser that is not thread safe.
+ */
+class ImportResolver {
+    private static final Logger LOG = LoggerFactory.getLogger(ImportResolver.class);
+    private static final int MAX_CONCURRENT_READS = 8;
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_READS,
+        new ThreadFactoryBuilder().setNameFormat("import-resolver-%d").setDaemon(true).build());
+
+    private final String repositoryId;
+    private final Version version;
+    private final SourceFile.FileType fileType;
+    private final SourceCodeRepoInterface sourceCodeRepoInterface;
+
+    ImportResolver(String repositoryId, Version version, SourceFile.FileType fileType, SourceCodeRepoInterface sourceCodeRepoInterface) {
+        this.repositoryId = repositoryId;
+        this.version = version;
+        this.fileType = fileType;
+        this.sourceCodeRepoInterface = sourceCodeRepoInterface;
+    }
+
+    /**
+     * @param content the content of the main descriptor
+     * @param finder  finds the imports of a file
+     * @return the imported files by the path they were imported with, every path a file was imported with is included
+     */
+    Map<String, SourceFile> resolve(String content, ImportFinder finder) {
+        Map<String, SourceFile> imports = new HashMap<>();
+        Map<String, String> contentByKey = new HashMap<>();
+        Set<String> readKeys = new HashSet<>();
+        Collection<String> level = finder.findImports(null, content);
+        while (!level.isEmpty()) {
+            // the files of this level that have not been read through any path yet
+            Map<String, String> toRead = new LinkedHashMap<>();
+            for (String path : level) {
+                if (readKeys.add(normalise(path))) {
+                    toRead.put(normalise(path), path);
+                }
+            }
+            contentByKey.putAll(readAll(toRead));
+
+            for (String path : level) {
+                String fileContent = contentByKey.get(normalise(path));
+                if (fileContent != null && !imports.containsKey(path)) {
+                    SourceFile importFile = new SourceFile();
+                    importFile.setType(fileType);
+                    importFile.setContent(fileContent);
+                    importFile.setPath(path);
+                    imports.put(path, importFile);
+                }
+            }
+
+            List<String> nextLevel = new ArrayList<>();
+            toRead.forEach((key, path) -> {
+                String fileContent = contentByKey.get(key);
+                if (fileContent != null) {
+                    nextLevel.addAll(finder.findImports(path, fileContent));
+                }
+            });
+            level = nextLevel;
+        }
+        return imports;
+    }
+
+    /**
+     * @param paths the paths to read by their normalised path
+     * @return the content of the files that could be read by their normalised path
+     */
+    private Map<String, String> readAll(Map<String, String> paths) {
+        Map<String, Future<String>> reads = new LinkedHashMap<>();
+        paths.forEach((key, path) -> reads.put(key, EXECUTOR.submit(() -> sourceCodeRepoInterface.readGitRepositoryFile(repositoryId,
+            fileType, version, path))));
+        Map<String, String> contents = new HashMap<>();
+        try {
+            for (Map.Entry<String, Future<String>> read : reads.entrySet()) {
+                String fileContent = read.getValue().get();
+                if (fileContent == null) {
+                    LOG.error("Could not read: " + paths.get(read.getKey()));
+                } else {
+                    contents.put(read.getKey(), fileContent);
+                }
+            }
+        } catch (InterruptedException e) {
+            reads.values().forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CustomWebApplicationException("Interrupted while reading imports", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        } catch (ExecutionException e) {
+            reads.values().forEach(future -> future.cancel(true));
+            // fail the same way as reading the imports one at a time did
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new CustomWebApplicationException("Could not read imports: " + e.getCause().getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        return contents;
+    }
+
+    /**
+     * Paths that only differ in '.', '..' or duplicate separators name the same file
+     */
+    private static String normalise(String path) {
+        String normalised = FilenameUtils.normalize(path, true);
+        return normalised == null ? path : normalised;
+    }
+
+    interface ImportFinder {
+        /**
+         * @param path    the path of the file as it was imported, null for the main descriptor
+         * @param content the content of the file
+         * @return the paths of the files it imports, as they should be read
+         */
+        Collection<String> findImports(String path, String content);
+    }
+}
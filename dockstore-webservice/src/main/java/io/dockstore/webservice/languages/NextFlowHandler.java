@@ -21,12 +21,19 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import groovy.lang.GroovyShell;
 import groovy.lang.MissingPropertyException;
 import groovy.util.ConfigObject;
 import groovy.util.ConfigSlurper;
@@ -42,22 +49,35 @@ import org.apache.commons.io.IOUtils;
 import org.codehaus.groovy.antlr.GroovySourceAST;
 import org.codehaus.groovy.antlr.parser.GroovyLexer;
 import org.codehaus.groovy.antlr.parser.GroovyRecognizer;
+import org.codehaus.groovy.control.CompilationFailedException;
 
 /**
  * This class will eventually handle support for NextFlow
+ * Parsing a config compiles it into a class, and walking a script means building its AST, both are slow, so the results are cached
+ * by content hash. The manifest, which is all that refreshing needs, is read without compiling anything when it is simple enough.
+ * Configs that are not simple enough are compiled and run by ConfigSlurper, as Nextflow itself does. That runs code from the
+ * repository of the workflow inside the webservice, with the permissions of the webservice. Nothing restricts what that code does.
  */
 public class NextFlowHandler implements LanguageHandlerInterface {
+    private static final int CACHE_SIZE = 200;
+    private static final Cache<String, ConfigObject> CONFIGS = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    private static final Cache<String, Processes> PROCESSES = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    private static final Pattern MANIFEST_BLOCK_START = Pattern.compile("(?m)^manifest\\s*\\{\\s*$");
+    private static final Pattern MANIFEST_BLOCK_END = Pattern.compile("(?m)^\\s*}\\s*$");
+    private static final Pattern MANIFEST_DOTTED = Pattern.compile("(?m)^manifest\\.(\\w+\\s*=.*)$");
+    // a string literal without escapes or interpolation, so its value is its text
+    private static final Pattern LITERAL_ASSIGNMENT = Pattern.compile("^\\s*(?<key>\\w+)\\s*=\\s*(?:'(?<single>[^'\\\\]*)'|\"(?<double>[^\"\\\\$]*)\")\\s*(//.*)?$");
+    private static final Pattern MANIFEST_WORD = Pattern.compile("\\bmanifest\\b");
 
     @Override
     public Entry parseWorkflowContent(Entry entry, String content, Set<SourceFile> sourceFiles) {
         // this is where we can look for things like NextFlow config files or maybe a future Dockstore.yml
-        ConfigObject parse = getConfigObject(content);
-        ConfigObject manifest = (ConfigObject)parse.get("manifest");
-        if (manifest != null && manifest.containsKey("description")) {
-            entry.setDescription((String)manifest.get("description"));
+        Map<String, String> manifest = getManifest(content);
+        if (manifest.containsKey("description")) {
+            entry.setDescription(manifest.get("description"));
         }
-        if (manifest != null && manifest.containsKey("author")) {
-            entry.setAuthor((String)manifest.get("author"));
+        if (manifest.containsKey("author")) {
+            entry.setAuthor(manifest.get("author"));
         }
 
         return entry;
@@ -71,14 +91,13 @@ public class NextFlowHandler implements LanguageHandlerInterface {
     @Override
     public Map<String, SourceFile> processImports(String repositoryId, String content, Version version,
         SourceCodeRepoInterface sourceCodeRepoInterface) {
-        ConfigObject parse = getConfigObject(content);
         Map<String, SourceFile> imports = new HashMap<>();
 
         // add the NextFlow scripts
-        ConfigObject manifest = (ConfigObject)parse.get("manifest");
+        Map<String, String> manifest = getManifest(content);
         String mainScriptPath = "main.nf";
-        if (manifest != null && manifest.containsKey("mainScript")) {
-            mainScriptPath = (String)manifest.get("mainScript");
+        if (manifest.containsKey("mainScript")) {
+            mainScriptPath = manifest.get("mainScript");
         }
         Optional<SourceFile> sourceFile = sourceCodeRepoInterface.readFile(repositoryId, version, SourceFile.FileType.NEXTFLOW, mainScriptPath);
         if (sourceFile.isPresent()) {
@@ -104,16 +123,134 @@ public class NextFlowHandler implements LanguageHandlerInterface {
         }
     }
 
-    private ConfigObject getConfigObject(String content) {
-        ConfigSlurper slurper = new ConfigSlurper();
+    private static String cleanConfig(String content) {
         //TODO: replace with NextFlow parser when licensing issues are dealt with
         // this sucks, but we need to ignore includeConfig lines
-        String cleanedContent = content.replaceAll("(?i)(?m)^[ \t]*includeConfig.*", "");
+        return content.replaceAll("(?i)(?m)^[ \t]*includeConfig.*", "");
+    }
+
+    private static String hash(String content) {
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Reads the manifest of a config, without compiling the config when the manifest only assigns plain strings
+     * @param content the content of the config
+     * @return the manifest settings whose values are not null, as strings
+     */
+    private Map<String, String> getManifest(String content) {
+        Map<String, String> manifest = parseSimpleManifest(cleanConfig(content));
+        if (manifest != null) {
+            return manifest;
+        }
+        manifest = new HashMap<>();
+        Object manifestObject = getConfigObject(content).get("manifest");
+        if (manifestObject instanceof ConfigObject) {
+            for (Object key : ((ConfigObject)manifestObject).keySet()) {
+                Object value = ((ConfigObject)manifestObject).get(key);
+                if (value != null) {
+                    manifest.put(key.toString(), value.toString());
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Reads a manifest made of a top level manifest block and manifest.key assignments that assign string literals
+     * @param content the content of the config without includeConfig lines
+     * @return the manifest settings, or null if the config mentions the manifest in any other way and needs to be compiled
+     */
+    static Map<String, String> parseSimpleManifest(String content) {
+        Map<String, String> manifest = new LinkedHashMap<>();
+        List<String> assignments = new ArrayList<>();
+        int mentions = 0;
+        int position = 0;
+        while (position < content.length()) {
+            Matcher block = MANIFEST_BLOCK_START.matcher(content);
+            Matcher dotted = MANIFEST_DOTTED.matcher(content);
+            boolean blockFound = block.find(position);
+            boolean dottedFound = dotted.find(position);
+            if (blockFound && (!dottedFound || block.start() < dotted.start())) {
+                Matcher end = MANIFEST_BLOCK_END.matcher(content);
+                if (!isTopLevel(content.substring(0, block.start())) || !end.find(block.end())) {
+                    return null;
+                }
+                for (String line : content.substring(block.end(), end.start()).split("\n")) {
+                    if (!line.trim().isEmpty() && !line.trim().startsWith("//")) {
+                        assignments.add(line);
+                    }
+                }
+                mentions++;
+                position = end.end();
+            } else if (dottedFound) {
+                if (!isTopLevel(content.substring(0, dotted.start()))) {
+                    return null;
+                }
+                assignments.add(dotted.group(1));
+                mentions++;
+                position = dotted.end();
+            } else {
+                break;
+            }
+        }
+
+        // any other mention of the manifest, like a nested or computed one, needs the real parser
+        Matcher word = MANIFEST_WORD.matcher(content);
+        int words = 0;
+        while (word.find()) {
+            words++;
+        }
+        if (words != mentions) {
+            return null;
+        }
+        for (String assignment : assignments) {
+            Matcher literal = LITERAL_ASSIGNMENT.matcher(assignment);
+            if (!literal.matches()) {
+                return null;
+            }
+            manifest.put(literal.group("key"), literal.group("single") != null ? literal.group("single") : literal.group("double"));
+        }
+        return manifest;
+    }
+
+    /**
+     * @param before the content before some line
+     * @return true if the line is not inside a block, so far as counting braces tells
+     */
+    private static boolean isTopLevel(String before) {
+        int depth = 0;
+        for (char c : before.toCharArray()) {
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return depth == 0;
+    }
+
+    private ConfigObject getConfigObject(String content) {
+        String cleanedContent = cleanConfig(content);
+        String key = hash(cleanedContent);
+        ConfigObject cached = CONFIGS.getIfPresent(key);
+        if (cached == null) {
+            cached = parseConfig(cleanedContent);
+            CONFIGS.put(key, cached);
+        }
+        // callers are free to change what they get
+        return cached.clone();
+    }
+
+    private ConfigObject parseConfig(String cleanedContent) {
         try {
-            return slurper.parse(cleanedContent);
+            return new ConfigSlurper().parse(new GroovyShell().parse(cleanedContent));
         } catch (MissingPropertyException e) {
             LOG.error("could not parse nextflow config due to " + e.getMessage());
             return new ConfigObject();
+        } catch (CompilationFailedException e) {
+            LOG.error("could not compile nextflow config due to " + e.getMessage());
+            return new ConfigObject();
         }
     }
 
@@ -287,12 +424,12 @@ public class NextFlowHandler implements LanguageHandlerInterface {
         // nextflow uses the main script from the manifest as the main descriptor
         // add the NextFlow scripts
         ConfigObject parse = getConfigObject(mainDescriptor);
-        ConfigObject manifest = (ConfigObject)parse.get("manifest");
-        String mainScriptPath = "main.nf";
-        if (manifest != null && manifest.containsKey("mainScript")) {
-            mainScriptPath = manifest.get("mainScript").toString();
-        }
+        String mainScriptPath = getManifest(mainDescriptor).getOrDefault("mainScript", "main.nf");
         mainDescriptor = secondaryDescContent.get(mainScriptPath);
+        if (mainDescriptor == null) {
+            LOG.error("could not find the nextflow main script " + mainScriptPath);
+            return null;
+        }
 
         // Get default container
         ConfigObject params = (ConfigObject)parse.get("params");
@@ -325,77 +462,92 @@ public class NextFlowHandler implements LanguageHandlerInterface {
     private Map<String, List<String>> getCallsToDependencies(String mainDescriptor) {
         //TODO: create proper dependency arrays, for now just list processes sequentially
         Map<String, List<String>> map = new HashMap<>();
-        try (InputStream stream = IOUtils.toInputStream(mainDescriptor, StandardCharsets.UTF_8)) {
-            GroovyRecognizer make = GroovyRecognizer.make(new GroovyLexer(stream));
-            make.compilationUnit();
-
-            GroovySourceAST ast = (GroovySourceAST)make.getAST();
-
-            List<GroovySourceAST> processList = getSubtreesOfKeyword(ast, "process");
-            Map<String, List<String>> processNameToInputChannels = new HashMap<>();
-            Map<String, List<String>> processNameToOutputChannels = new HashMap<>();
-
-            processList.forEach((GroovySourceAST processAST) -> {
-                String processName = getProcessValue(processAST);
-
-                // Get a list of all channels that the process depends on
-                List<String> inputs = getInputDependencyList(processAST);
-                processNameToInputChannels.put(processName, inputs);
-
-                // Get a list of all channels that the process writes to
-                List<String> outputs = getOutputDependencyList(processAST);
-                processNameToOutputChannels.put(processName, outputs);
-            });
-
-            // Create a map of process name to dependent processes
-            processNameToInputChannels.keySet().forEach((String processName) -> {
-                List<String> dependencies = new ArrayList<>();
-                processNameToInputChannels.get(processName).forEach((String channelRead) -> {
-                    processNameToOutputChannels.keySet().forEach((String dependentProcessName) -> {
-                        Optional<String> temp = processNameToOutputChannels.get(dependentProcessName)
-                                .stream()
-                                .filter(channelWrite -> Objects.equals(channelRead, channelWrite))
-                                .findFirst();
-
-                        if (temp.isPresent()) {
-                            dependencies.add(dependentProcessName);
-                        }
-                    });
+        Processes processes = getProcesses(mainDescriptor);
+
+        // Create a map of process name to dependent processes
+        processes.inputChannels.keySet().forEach((String processName) -> {
+            List<String> dependencies = new ArrayList<>();
+            processes.inputChannels.get(processName).forEach((String channelRead) -> {
+                processes.outputChannels.keySet().forEach((String dependentProcessName) -> {
+                    Optional<String> temp = processes.outputChannels.get(dependentProcessName)
+                            .stream()
+                            .filter(channelWrite -> Objects.equals(channelRead, channelWrite))
+                            .findFirst();
+
+                    if (temp.isPresent()) {
+                        dependencies.add(dependentProcessName);
+                    }
                 });
-                map.put(processName, dependencies);
             });
-        } catch (IOException | TokenStreamException | RecognitionException e) {
-            LOG.warn("could not parse", e);
-        }
+            map.put(processName, dependencies);
+        });
         return map;
     }
 
     private Map<String, String> getCallsToDockerMap(String mainDescriptor, String defaultContainer) {
         Map<String, String> map = new HashMap<>();
+        getProcesses(mainDescriptor).containers.forEach((processName, container) -> {
+            String containerName = container != null ? container : defaultContainer;
+            if (containerName != null) {
+                map.put(processName, containerName);
+                LOG.debug("found container: " + containerName + " in process " + processName);
+            }
+        });
+        return map;
+    }
+
+    /**
+     * Gets what the DAG and tool table need from the processes of a script, walking its AST only if the script was not seen recently
+     * @param mainDescriptor the content of the main script
+     * @return the processes of the script, none if it cannot be parsed
+     */
+    private Processes getProcesses(String mainDescriptor) {
+        String key = hash(mainDescriptor);
+        Processes processes = PROCESSES.getIfPresent(key);
+        if (processes == null) {
+            processes = parseProcesses(mainDescriptor);
+            PROCESSES.put(key, processes);
+        }
+        return processes;
+    }
+
+    private Processes parseProcesses(String mainDescriptor) {
+        Processes processes = new Processes();
         try (InputStream stream = IOUtils.toInputStream(mainDescriptor, StandardCharsets.UTF_8)) {
             GroovyRecognizer make = GroovyRecognizer.make(new GroovyLexer(stream));
             make.compilationUnit();
             GroovySourceAST ast = (GroovySourceAST)make.getAST();
             List<GroovySourceAST> processList = getSubtreesOfKeyword(ast, "process");
 
+            // find the containers first, since finding the output channels cuts the AST short
             for (GroovySourceAST processAST : processList) {
-                String processName = getProcessValue(processAST);
                 GroovySourceAST containerAST = getFirstAstWithKeyword(processAST, "container", false);
-                String containerName;
-                if (containerAST != null) {
-                    containerName = containerAST.getNextSibling().getFirstChild().getText();
-                } else {
-                    containerName = defaultContainer;
-                }
-
-                if (containerName != null) {
-                    map.put(processName, containerName);
-                    LOG.debug("found container: " + containerName + " in process " + processName);
-                }
+                processes.containers.put(getProcessValue(processAST),
+                    containerAST != null ? containerAST.getNextSibling().getFirstChild().getText() : null);
             }
+
+            processList.forEach((GroovySourceAST processAST) -> {
+                String processName = getProcessValue(processAST);
+
+                // Get a list of all channels that the process depends on
+                processes.inputChannels.put(processName, getInputDependencyList(processAST));
+
+                // Get a list of all channels that the process writes to
+                processes.outputChannels.put(processName, getOutputDependencyList(processAST));
+            });
         } catch (IOException | TokenStreamException | RecognitionException e) {
             LOG.warn("could not parse", e);
+            return new Processes();
         }
-        return map;
+        return processes;
+    }
+
+    /**
+     * The containers and channels of the processes of a script, by process name
+     */
+    private static final class Processes {
+        private final Map<String, String> containers = new HashMap<>();
+        private final Map<String, List<String>> inputChannels = new HashMap<>();
+        private final Map<String, List<String>> outputChannels = new HashMap<>();
     }
 }
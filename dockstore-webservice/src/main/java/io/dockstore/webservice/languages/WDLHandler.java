@@ -15,9 +15,6 @@
  */
 package io.dockstore.webservice.languages;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,7 +27,6 @@ import java.util.regex.Pattern;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.io.Files;
 import io.dockstore.common.Bridge;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.Entry;
@@ -40,13 +36,13 @@ import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.helpers.SourceCodeRepoInterface;
 import io.dockstore.webservice.jdbi.ToolDAO;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import wdl4s.parser.WdlParser;
+import wdl4s.wdl.WdlNamespaceWithWorkflow;
 
 /**
  * This class will eventually handle support for understanding WDL
@@ -196,13 +192,14 @@ public class WDLHandler implements LanguageHandlerInterface {
     @Override
     public Map<String, SourceFile> processImports(String repositoryId, String content, Version version,
         SourceCodeRepoInterface sourceCodeRepoInterface) {
-        return processImports(repositoryId, content, version, sourceCodeRepoInterface, new HashMap<>());
+        return new ImportResolver(repositoryId, version, SourceFile.FileType.DOCKSTORE_WDL, sourceCodeRepoInterface)
+            .resolve(content, (path, fileContent) -> findImports(fileContent));
     }
 
-    private Map<String, SourceFile> processImports(String repositoryId, String content, Version version,
-        SourceCodeRepoInterface sourceCodeRepoInterface, Map<String, SourceFile> imports) {
-        SourceFile.FileType fileType = SourceFile.FileType.DOCKSTORE_WDL;
-
+    /**
+     * @return the paths of the files a WDL file imports, imports of URLs are left to the WDL tools
+     */
+    private static Set<String> findImports(String content) {
         // Use matcher to get imports
         String[] lines = StringUtils.split(content, '\n');
         Set<String> currentFileImports = new HashSet<>();
@@ -217,24 +214,7 @@ public class WDLHandler implements LanguageHandlerInterface {
                 }
             }
         }
-
-        for (String importPath : currentFileImports) {
-            if (!imports.containsKey(importPath)) {
-                SourceFile importFile = new SourceFile();
-
-                final String fileResponse = sourceCodeRepoInterface.readGitRepositoryFile(repositoryId, fileType, version, importPath);
-                if (fileResponse == null) {
-                    SourceCodeRepoInterface.LOG.error("Could not read: " + importPath);
-                    continue;
-                }
-                importFile.setContent(fileResponse);
-                importFile.setPath(importPath);
-                importFile.setType(SourceFile.FileType.DOCKSTORE_WDL);
-                imports.put(importFile.getPath(), importFile);
-                imports.putAll(processImports(repositoryId, importFile.getContent(), version, sourceCodeRepoInterface, imports));
-            }
-        }
-        return imports;
+        return currentFileImports;
     }
 
     /**
@@ -257,26 +237,21 @@ public class WDLHandler implements LanguageHandlerInterface {
         // Initialize data structures for DAG
         Map<String, ToolInfo> toolInfoMap;
         Map<String, String> namespaceToPath;
-        File tempMainDescriptor = null;
-        // Write main descriptor to file
-        // The use of temporary files is not needed here and might cause new problems
+        // Parse the main descriptor once, resolving imports from the secondary descriptors in memory
         try {
-            tempMainDescriptor = File.createTempFile("main", "descriptor", Files.createTempDir());
-            Bridge bridge = new Bridge(tempMainDescriptor.getParent());
-            bridge.setSecondaryFiles((HashMap<String, String>)secondaryDescContent);
-            Files.asCharSink(tempMainDescriptor, StandardCharsets.UTF_8).write(mainDescriptor);
+            Bridge bridge = new Bridge();
+            bridge.setSecondaryFiles(secondaryDescContent);
+            WdlNamespaceWithWorkflow namespace = bridge.loadWithSecondaryFiles(mainDescriptor);
 
             // Iterate over each call, grab docker containers
-            Map<String, String> callsToDockerMap = bridge.getCallsToDockerMap(tempMainDescriptor);
+            Map<String, String> callsToDockerMap = bridge.getCallsToDockerMap(namespace);
             // Iterate over each call, determine dependencies
-            Map<String, List<String>> callsToDependencies = bridge.getCallsToDependencies(tempMainDescriptor);
+            Map<String, List<String>> callsToDependencies = bridge.getCallsToDependencies(namespace);
             toolInfoMap = mapConverterToToolInfo(callsToDockerMap, callsToDependencies);
             // Get import files
-            namespaceToPath = bridge.getImportMap(tempMainDescriptor);
-        } catch (IOException | WdlParser.SyntaxError e) {
+            namespaceToPath = bridge.getImportMap(namespace);
+        } catch (WdlParser.SyntaxError e) {
             throw new CustomWebApplicationException("could not process wdl into DAG: " + e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
-        } finally {
-            FileUtils.deleteQuietly(tempMainDescriptor);
         }
         return convertMapsToContent(mainDescName, type, dao, callType, toolType, toolInfoMap, namespaceToPath);
     }
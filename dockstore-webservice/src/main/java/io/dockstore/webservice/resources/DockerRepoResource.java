@@ -19,6 +19,7 @@ package io.dockstore.webservice.resources;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -149,14 +150,8 @@ public class DockerRepoResource
     }
 
     List<Tool> refreshToolsForUser(Long userId, String organization) {
-        List<Token> tokens = tokenDAO.findBitbucketByUserId(userId);
-        if (!tokens.isEmpty()) {
-            Token bitbucketToken = tokens.get(0);
-            refreshBitbucketToken(bitbucketToken, client, tokenDAO, bitbucketClientID, bitbucketClientSecret);
-        }
-
         // Get user's quay and git tokens
-        tokens = tokenDAO.findByUserId(userId);
+        List<Token> tokens = getRefreshedTokens(userId);
         Token quayToken = Token.extractToken(tokens, TokenType.QUAY_IO);
         Token githubToken = Token.extractToken(tokens, TokenType.GITHUB_COM);
         Token bitbucketToken = Token.extractToken(tokens, TokenType.BITBUCKET_ORG);
@@ -182,6 +177,52 @@ public class DockerRepoResource
         return updatedTools;
     }
 
+    /**
+     * Updates the list of tools of a user from each image registry, leaving their tags to be refreshed by a refresh job.
+     * The job refreshes the tags of each tool in a transaction of its own.
+     *
+     * @return the work to refresh the tags of each tool by tool path
+     */
+    Map<String, Runnable> planRefreshToolsForUser(Long userId, String organization) {
+        List<Token> tokens = getRefreshedTokens(userId);
+        Token quayToken = Token.extractToken(tokens, TokenType.QUAY_IO);
+        Token githubToken = Token.extractToken(tokens, TokenType.GITHUB_COM);
+        Token bitbucketToken = Token.extractToken(tokens, TokenType.BITBUCKET_ORG);
+        Token gitlabToken = Token.extractToken(tokens, TokenType.GITLAB_COM);
+        checkTokens(quayToken, githubToken, bitbucketToken, gitlabToken);
+
+        ImageRegistryFactory factory = new ImageRegistryFactory(client, objectMapper, quayToken);
+        Map<String, Runnable> work = new LinkedHashMap<>();
+        for (AbstractImageRegistry abstractImageRegistry : factory.getAllRegistries()) {
+            LOG.info("Grabbing " + abstractImageRegistry.getRegistry().getFriendlyName() + " repos");
+            for (Tool tool : abstractImageRegistry.refreshToolList(userId, userDAO, toolDAO, organization)) {
+                final long toolId = tool.getId();
+                work.put(tool.getToolPath(), () -> {
+                    Tool toolFromDB = toolDAO.findById(toolId);
+                    abstractImageRegistry
+                        .refreshToolTags(toolFromDB, tagDAO, fileDAO, toolDAO, fileFormatDAO, client, githubToken, bitbucketToken,
+                            gitlabToken);
+                    if (toolFromDB.getIsPublished()) {
+                        elasticManager.handleIndexUpdate(toolFromDB, ElasticMode.UPDATE);
+                    }
+                });
+            }
+        }
+        return work;
+    }
+
+    /**
+     * @return the tokens of a user, after refreshing their Bitbucket token if they have one
+     */
+    private List<Token> getRefreshedTokens(Long userId) {
+        List<Token> tokens = tokenDAO.findBitbucketByUserId(userId);
+        if (!tokens.isEmpty()) {
+            Token bitbucketToken = tokens.get(0);
+            refreshBitbucketToken(bitbucketToken, client, tokenDAO, bitbucketClientID, bitbucketClientSecret);
+        }
+        return tokenDAO.findByUserId(userId);
+    }
+
     private static void checkTokens(final Token quayToken, final Token githubToken, final Token bitbucketToken, final Token gitlabToken) {
         if (githubToken == null) {
             LOG.info("GIT token not found!");
@@ -419,7 +460,7 @@ public class DockerRepoResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/published/{containerId}")
     @ApiOperation(value = "Get a published tool.", notes = "NO authentication", response = Tool.class)
     public Tool getPublishedContainer(@ApiParam(value = "Tool ID", required = true) @PathParam("containerId") Long containerId) {
@@ -430,19 +471,19 @@ public class DockerRepoResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/namespace/{namespace}/published")
     @ApiOperation(value = "List all published tools belonging to the specified namespace.", notes = "NO authentication", response = Tool.class, responseContainer = "List")
     public List<Tool> getPublishedContainersByNamespace(
         @ApiParam(value = "namespace", required = true) @PathParam("namespace") String namespace) {
-        List<Tool> tools = toolDAO.findPublishedByNamespace(namespace);
+        List<Tool> tools = toolDAO.loadDescriptorTypes(toolDAO.findPublishedByNamespace(namespace));
         filterContainersForHiddenTags(tools);
         return tools;
     }
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/schema/{containerId}/published")
     @ApiOperation(value = "Get a published tool's schema by ID.", notes = "NO authentication", responseContainer = "List")
     public List getPublishedContainerSchema(@ApiParam(value = "Tool ID", required = true) @PathParam("containerId") Long containerId) {
@@ -616,7 +657,7 @@ public class DockerRepoResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("published")
     @ApiOperation(value = "List all published tools.", tags = {
         "containers" }, notes = "NO authentication", response = Tool.class, responseContainer = "List")
@@ -629,17 +670,22 @@ public class DockerRepoResource
         @ApiParam(value = "Sort order", allowableValues = "asc,desc") @DefaultValue("desc") @QueryParam("sortOrder") String sortOrder,
         @Context HttpServletResponse response) {
         int maxLimit = Math.min(Integer.parseInt(PAGINATION_LIMIT), limit);
-        List<Tool> tools = toolDAO.findAllPublished(offset, maxLimit, filter, sortCol, sortOrder);
+        List<Tool> tools = toolDAO.loadDescriptorTypes(toolDAO.findAllPublished(offset, maxLimit, filter, sortCol, sortOrder));
         filterContainersForHiddenTags(tools);
         stripContent(tools);
         response.addHeader("X-total-count", String.valueOf(toolDAO.countAllPublished(Optional.of(filter))));
-        response.addHeader("Access-Control-Expose-Headers", "X-total-count");
+        String nextPage = toolDAO.getNextPageCursor(tools, maxLimit, sortCol, sortOrder);
+        if (nextPage != null) {
+            // pass this as the offset to get the next page, which is faster than a numeric offset for pages deep in the listing
+            response.addHeader("X-next-page", nextPage);
+        }
+        response.addHeader("Access-Control-Expose-Headers", "X-total-count, X-next-page");
         return tools;
     }
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/path/{repository}/published")
     @ApiOperation(value = "Get a list of published tools by path.", notes = "NO authentication", response = Tool.class)
     public List<Tool> getPublishedContainerByPath(
@@ -680,7 +726,7 @@ public class DockerRepoResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/path/tool/{repository}/published")
     @ApiOperation(value = "Get a published tool by the specific tool path.", notes = "Requires full path (including tool name if applicable).", response = Tool.class)
     public Tool getPublishedContainerByToolPath(
@@ -936,7 +982,7 @@ public class DockerRepoResource
         for (String path : testParameterPaths) {
             sourceFiles.removeIf((SourceFile v) -> v.getPath().equals(path) && v.getType() == fileType);
         }
-
+        elasticManager.handleIndexUpdate(tool, ElasticMode.UPDATE);
         return tag.getSourceFiles();
     }
 
@@ -949,7 +995,7 @@ public class DockerRepoResource
         @ApiParam(value = "Tool to star.", required = true) @PathParam("containerId") Long containerId,
         @ApiParam(value = "StarRequest to star a repo for a user", required = true) StarRequest request) {
         Tool tool = toolDAO.findById(containerId);
-        starEntryHelper(tool, user, "tool", tool.getToolPath());
+        starEntryHelper(tool, toolDAO, user, "tool", tool.getToolPath());
         elasticManager.handleIndexUpdate(tool, ElasticMode.UPDATE);
     }
 
@@ -961,7 +1007,7 @@ public class DockerRepoResource
     public void unstarEntry(@ApiParam(hidden = true) @Auth User user,
         @ApiParam(value = "Tool to unstar.", required = true) @PathParam("containerId") Long containerId) {
         Tool tool = toolDAO.findById(containerId);
-        unstarEntryHelper(tool, user, "tool", tool.getToolPath());
+        unstarEntryHelper(tool, toolDAO, user, "tool", tool.getToolPath());
         elasticManager.handleIndexUpdate(tool, ElasticMode.UPDATE);
     }
 
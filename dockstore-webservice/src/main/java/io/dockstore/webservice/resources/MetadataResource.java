@@ -92,7 +92,7 @@ public class MetadataResource {
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("sitemap")
     @ApiOperation(value = "List all published workflow and tool paths.", notes = "NO authentication")
     public String sitemap() {
@@ -123,7 +123,7 @@ public class MetadataResource {
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("rss")
     @Produces(MediaType.TEXT_XML)
     @ApiOperation(value = "List all published tools and workflows in creation order.", notes = "NO authentication")
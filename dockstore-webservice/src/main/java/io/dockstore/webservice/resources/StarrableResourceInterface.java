@@ -20,6 +20,7 @@ import java.util.Set;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.jdbi.EntryDAO;
 import org.apache.http.HttpStatus;
 
 /**
@@ -30,11 +31,12 @@ public interface StarrableResourceInterface extends AuthenticatedResourceInterfa
      * Stars the entry
      *
      * @param entry     the entry to star
+     * @param entryDAO  the DAO for the type of the entry
      * @param user      the user to star the entry with
      * @param entryType the entry type which is either "workflow" or "tool"
      * @param entryPath the path of the entry
      */
-    default void starEntryHelper(Entry<?, ?> entry, User user, String entryType, String entryPath) {
+    default void starEntryHelper(Entry<?, ?> entry, EntryDAO<?> entryDAO, User user, String entryType, String entryPath) {
         checkEntry(entry);
         if (!entry.getIsPublished()) {
             checkCanRead(user, entry);
@@ -42,6 +44,7 @@ public interface StarrableResourceInterface extends AuthenticatedResourceInterfa
         Set<User> starredUsers = entry.getStarredUsers();
         if (!starredUsers.contains(user)) {
             entry.addStarredUser(user);
+            entryDAO.updateStarCount(entry.getId(), 1);
         } else {
             throw new CustomWebApplicationException(
                 "You cannot star the " + entryType + " " + entryPath + " because you have already starred it.", HttpStatus.SC_BAD_REQUEST);
@@ -52,16 +55,18 @@ public interface StarrableResourceInterface extends AuthenticatedResourceInterfa
      * Unstars the entry
      *
      * @param entry     the entry to unstar
+     * @param entryDAO  the DAO for the type of the entry
      * @param user      the user to unstar the entry with
      * @param entryType the entry type which is either "workflow" or "tool"
      * @param entryPath the path of the entry
      */
-    default void unstarEntryHelper(Entry<?, ?> entry, User user, String entryType, String entryPath) {
+    default void unstarEntryHelper(Entry<?, ?> entry, EntryDAO<?> entryDAO, User user, String entryType, String entryPath) {
         checkEntry(entry);
 
         Set<User> starredUsers = entry.getStarredUsers();
         if (starredUsers.contains(user)) {
             entry.removeStarredUser(user);
+            entryDAO.updateStarCount(entry.getId(), -1);
         } else {
             throw new CustomWebApplicationException(
                 "You cannot unstar the " + entryType + " " + entryPath + " because you have not starred it.", HttpStatus.SC_BAD_REQUEST);
@@ -46,14 +46,17 @@ import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.ExtendedUserData;
 import io.dockstore.webservice.core.Group;
+import io.dockstore.webservice.core.RefreshJob;
 import io.dockstore.webservice.core.Token;
 import io.dockstore.webservice.core.TokenType;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.helpers.ElasticManager;
+import io.dockstore.webservice.helpers.ElasticMode;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.GoogleHelper;
+import io.dockstore.webservice.helpers.RefreshJobManager;
 import io.dockstore.webservice.jdbi.EntryDAO;
 import io.dockstore.webservice.jdbi.GroupDAO;
 import io.dockstore.webservice.jdbi.TokenDAO;
@@ -98,9 +101,10 @@ public class UserResource implements AuthenticatedResourceInterface {
     private final ToolDAO toolDAO;
     private PermissionsInterface authorizer;
     private final CachingAuthenticator cachingAuthenticator;
+    private final RefreshJobManager refreshJobManager;
 
     public UserResource(SessionFactory sessionFactory, WorkflowResource workflowResource, DockerRepoResource dockerRepoResource,
-            CachingAuthenticator cachingAuthenticator, PermissionsInterface authorizer) {
+            CachingAuthenticator cachingAuthenticator, PermissionsInterface authorizer, RefreshJobManager refreshJobManager) {
         this.userDAO = new UserDAO(sessionFactory);
         this.groupDAO = new GroupDAO(sessionFactory);
         this.tokenDAO = new TokenDAO(sessionFactory);
@@ -111,6 +115,7 @@ public class UserResource implements AuthenticatedResourceInterface {
         this.authorizer = authorizer;
         elasticManager = new ElasticManager();
         this.cachingAuthenticator = cachingAuthenticator;
+        this.refreshJobManager = refreshJobManager;
     }
 
     @POST
@@ -432,7 +437,7 @@ public class UserResource implements AuthenticatedResourceInterface {
             .collect(Collectors.toList());
         final List<Tool> repositories = Lists.newArrayList(immutableList);
         repositories.removeIf(c -> !c.getIsPublished());
-        return repositories;
+        return toolDAO.loadDescriptorTypes(repositories);
     }
 
     @GET
@@ -473,7 +478,7 @@ public class UserResource implements AuthenticatedResourceInterface {
         // Update user data
         authUser.updateUserMetadata(tokenDAO);
 
-        List<Tool> finalTools = getTools(authUser);
+        List<Tool> finalTools = toolDAO.loadDescriptorTypes(getTools(authUser));
         bulkUpsertTools(authUser);
         return finalTools;
     }
@@ -481,21 +486,17 @@ public class UserResource implements AuthenticatedResourceInterface {
     // TODO: Only update the ones that have changed
     private void bulkUpsertTools(User authUser) {
         Set<Entry> allEntries = authUser.getEntries();
-        List<Entry> toolEntries = allEntries.parallelStream().filter(entry -> entry instanceof Tool && entry.getIsPublished())
-                .collect(Collectors.toList());
-        if (!toolEntries.isEmpty()) {
-            elasticManager.bulkUpsert(toolEntries);
-        }
+        // queued index updates are coalesced and sent as _bulk requests in the background
+        allEntries.stream().filter(entry -> entry instanceof Tool && entry.getIsPublished())
+                .forEach(entry -> elasticManager.handleIndexUpdate(entry, ElasticMode.UPDATE));
     }
 
     // TODO: Only update the ones that have changed
     private void bulkUpsertWorkflows(User authUser) {
         Set<Entry> allEntries = authUser.getEntries();
-        List<Entry> toolEntries = allEntries.parallelStream().filter(entry -> entry instanceof Workflow && entry.getIsPublished())
-                .collect(Collectors.toList());
-        if (!toolEntries.isEmpty()) {
-            elasticManager.bulkUpsert(toolEntries);
-        }
+        // queued index updates are coalesced and sent as _bulk requests in the background
+        allEntries.stream().filter(entry -> entry instanceof Workflow && entry.getIsPublished())
+                .forEach(entry -> elasticManager.handleIndexUpdate(entry, ElasticMode.UPDATE));
     }
 
     private void checkToolTokens(User authUser, Long userId, String organization) {
@@ -539,7 +540,7 @@ public class UserResource implements AuthenticatedResourceInterface {
         // Update user data
         authUser.updateUserMetadata(tokenDAO);
 
-        List<Tool> finalTools = getTools(authUser);
+        List<Tool> finalTools = toolDAO.loadDescriptorTypes(getTools(authUser));
         bulkUpsertTools(authUser);
         return finalTools;
     }
@@ -589,6 +590,50 @@ public class UserResource implements AuthenticatedResourceInterface {
         return finalWorkflows;
     }
 
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/{userId}/containers/refresh/jobs")
+    @ApiOperation(value = "Start refreshing all tools owned by the logged-in user in the background.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Returns immediately, poll the job for progress.", response = RefreshJob.class)
+    public RefreshJob startToolRefreshJob(@ApiParam(hidden = true) @Auth User authUser,
+            @ApiParam(value = "User ID", required = true) @PathParam("userId") Long userId,
+            @ApiParam(value = "If set, only refresh tools from this organization") @QueryParam("organization") String organization) {
+        checkUser(authUser, userId);
+        // report missing tokens right away rather than in the job
+        checkToolTokens(authUser, userId, organization);
+        return refreshJobManager.submit(new RefreshJob(userId, RefreshJob.Type.TOOLS, organization),
+            () -> dockerRepoResource.planRefreshToolsForUser(userId, organization));
+    }
+
+    @POST
+    @Timed
+    @UnitOfWork
+    @Path("/{userId}/workflows/refresh/jobs")
+    @ApiOperation(value = "Start refreshing all workflows owned by the logged-in user in the background.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Returns immediately, poll the job for progress.", response = RefreshJob.class)
+    public RefreshJob startWorkflowRefreshJob(@ApiParam(hidden = true) @Auth User authUser,
+            @ApiParam(value = "User ID", required = true) @PathParam("userId") Long userId,
+            @ApiParam(value = "If set, only refresh workflows from this organization") @QueryParam("organization") String organization) {
+        checkUser(authUser, userId);
+        return refreshJobManager.submit(new RefreshJob(userId, RefreshJob.Type.WORKFLOWS, organization),
+            () -> workflowResource.planRefreshWorkflowsForUser(userId, organization));
+    }
+
+    @GET
+    @Timed
+    @UnitOfWork
+    @Path("/{userId}/refresh/jobs/{jobId}")
+    @ApiOperation(value = "Get the progress of a refresh running in the background.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Jobs can be looked up for a day after they are started by default.", response = RefreshJob.class)
+    public RefreshJob getRefreshJob(@ApiParam(hidden = true) @Auth User authUser,
+            @ApiParam(value = "User ID", required = true) @PathParam("userId") Long userId,
+            @ApiParam(value = "Job ID", required = true) @PathParam("jobId") String jobId) {
+        checkUser(authUser, userId);
+        RefreshJob job = refreshJobManager.getJob(jobId);
+        if (job == null || job.getUserId() != userId) {
+            throw new CustomWebApplicationException("Refresh job not found.", HttpStatus.SC_NOT_FOUND);
+        }
+        return job;
+    }
+
     @GET
     @Path("/{userId}/workflows")
     @Timed
@@ -620,7 +665,7 @@ public class UserResource implements AuthenticatedResourceInterface {
             @ApiParam(value = "User ID", required = true) @PathParam("userId") Long userId) {
         checkUser(user, userId);
         final User byId = this.userDAO.findById(userId);
-        List<Tool> tools = getTools(byId);
+        List<Tool> tools = toolDAO.loadDescriptorTypes(getTools(byId));
         EntryVersionHelper.stripContent(tools, this.userDAO);
         return tools;
     }
@@ -632,8 +677,9 @@ public class UserResource implements AuthenticatedResourceInterface {
     @ApiOperation(value = "Get the logged-in user's starred tools.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Entry.class, responseContainer = "List")
     public Set<Entry> getStarredTools(@ApiParam(hidden = true) @Auth User user) {
         User u = userDAO.findById(user.getId());
-        return u.getStarredEntries().stream().filter(element -> element instanceof Tool)
+        Set<Tool> tools = u.getStarredEntries().stream().filter(element -> element instanceof Tool).map(Tool.class::cast)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
+        return new LinkedHashSet<>(toolDAO.loadDescriptorTypes(tools));
     }
 
     @GET
@@ -643,8 +689,9 @@ public class UserResource implements AuthenticatedResourceInterface {
     @ApiOperation(value = "Get the logged-in user's starred workflows.", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Entry.class, responseContainer = "List")
     public Set<Entry> getStarredWorkflows(@ApiParam(hidden = true) @Auth User user) {
         User u = userDAO.findById(user.getId());
-        return u.getStarredEntries().stream().filter(element -> element instanceof Workflow)
+        Set<Entry> workflows = u.getStarredEntries().stream().filter(element -> element instanceof Workflow)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
+        return workflows;
     }
 
     @GET
@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -78,6 +79,7 @@ import io.dockstore.webservice.helpers.EntryVersionHelper;
 import io.dockstore.webservice.helpers.FileFormatHelper;
 import io.dockstore.webservice.helpers.SourceCodeRepoFactory;
 import io.dockstore.webservice.helpers.SourceCodeRepoInterface;
+import io.dockstore.webservice.helpers.WorkflowContentCache;
 import io.dockstore.webservice.jdbi.FileDAO;
 import io.dockstore.webservice.jdbi.FileFormatDAO;
 import io.dockstore.webservice.jdbi.LabelDAO;
@@ -275,54 +277,123 @@ public class WorkflowResource
         }
 
         // Mapping of git url to repository name (owner/repo)
+        final Map<String, String> workflowGitUrl2Name = getRepositories(sourceCodeRepoInterface, organization);
+        RefreshSummary summary = new RefreshSummary();
+        // For each entry found of the associated git hosting service
+        for (Map.Entry<String, String> entry : workflowGitUrl2Name.entrySet()) {
+            summary.add(refreshRepository(sourceCodeRepoInterface, user, entry.getKey(), entry.getValue(), alreadyProcessed));
+        }
+        LOG.info(user.getUsername() + ": refreshed " + workflowGitUrl2Name.size() + " repositories, " + summary);
+    }
+
+    /**
+     * @param sourceCodeRepoInterface interface to read data from source control
+     * @param organization            if specified, only include repositories that belong to the organization
+     * @return a mapping of git url to repository name (owner/repo) for the repositories the user can access
+     */
+    private Map<String, String> getRepositories(final SourceCodeRepoInterface sourceCodeRepoInterface, String organization) {
         final Map<String, String> workflowGitUrl2Name = sourceCodeRepoInterface.getWorkflowGitUrl2RepositoryId();
         LOG.info("found giturl to workflow name map" + Arrays.toString(workflowGitUrl2Name.entrySet().toArray()));
         if (organization != null) {
             workflowGitUrl2Name.entrySet().removeIf(thing -> !(thing.getValue().split("/"))[0].equals(organization));
         }
-        // For each entry found of the associated git hosting service
-        for (Map.Entry<String, String> entry : workflowGitUrl2Name.entrySet()) {
-            LOG.info("refreshing " + entry.getKey());
-
-            // Get all workflows with the same giturl)
-            final List<Workflow> byGitUrl = workflowDAO.findByGitUrl(entry.getKey());
-            if (byGitUrl.size() > 0) {
-                // Workflows exist with the given git url
-                for (Workflow workflow : byGitUrl) {
-                    // check whitelist for already processed workflows
-                    if (alreadyProcessed.contains(workflow.getId())) {
-                        continue;
-                    }
+        return workflowGitUrl2Name;
+    }
+
+    /**
+     * Updates/adds the workflows of one repository
+     *
+     * @param sourceCodeRepoInterface interface to read data from source control
+     * @param user                    the user that made the request to refresh
+     * @param gitUrl                  the git url of the repository
+     * @param repositoryId            the name of the repository (owner/repo)
+     * @param alreadyProcessed        skip workflows that were already refreshed
+     * @return what was done to the versions of the workflows
+     */
+    private RefreshSummary refreshRepository(final SourceCodeRepoInterface sourceCodeRepoInterface, User user, String gitUrl,
+        String repositoryId, Set<Long> alreadyProcessed) {
+        LOG.info("refreshing " + gitUrl);
+        RefreshSummary summary = new RefreshSummary();
+
+        // Get all workflows with the same giturl)
+        final List<Workflow> byGitUrl = workflowDAO.findByGitUrl(gitUrl);
+        if (byGitUrl.size() > 0) {
+            // Workflows exist with the given git url
+            for (Workflow workflow : byGitUrl) {
+                // check whitelist for already processed workflows
+                if (alreadyProcessed.contains(workflow.getId())) {
+                    continue;
+                }
 
-                    // Update existing workflows with new information from the repository
-                    // Note we pass the existing workflow as a base for the updated version of the workflow
-                    final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(entry.getValue(), Optional.of(workflow));
+                // Update existing workflows with new information from the repository
+                // Note we pass the existing workflow as a base for the updated version of the workflow
+                final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(repositoryId, Optional.of(workflow));
 
-                    // Take ownership of these workflows
-                    workflow.getUsers().add(user);
+                // Take ownership of these workflows
+                workflow.getUsers().add(user);
 
-                    // Update the existing matching workflows based off of the new information
-                    updateDBWorkflowWithSourceControlWorkflow(workflow, newWorkflow);
-                    alreadyProcessed.add(workflow.getId());
-                }
-            } else {
-                // Workflows are not registered for the given git url, add one
-                final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(entry.getValue(), Optional.empty());
+                // Update the existing matching workflows based off of the new information
+                summary.add(updateDBWorkflowWithSourceControlWorkflow(workflow, newWorkflow));
+                alreadyProcessed.add(workflow.getId());
+            }
+        } else {
+            // Workflows are not registered for the given git url, add one
+            final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(repositoryId, Optional.empty());
 
-                // The workflow was successfully created
-                if (newWorkflow != null) {
-                    final long workflowID = workflowDAO.create(newWorkflow);
+            // The workflow was successfully created
+            if (newWorkflow != null) {
+                final long workflowID = workflowDAO.create(newWorkflow);
 
-                    // need to create nested data models
-                    final Workflow workflowFromDB = workflowDAO.findById(workflowID);
-                    workflowFromDB.getUsers().add(user);
+                // need to create nested data models
+                final Workflow workflowFromDB = workflowDAO.findById(workflowID);
+                workflowFromDB.getUsers().add(user);
 
-                    // Update newly created template workflow (workflowFromDB) with found data from the repository
-                    updateDBWorkflowWithSourceControlWorkflow(workflowFromDB, newWorkflow);
-                    alreadyProcessed.add(workflowFromDB.getId());
-                }
+                // Update newly created template workflow (workflowFromDB) with found data from the repository
+                summary.add(updateDBWorkflowWithSourceControlWorkflow(workflowFromDB, newWorkflow));
+                alreadyProcessed.add(workflowFromDB.getId());
             }
         }
+        return summary;
+    }
+
+    /**
+     * Lists the repositories of a user from each git hosting service, leaving their workflows to be refreshed by a refresh job.
+     * The job refreshes the workflows of each repository in a transaction of its own.
+     *
+     * @param userId       a user to refresh workflows for
+     * @param organization limit the refresh to particular organizations if given
+     * @return the work to refresh the workflows of each repository by git url
+     */
+    Map<String, Runnable> planRefreshWorkflowsForUser(long userId, String organization) {
+        User user = userDAO.findById(userId);
+        List<Token> tokens = checkOnBitbucketToken(user);
+        user.updateUserMetadata(tokenDAO);
+
+        Map<String, Runnable> work = new LinkedHashMap<>();
+        Set<Long> alreadyProcessed = new HashSet<>();
+        boolean foundAtLeastOneToken = false;
+        for (TokenType type : TokenType.values()) {
+            Token token = Token.extractToken(tokens, type);
+            if (!type.isSourceControlToken() || token == null || token.getContent() == null) {
+                continue;
+            }
+            foundAtLeastOneToken = true;
+            SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory.createSourceCodeRepo(token, client);
+            getRepositories(sourceCodeRepo, organization).forEach((gitUrl, repositoryId) -> work.put(gitUrl, () -> {
+                RefreshSummary summary = refreshRepository(sourceCodeRepo, userDAO.findById(userId), gitUrl, repositoryId,
+                    alreadyProcessed);
+                LOG.info(user.getUsername() + ": refreshed " + gitUrl + ", " + summary);
+                workflowDAO.findByGitUrl(gitUrl).stream().filter(Entry::getIsPublished)
+                    .forEach(workflow -> elasticManager.handleIndexUpdate(workflow, ElasticMode.UPDATE));
+            }));
+        }
+
+        if (!foundAtLeastOneToken) {
+            throw new CustomWebApplicationException(
+                "No source control repository token found.  Please link at least one source control repository token to your account.",
+                HttpStatus.SC_BAD_REQUEST);
+        }
+        return work;
     }
 
     private List<Token> checkOnBitbucketToken(User user) {
@@ -371,8 +442,12 @@ public class WorkflowResource
         final Workflow newWorkflow = sourceCodeRepo
             .getWorkflow(workflow.getOrganization() + '/' + workflow.getRepository(), Optional.of(workflow));
         workflow.getUsers().add(user);
-        updateDBWorkflowWithSourceControlWorkflow(workflow, newWorkflow);
-        FileFormatHelper.updateFileFormats(newWorkflow.getVersions(), fileFormatDAO);
+        RefreshSummary summary = updateDBWorkflowWithSourceControlWorkflow(workflow, newWorkflow);
+        LOG.info(user.getUsername() + ": refreshed " + workflow.getWorkflowPath() + ", " + summary);
+        // unchanged versions kept their file formats
+        Set<WorkflowVersion> changedVersions = newWorkflow.getVersions().stream().filter(version -> !version.isUnchanged())
+            .collect(Collectors.toSet());
+        FileFormatHelper.updateFileFormats(changedVersions, fileFormatDAO);
 
         // Refresh checker workflow
         if (!workflow.isIsChecker() && workflow.getCheckerWorkflow() != null) {
@@ -385,8 +460,10 @@ public class WorkflowResource
     /**
      * @param workflow    workflow to be updated
      * @param newWorkflow workflow to grab new content from
+     * @return how many versions were added, updated, skipped because their commit did not change, and removed
      */
-    private void updateDBWorkflowWithSourceControlWorkflow(Workflow workflow, Workflow newWorkflow) {
+    private RefreshSummary updateDBWorkflowWithSourceControlWorkflow(Workflow workflow, Workflow newWorkflow) {
+        RefreshSummary summary = new RefreshSummary();
         // update root workflow
         workflow.update(newWorkflow);
         // update workflow versions
@@ -400,13 +477,21 @@ public class WorkflowResource
         for (String version : removedVersions) {
             workflow.removeWorkflowVersion(existingVersionMap.get(version));
         }
+        summary.removed = removedVersions.size();
 
         // Then copy over content that changed
         for (WorkflowVersion version : newWorkflow.getVersions()) {
             WorkflowVersion workflowVersionFromDB = existingVersionMap.get(version.getName());
             if (existingVersionMap.containsKey(version.getName())) {
                 workflowVersionFromDB.update(version);
+                // the source files of a version still at the same commit are the ones already stored
+                if (version.isUnchanged()) {
+                    summary.unchanged++;
+                    continue;
+                }
+                summary.updated++;
             } else {
+                summary.added++;
                 // create a new one and replace the old one
                 final long workflowVersionId = workflowVersionDAO.create(version);
                 workflowVersionFromDB = workflowVersionDAO.findById(workflowVersionId);
@@ -440,6 +525,7 @@ public class WorkflowResource
                 }
             }
         }
+        return summary;
     }
 
     @GET
@@ -656,7 +742,7 @@ public class WorkflowResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/published/{workflowId}")
     @ApiOperation(value = "Get a published workflow.", notes = "Hidden versions will not be visible. NO authentication", response = Workflow.class)
     public Workflow getPublishedWorkflow(@ApiParam(value = "Workflow ID", required = true) @PathParam("workflowId") Long workflowId) {
@@ -667,7 +753,7 @@ public class WorkflowResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/organization/{organization}/published")
     @ApiOperation(value = "List all published workflows of an organization.", notes = "NO authentication", response = Workflow.class, responseContainer = "List")
     public List<Workflow> getPublishedWorkflowsByOrganization(
@@ -730,7 +816,7 @@ public class WorkflowResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("published")
     @ApiOperation(value = "List all published workflows.", tags = {
         "workflows" }, notes = "NO authentication", response = Workflow.class, responseContainer = "List")
@@ -748,7 +834,12 @@ public class WorkflowResource
         filterContainersForHiddenTags(workflows);
         stripContent(workflows);
         response.addHeader("X-total-count", String.valueOf(workflowDAO.countAllPublished(Optional.of(filter))));
-        response.addHeader("Access-Control-Expose-Headers", "X-total-count");
+        String nextPage = workflowDAO.getNextPageCursor(workflows, maxLimit, sortCol, sortOrder);
+        if (nextPage != null) {
+            // pass this as the offset to get the next page, which is faster than a numeric offset for pages deep in the listing
+            response.addHeader("X-next-page", nextPage);
+        }
+        response.addHeader("Access-Control-Expose-Headers", "X-total-count, X-next-page");
         return workflows;
     }
 
@@ -924,7 +1015,7 @@ public class WorkflowResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/path/entry/{repository}/published")
     @ApiOperation(value = "Get a published entry by path.", notes = "Requires full path (including entry name if applicable).", response = Entry.class)
     public Entry getPublishedEntryByPath(@ApiParam(value = "repository path", required = true) @PathParam("repository") String path) {
@@ -954,7 +1045,7 @@ public class WorkflowResource
 
     @GET
     @Timed
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Path("/path/workflow/{repository}/published")
     @ApiOperation(value = "Get a published workflow by path", notes = "Does not require workflow name.", response = Workflow.class)
     public Workflow getPublishedWorkflowByPath(@ApiParam(value = "repository path", required = true) @PathParam("repository") String path) {
@@ -1372,16 +1463,9 @@ public class WorkflowResource
         checkOptionalAuthRead(user, workflow);
 
         WorkflowVersion workflowVersion = getWorkflowVersion(workflow, workflowVersionId);
-        SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
-
-        if (mainDescriptor != null) {
-            Map<String, String> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion);
-
-            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
-            return lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
-                LanguageHandlerInterface.Type.DAG, toolDAO);
-        }
-        return null;
+        // the source files are only loaded when the DAG is not cached
+        return WorkflowContentCache.get(workflow.getFileType(), workflowVersion, LanguageHandlerInterface.Type.DAG, workflowVersionDAO,
+            () -> getWorkflowContent(workflow, workflowVersion, LanguageHandlerInterface.Type.DAG));
     }
 
     /**
@@ -1409,15 +1493,24 @@ public class WorkflowResource
         if (workflowVersion == null) {
             throw new CustomWebApplicationException("workflow version " + workflowVersionId + " does not exist", HttpStatus.SC_BAD_REQUEST);
         }
+        // the source files are only loaded when the tool table is not cached
+        return WorkflowContentCache.get(workflow.getFileType(), workflowVersion, LanguageHandlerInterface.Type.TOOLS, workflowVersionDAO,
+            () -> getWorkflowContent(workflow, workflowVersion, LanguageHandlerInterface.Type.TOOLS));
+    }
+
+    /**
+     * Makes the DAG or tool table of a workflow version from its source files
+     *
+     * @return the content, or null if the version has no main descriptor
+     */
+    private String getWorkflowContent(Workflow workflow, WorkflowVersion workflowVersion, LanguageHandlerInterface.Type type) {
         SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
-        if (mainDescriptor != null) {
-            Map<String, String> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion);
-            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
-            return lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
-                LanguageHandlerInterface.Type.TOOLS, toolDAO);
+        if (mainDescriptor == null) {
+            return null;
         }
-
-        return null;
+        Map<String, String> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion);
+        LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
+        return lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent, type, toolDAO);
     }
 
     /**
@@ -1487,7 +1580,7 @@ public class WorkflowResource
         @ApiParam(value = "StarRequest to star a repo for a user", required = true) StarRequest request) {
         Workflow workflow = workflowDAO.findById(workflowId);
 
-        starEntryHelper(workflow, user, "workflow", workflow.getWorkflowPath());
+        starEntryHelper(workflow, workflowDAO, user, "workflow", workflow.getWorkflowPath());
         elasticManager.handleIndexUpdate(workflow, ElasticMode.UPDATE);
     }
 
@@ -1499,7 +1592,7 @@ public class WorkflowResource
     public void unstarEntry(@ApiParam(hidden = true) @Auth User user,
         @ApiParam(value = "Workflow to unstar.", required = true) @PathParam("workflowId") Long workflowId) {
         Workflow workflow = workflowDAO.findById(workflowId);
-        unstarEntryHelper(workflow, user, "workflow", workflow.getWorkflowPath());
+        unstarEntryHelper(workflow, workflowDAO, user, "workflow", workflow.getWorkflowPath());
         elasticManager.handleIndexUpdate(workflow, ElasticMode.UPDATE);
     }
 
@@ -1706,4 +1799,25 @@ public class WorkflowResource
             .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"").build();
     }
 
+    /**
+     * Counts what a refresh did to the versions of workflows, so that the work skipped by an incremental refresh shows up in the logs
+     */
+    private static class RefreshSummary {
+        private int added = 0;
+        private int updated = 0;
+        private int unchanged = 0;
+        private int removed = 0;
+
+        void add(RefreshSummary other) {
+            added += other.added;
+            updated += other.updated;
+            unchanged += other.unchanged;
+            removed += other.removed;
+        }
+
+        @Override
+        public String toString() {
+            return "versions added: " + added + ", updated: " + updated + ", skipped as unchanged: " + unchanged + ", removed: " + removed;
+        }
+    }
 }
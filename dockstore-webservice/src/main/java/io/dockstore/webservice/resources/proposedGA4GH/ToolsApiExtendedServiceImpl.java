@@ -20,40 +20,50 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.ReindexJob;
 import io.dockstore.webservice.core.SourceFile;
 import io.dockstore.webservice.core.Tag;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.helpers.ElasticBulkIndexer;
 import io.dockstore.webservice.helpers.ElasticManager;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.swagger.api.impl.ToolsApiServiceImpl;
-import io.swagger.api.impl.ToolsImplCommon;
+import io.swagger.api.impl.GA4GHToolCache;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
 import org.elasticsearch.client.RestClient;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Created by kcao on 01/03/17.
@@ -61,10 +71,15 @@ import org.elasticsearch.client.RestClient;
  * Implementations of methods to return responses containing organization related information
  */
 public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
+    private static final Logger LOG = LoggerFactory.getLogger(ToolsApiExtendedServiceImpl.class);
+    private static final ExecutorService REINDEX_EXECUTOR = Executors
+        .newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("reindex-%d").setDaemon(true).build());
 
     private static ToolDAO toolDAO = null;
     private static WorkflowDAO workflowDAO = null;
     private static DockstoreWebserviceConfiguration config = null;
+    private static SessionFactory sessionFactory = null;
+    private static ReindexJob reindexJob = null;
 
     public static void setToolDAO(ToolDAO toolDAO) {
         ToolsApiExtendedServiceImpl.toolDAO = toolDAO;
@@ -78,6 +93,10 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
         ToolsApiExtendedServiceImpl.config = config;
     }
 
+    public static void setSessionFactory(SessionFactory sessionFactory) {
+        ToolsApiExtendedServiceImpl.sessionFactory = sessionFactory;
+    }
+
     /**
      * Avoid using this one, this is quite slow
      *
@@ -100,7 +119,7 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
     private List<Entry> getPublishedByOrganization(String organization) {
         final List<Entry> published = new ArrayList<>();
         published.addAll(workflowDAO.findPublishedByOrganization(organization));
-        published.addAll(toolDAO.findPublishedByNamespace(organization));
+        published.addAll(toolDAO.loadDescriptorTypes(toolDAO.findPublishedByNamespace(organization)));
         published.sort(Comparator.comparing(Entry::getGitUrl));
         return published;
     }
@@ -112,12 +131,12 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
 
     private List<io.swagger.model.Tool> workflowOrgGetList(String organization) {
         List<Workflow> published = workflowDAO.findPublishedByOrganization(organization);
-        return published.stream().map(c -> ToolsImplCommon.convertEntryToTool(c, config)).collect(Collectors.toList());
+        return published.stream().map(c -> GA4GHToolCache.get(c, config)).collect(Collectors.toList());
     }
 
     private List<io.swagger.model.Tool> entriesOrgGetList(String organization) {
         List<Tool> published = toolDAO.findPublishedByNamespace(organization);
-        return published.stream().map(c -> ToolsImplCommon.convertEntryToTool(c, config)).collect(Collectors.toList());
+        return published.stream().map(c -> GA4GHToolCache.get(c, config)).collect(Collectors.toList());
     }
 
     @Override
@@ -147,48 +166,129 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
         return Response.ok(organizations).build();
     }
 
+    /**
+     * Starts rebuilding the search index in the background, a rebuild can take longer than a request may.
+     * Only one rebuild runs at a time.
+     */
     @Override
     public Response toolsIndexGet(SecurityContext securityContext) {
-        List<Entry> published = getPublished();
-        if (!config.getEsConfiguration().getHostname().isEmpty() && !published.isEmpty()) {
+        synchronized (ToolsApiExtendedServiceImpl.class) {
+            if (reindexJob != null && reindexJob.isActive()) {
+                throw new CustomWebApplicationException("The search index is already being rebuilt by job " + reindexJob.getId(),
+                    HttpStatus.SC_CONFLICT);
+            }
+            ReindexJob job = new ReindexJob();
+            REINDEX_EXECUTOR.execute(() -> rebuildIndex(job));
+            reindexJob = job;
+            return Response.status(HttpStatus.SC_ACCEPTED).entity(job).build();
+        }
+    }
 
-            try (RestClient restClient = RestClient
-                    .builder(new HttpHost(config.getEsConfiguration().getHostname(), config.getEsConfiguration().getPort(), "http"))
-                    .build()) {
+    @Override
+    public Response toolsIndexStatusGet(SecurityContext securityContext) {
+        synchronized (ToolsApiExtendedServiceImpl.class) {
+            if (reindexJob == null) {
+                throw new CustomWebApplicationException("The search index has not been rebuilt since the webservice started",
+                    HttpStatus.SC_NOT_FOUND);
+            }
+            return Response.ok().entity(reindexJob).build();
+        }
+    }
 
-                // Delete index
-                try {
-                    restClient.performRequest("DELETE", "/entry");
-                } catch (Exception e) {
-                    e.printStackTrace();
+    private void rebuildIndex(ReindexJob job) {
+        job.start();
+        Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            // read-only, the entries are paged out of the database but nothing is written back
+            session.setDefaultReadOnly(true);
+            Transaction transaction = session.beginTransaction();
+            try {
+                job.setIndexed(populateNewIndex(job));
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
                 }
+            }
+            job.finish(null);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Could not rebuild the search index in job " + job.getId(), e);
+            job.finish(describe(e));
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
 
-                // Get index mapping
-                URL url = Resources.getResource("queries/mapping.json");
-                String text = Resources.toString(url, StandardCharsets.UTF_8);
-                HttpEntity mappingEntity = new NStringEntity(text, ContentType.APPLICATION_JSON);
+    /**
+     * Rebuilds the search index under live traffic.
+     * A new versioned index is created and populated while searches continue to be served from the current one,
+     * then the entry alias is swapped over atomically and the old index is deleted.
+     *
+     * @return the number of entries indexed
+     */
+    private long populateNewIndex(ReindexJob job) throws IOException {
+        long total = toolDAO.countAllPublished(Optional.empty()) + workflowDAO.countAllPublished(Optional.empty());
+        job.setTotal(total);
+        if (config.getEsConfiguration().getHostname().isEmpty() || total == 0) {
+            return 0;
+        }
+        ElasticManager elasticManager = new ElasticManager();
+        String newIndex = null;
+        boolean swapped = false;
+        try {
+            // Get index mapping
+            URL url = Resources.getResource("queries/mapping.json");
+            String text = Resources.toString(url, StandardCharsets.UTF_8);
 
-                // Create index
-                restClient.performRequest("PUT", "/entry", Collections.emptyMap(), mappingEntity);
+            // Create a new index alongside the one being served, changes made from now on go to both
+            newIndex = elasticManager.createVersionedIndex(text);
+            elasticManager.startRebuild(newIndex);
 
-                // Populate index
+            // Populate index, paging search documents out of the database and streaming them to elastic search in fixed-size batches
+            long indexed;
+            try (ElasticBulkIndexer indexer = elasticManager.createBulkIndexer(newIndex, total)) {
+                toolDAO.forEachPublishedSearchDocument(indexer::add);
+                workflowDAO.forEachPublishedSearchDocument(indexer::add);
+                // fails if any entry was not indexed, so that the alias is not swapped to an incomplete index
+                indexed = indexer.finish();
+            }
 
-                ElasticManager elasticManager = new ElasticManager();
-                elasticManager.bulkUpsert(published);
-            } catch (IOException e) {
-                throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            // Entries changed while populating may have been copied before they changed
+            int notReplayed = elasticManager.replayRebuildChanges();
+            if (notReplayed > 0) {
+                throw new CustomWebApplicationException("Could not apply " + notReplayed + " changes made during reindexing",
+                    HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            }
+
+            // Serve the new index
+            elasticManager.swapEntryAlias(newIndex);
+            swapped = true;
+            return indexed;
+        } finally {
+            // stop writing to the new index before deleting it, an upsert to a deleted index would create it again
+            elasticManager.endRebuild();
+            if (newIndex != null && !swapped) {
+                elasticManager.deleteIndex(newIndex);
             }
-            return Response.ok().entity(published.size()).build();
         }
-        return Response.ok().entity(0).build();
+    }
+
+    /**
+     * The message of a CustomWebApplicationException is in its response, which is what an error rebuilding in a request would show
+     */
+    private static String describe(Exception e) {
+        if (e instanceof WebApplicationException && ((WebApplicationException)e).getResponse().getEntity() instanceof String) {
+            return (String)((WebApplicationException)e).getResponse().getEntity();
+        }
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
     }
 
     @Override
     public Response toolsIndexSearch(String query, MultivaluedMap<String, String> queryParameters, SecurityContext securityContext) {
         if (!config.getEsConfiguration().getHostname().isEmpty()) {
-            try (RestClient restClient = RestClient
-                    .builder(new HttpHost(config.getEsConfiguration().getHostname(), config.getEsConfiguration().getPort(), "http"))
-                    .build()) {
+            try {
+                RestClient restClient = ElasticManager.getRestClient();
                 HttpEntity entity = query == null ? null : new NStringEntity(query, ContentType.APPLICATION_JSON);
                 Map<String, String> parameters = new HashMap<>();
                 // TODO: note that this is lossy if there are repeated parameters
@@ -248,6 +348,8 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
                 // denormalizes verification out to the version level for performance
                 // not sure why the cast is needed
                 version.setVerified(version.getSourceFiles().stream().anyMatch(file -> ((SourceFile)file).getVerifiedBySource().values().stream().anyMatch(innerEntry -> innerEntry.verified)));
+                // verification is part of the GA4GH representation, but only the version changed
+                GA4GHToolCache.invalidate(entry.getId());
                 return Response.ok().entity(sourceFile.getVerifiedBySource()).build();
             }
         }
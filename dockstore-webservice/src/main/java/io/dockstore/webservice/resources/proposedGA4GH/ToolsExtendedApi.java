@@ -31,6 +31,7 @@ import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriInfo;
 
 import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.core.ReindexJob;
 import io.dockstore.webservice.core.User;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.hibernate.UnitOfWork;
@@ -84,15 +85,27 @@ public class ToolsExtendedApi {
     @Path("/tools/index")
     @UnitOfWork
     @RolesAllowed("admin")
-    @Produces({ "text/plain" })
-    @ApiOperation(value = "Update the index of tools", notes = "This endpoint updates the index for all published tools and workflows. ", authorizations = {
-        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = Integer.class)
-    @ApiResponses(value = { @ApiResponse(code = HttpStatus.SC_OK, message = "An array of Tools of the input organization.") })
+    @Produces({ "application/json" })
+    @ApiOperation(value = "Update the index of tools", notes = "This endpoint starts rebuilding the index for all published tools and workflows in the background. Poll the index status for progress.", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = ReindexJob.class)
+    @ApiResponses(value = { @ApiResponse(code = HttpStatus.SC_ACCEPTED, message = "The rebuild has been started.", response = ReindexJob.class),
+        @ApiResponse(code = HttpStatus.SC_CONFLICT, message = "A rebuild is already running.") })
     public Response toolsIndexGet(@ApiParam(hidden = true) @Auth User user, @Context SecurityContext securityContext)
         throws NotFoundException {
         return delegate.toolsIndexGet(securityContext);
     }
 
+    @GET
+    @Path("/tools/index")
+    @UnitOfWork
+    @RolesAllowed("admin")
+    @Produces({ "application/json" })
+    @ApiOperation(value = "Get the progress of the latest index update", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = ReindexJob.class)
+    public Response toolsIndexStatusGet(@ApiParam(hidden = true) @Auth User user, @Context SecurityContext securityContext) {
+        return delegate.toolsIndexStatusGet(securityContext);
+    }
+
     @GET
     @Path("/workflows/{organization}")
     @UnitOfWork
@@ -47,7 +47,7 @@ public class ToolsApiV1 {
     private final ToolsApiService delegate = ToolsApiServiceFactory.getToolsApi();
 
     @GET
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "List all tools", notes = "This endpoint returns all tools available or a filtered subset using metadata query parameters. ", response = ToolV1.class, responseContainer = "List", tags = {
         "GA4GHV1", })
@@ -70,7 +70,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "List one specific tool, acts as an anchor for self references", notes = "This endpoint returns one specific tool (which has ToolVersions nested inside it)", response = ToolV1.class, tags = {
         "GA4GHV1", })
@@ -84,7 +84,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}/versions")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "List versions of a tool", notes = "Returns all versions of the specified tool", response = ToolVersionV1.class, responseContainer = "List", tags = {
         "GA4GHV1", })
@@ -99,7 +99,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}/versions/{version_id}/dockerfile")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "Get the dockerfile for the specified image.", notes = "Returns the dockerfile for the specified image.", response = ToolDockerfile.class, tags = {
         "GA4GHV1", })
@@ -116,7 +116,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}/versions/{version_id}")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "List one specific tool version, acts as an anchor for self references", notes = "This endpoint returns one specific tool version", response = ToolVersionV1.class, tags = {
         "GA4GHV1", })
@@ -131,7 +131,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}/versions/{version_id}/{type}/descriptor")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "Get the tool descriptor (CWL/WDL) for the specified tool.", notes = "Returns the CWL or WDL descriptor for the specified tool.", response = ToolDescriptor.class, tags = {
         "GA4GHV1", })
@@ -150,7 +150,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}/versions/{version_id}/{type}/descriptor/{relative_path}")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "Get additional tool descriptor files (CWL/WDL) relative to the main file", notes = "Returns additional CWL or WDL descriptors for the specified tool in the same or subdirectories", response = ToolDescriptor.class, tags = {
         "GA4GHV1", })
@@ -170,7 +170,7 @@ public class ToolsApiV1 {
 
     @GET
     @Path("/{id}/versions/{version_id}/{type}/tests")
-    @UnitOfWork
+    @UnitOfWork(readOnly = true)
     @Produces( { "application/json", "text/plain" })
     @io.swagger.annotations.ApiOperation(value = "Get an array of test JSONs suitable for use with this descriptor type.", notes = "", response = ToolTestsV1.class, responseContainer = "List", tags = {
         "GA4GHV1", })
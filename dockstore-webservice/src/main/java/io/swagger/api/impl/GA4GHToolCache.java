@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.swagger.api.impl;
+
+import java.sql.Timestamp;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Entry;
+import io.swagger.model.Tool;
+
+/**
+ * Caches the GA4GH representation of entries, converted by {@link ToolsImplCommon#convertEntryToTool(Entry, DockstoreWebserviceConfiguration)},
+ * so that popular tools are not converted from the whole entity graph on every request. The v1 API converts from the same representation.
+ * A cached representation is only used while the entry has the same dbUpdateDate it was converted from, and is invalidated whenever
+ * the entry is refreshed, published or edited, which also covers changes to its versions that leave the entry itself untouched.
+ * Representations also expire after a while, so that a change that misses the invalidation is not served forever.
+ * Cached representations are shared between requests and must not be modified.
+ */
+public final class GA4GHToolCache {
+    private static final Counter HITS = new Counter();
+    private static final Counter MISSES = new Counter();
+
+    private static Cache<Long, CachedTool> cache = createCache(new DockstoreWebserviceConfiguration.GA4GHCacheConfig());
+
+    private GA4GHToolCache() {
+        // hide the constructor for utility classes
+    }
+
+    public static void setConfig(DockstoreWebserviceConfiguration config) {
+        cache = createCache(config.getGa4ghCacheConfig());
+    }
+
+    private static Cache<Long, CachedTool> createCache(DockstoreWebserviceConfiguration.GA4GHCacheConfig cacheConfig) {
+        return CacheBuilder.newBuilder().maximumSize(cacheConfig.getMaxEntries())
+            .expireAfterWrite(cacheConfig.getTimeToLiveSeconds(), TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Register the hits, misses, hit rate and size of the cache with the Dropwizard metrics registry
+     *
+     * @param registry the application's metric registry
+     */
+    public static void registerMetrics(MetricRegistry registry) {
+        registry.register(MetricRegistry.name(GA4GHToolCache.class, "hits"), HITS);
+        registry.register(MetricRegistry.name(GA4GHToolCache.class, "misses"), MISSES);
+        registry.register(MetricRegistry.name(GA4GHToolCache.class, "hitRate"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(HITS.getCount(), HITS.getCount() + MISSES.getCount());
+            }
+        });
+        registry.register(MetricRegistry.name(GA4GHToolCache.class, "size"), (Gauge<Long>)() -> cache.size());
+    }
+
+    /**
+     * Gets the GA4GH representation of an entry, converting it only if it is not cached
+     *
+     * @param entry  the entry
+     * @param config the configuration, for the URLs of the representation
+     * @return the representation, or null if the entry could not be converted
+     */
+    public static Tool get(Entry entry, DockstoreWebserviceConfiguration config) {
+        CachedTool cached = cache.getIfPresent(entry.getId());
+        if (cached != null && Objects.equals(cached.dbUpdateDate, entry.getDbUpdateDate())) {
+            HITS.inc();
+            return cached.tool;
+        }
+        MISSES.inc();
+        Tool tool = ToolsImplCommon.convertEntryToTool(entry, config);
+        // failed conversions are not cached, they are rare and may be retried
+        if (tool != null) {
+            cache.put(entry.getId(), new CachedTool(entry.getDbUpdateDate(), tool));
+        }
+        return tool;
+    }
+
+    /**
+     * Drops the representation of an entry, call whenever the entry or its versions change
+     *
+     * @param entryId the id of the entry
+     */
+    public static void invalidate(long entryId) {
+        cache.invalidate(entryId);
+    }
+
+    private static final class CachedTool {
+        private final Timestamp dbUpdateDate;
+        private final Tool tool;
+
+        CachedTool(Timestamp dbUpdateDate, Tool tool) {
+            this.dbUpdateDate = dbUpdateDate;
+            this.tool = tool;
+        }
+    }
+}
@@ -44,7 +44,6 @@ import javax.ws.rs.core.SecurityContext;
 
 import avro.shaded.com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Lists;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceApplication;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
@@ -57,6 +56,8 @@ import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
+import io.dockstore.webservice.helpers.PageCursor;
+import io.dockstore.webservice.jdbi.GA4GHToolFilter;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.dockstore.webservice.resources.AuthenticatedResourceInterface;
@@ -82,6 +83,7 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
     private static final String BITBUCKET_PREFIX = "git@bitbucket.org:";
     private static final int SEGMENTS_IN_ID = 3;
     private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final String CURSOR_SORT = "gitUrl";
     private static final Logger LOG = LoggerFactory.getLogger(ToolsApiServiceImpl.class);
 
     private static ToolDAO toolDAO = null;
@@ -126,15 +128,15 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
             // check whether this is registered
             response = Response.status(Status.UNAUTHORIZED).build();
         } else {
-            io.swagger.model.Tool tool = ToolsImplCommon.convertEntryToTool(container, config);
+            io.swagger.model.Tool tool = GA4GHToolCache.get(container, config);
             assert (tool != null);
-            // filter out other versions if we're narrowing to a specific version
+            // filter out other versions if we're narrowing to a specific version, the cached tool itself is left as is
             if (version != null) {
-                tool.getVersions().removeIf(v -> !v.getName().equals(version));
-                if (tool.getVersions().size() != 1) {
+                List<ToolVersion> matching = tool.getVersions().stream().filter(v -> v.getName().equals(version)).collect(Collectors.toList());
+                if (matching.size() != 1) {
                     response = Response.status(Status.NOT_FOUND).build();
                 } else {
-                    response = Response.ok(tool.getVersions().get(0)).build();
+                    response = Response.ok(matching.get(0)).build();
                 }
             } else {
                 if (returnJustVersions) {
@@ -271,146 +273,97 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
     @Override
     public Response toolsGet(String id, String alias, String registry, String organization, String name, String toolname, String description,
         String author, Boolean checker, String offset, Integer limit, SecurityContext securityContext, ContainerRequestContext value, Optional<User> user) {
-        final List<Entry> all = new ArrayList<>();
-
+        limit = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        // an offset that is not a number is a cursor from the next_page link of the previous page
+        final PageCursor cursor = PageCursor.isCursor(offset) ? PageCursor.decode(offset, CURSOR_SORT) : null;
+        final int offsetInteger = offset == null || cursor != null ? 0 : Integer.parseInt(offset);
+        final GA4GHToolFilter filter = new GA4GHToolFilter(registry, organization, name, toolname, description, author, checker);
+
+        List<Entry> page = new ArrayList<>();
+        long total = 0;
         // short circuit id and alias filters, these are a bit weird because they have a max of one result
-        if (id != null) {
-            ParsedRegistryID parsedID = new ParsedRegistryID(id);
-            Entry entry = getEntry(parsedID, user);
-            all.add(entry);
-        } else if (alias != null) {
-            all.add(toolDAO.getGenericEntryByAlias(alias));
-        } else {
-            all.addAll(toolDAO.findAllPublished());
-            all.addAll(workflowDAO.findAllPublished());
-            all.sort(Comparator.comparing(Entry::getGitUrl));
-        }
-
-        List<io.swagger.model.Tool> results = new ArrayList<>();
-        for (Entry c : all) {
-            // filters just for tools
-            if (c instanceof Tool) {
-                Tool tool = (Tool)c;
-                // check each criteria. This sucks. Can we do this better with reflection? Or should we pre-convert?
-                if (registry != null && tool.getRegistry() != null) {
-                    if (!tool.getRegistry().contains(registry)) {
-                        continue;
-                    }
-                }
-                if (organization != null && tool.getNamespace() != null) {
-                    if (!tool.getNamespace().contains(organization)) {
-                        continue;
-                    }
-                }
-                if (name != null && tool.getName() != null) {
-                    if (!tool.getName().contains(name)) {
-                        continue;
-                    }
-                }
-                if (toolname != null && tool.getToolname() != null) {
-                    if (!tool.getToolname().contains(toolname)) {
-                        continue;
-                    }
-                }
-                if (checker != null && checker) {
-                    // tools are never checker workflows
-                    continue;
-                }
-            }
-            // filters just for tools
-            if (c instanceof Workflow) {
-                Workflow workflow = (Workflow)c;
-                // check each criteria. This sucks. Can we do this better with reflection? Or should we pre-convert?
-                if (registry != null && workflow.getSourceControl() != null) {
-                    if (!workflow.getSourceControl().toString().contains(registry)) {
-                        continue;
-                    }
-                }
-                if (organization != null && workflow.getOrganization() != null) {
-                    if (!workflow.getOrganization().contains(organization)) {
-                        continue;
-                    }
-                }
-                if (name != null && workflow.getRepository() != null) {
-                    if (!workflow.getRepository().contains(name)) {
-                        continue;
-                    }
-                }
-                if (toolname != null && workflow.getWorkflowName() != null) {
-                    if (!workflow.getWorkflowName().contains(toolname)) {
-                        continue;
-                    }
-                }
-                if (checker != null) {
-                    if (workflow.isIsChecker() != checker) {
-                        continue;
-                    }
+        if (id != null || alias != null) {
+            Entry entry = id != null ? getEntry(new ParsedRegistryID(id), user) : toolDAO.getGenericEntryByAlias(alias);
+            if (entry != null && filter.matches(entry) && (cursor == null || !isNotAfter(entry, cursor))) {
+                total = 1;
+                if (offsetInteger == 0) {
+                    page.add(entry);
                 }
             }
-            // common filters between tools and workflows
-            if (description != null && c.getDescription() != null) {
-                if (!c.getDescription().contains(description)) {
-                    continue;
-                }
-            }
-            if (author != null && c.getAuthor() != null) {
-                if (!c.getAuthor().contains(author)) {
-                    continue;
-                }
-            }
-            // if passing, for each container that matches the criteria, convert to standardised format and return
-            io.swagger.model.Tool tool = ToolsImplCommon.convertEntryToTool(c, config);
-            if (tool != null) {
-                results.add(tool);
-            }
+        } else {
+            // one more than a page tells if there is a next page
+            page = toolDAO.findPublishedForGA4GH(filter, cursor, offsetInteger * limit, limit + 1);
+            // the last page is not linked when paging with a cursor, so there is no need to count
+            total = cursor == null ? toolDAO.countPublishedForGA4GH(filter) : 0;
         }
 
-        if (limit == null) {
-            limit = DEFAULT_PAGE_SIZE;
-        }
-        List<List<io.swagger.model.Tool>> pagedResults = Lists.partition(results, limit);
-        int offsetInteger = 0;
-        if (offset != null) {
-            offsetInteger = Integer.parseInt(offset);
-        }
-        if (offsetInteger >= pagedResults.size()) {
-            results = new ArrayList<>();
-        } else {
-            results = pagedResults.get(offsetInteger);
+        String nextCursor = null;
+        if (page.size() > limit) {
+            page = page.subList(0, limit);
+            Entry last = page.get(page.size() - 1);
+            nextCursor = new PageCursor(CURSOR_SORT, last.getId(), last.getGitUrl()).encode();
         }
+        // for each entry of the page, convert to standardised format and return
+        List<io.swagger.model.Tool> results = page.stream().map(entry -> GA4GHToolCache.get(entry, config))
+            .filter(Objects::nonNull).collect(Collectors.toList());
         final Response.ResponseBuilder responseBuilder = Response.ok(results);
         responseBuilder.header("current_offset", offset);
         responseBuilder.header("current_limit", limit);
         responseBuilder.header("self_link", value.getUriInfo().getRequestUri().toString());
         // construct links to other pages
-        try {
-            List<String> filters = new ArrayList<>();
-            handleParameter(id, "id", filters);
-            handleParameter(organization, "organization", filters);
-            handleParameter(name, "name", filters);
-            handleParameter(toolname, "toolname", filters);
-            handleParameter(description, "description", filters);
-            handleParameter(author, "author", filters);
-            handleParameter(registry, "registry", filters);
-            handleParameter(limit.toString(), "limit", filters);
-
-            int port = config.getExternalConfig().getPort() == null ? -1 : Integer.parseInt(config.getExternalConfig().getPort());
-
-            if (offsetInteger + 1 < pagedResults.size()) {
-                URI nextPageURI = new URI(config.getExternalConfig().getScheme(), null, config.getExternalConfig().getHostname(), port,
-                    DockstoreWebserviceApplication.GA4GH_API_PATH + "/tools",
-                    Joiner.on('&').join(filters) + "&offset=" + (offsetInteger + 1), null);
-                responseBuilder.header("next_page", nextPageURI.toURL().toString());
+        List<String> filters = new ArrayList<>();
+        handleParameter(id, "id", filters);
+        handleParameter(organization, "organization", filters);
+        handleParameter(name, "name", filters);
+        handleParameter(toolname, "toolname", filters);
+        handleParameter(description, "description", filters);
+        handleParameter(author, "author", filters);
+        handleParameter(registry, "registry", filters);
+        handleParameter(limit.toString(), "limit", filters);
+        if (cursor != null) {
+            // the last page is not known without reading every entry, which is what a cursor avoids
+            addPageLinks(responseBuilder, filters, nextCursor, null);
+        } else {
+            if (nextCursor != null) {
+                // lets clients switch to a cursor, which is faster than a numeric offset for pages deep in the listing
+                responseBuilder.header("next_page_cursor", nextCursor);
             }
-            URI lastPageURI = new URI(config.getExternalConfig().getScheme(), null, config.getExternalConfig().getHostname(), port,
-                DockstoreWebserviceApplication.GA4GH_API_PATH + "/tools",
-                Joiner.on('&').join(filters) + "&offset=" + (pagedResults.size() - 1), null);
-            responseBuilder.header("last_page", lastPageURI.toURL().toString());
+            long pages = (total + limit - 1) / limit;
+            addPageLinks(responseBuilder, filters, nextCursor != null ? String.valueOf(offsetInteger + 1) : null, String.valueOf(pages - 1));
+        }
+        return responseBuilder.build();
+    }
 
+    /**
+     * @param nextOffset the offset of the next page, null if there is none
+     * @param lastOffset the offset of the last page, null if it is not known
+     */
+    private void addPageLinks(Response.ResponseBuilder responseBuilder, List<String> filters, String nextOffset, String lastOffset) {
+        try {
+            if (nextOffset != null) {
+                responseBuilder.header("next_page", getToolsPageLink(filters, nextOffset));
+            }
+            if (lastOffset != null) {
+                responseBuilder.header("last_page", getToolsPageLink(filters, lastOffset));
+            }
         } catch (URISyntaxException | MalformedURLException e) {
             throw new CustomWebApplicationException("Could not construct page links", HttpStatus.SC_BAD_REQUEST);
         }
-        return responseBuilder.build();
+    }
+
+    private String getToolsPageLink(List<String> filters, String pageOffset) throws URISyntaxException, MalformedURLException {
+        int port = config.getExternalConfig().getPort() == null ? -1 : Integer.parseInt(config.getExternalConfig().getPort());
+        URI pageURI = new URI(config.getExternalConfig().getScheme(), null, config.getExternalConfig().getHostname(), port,
+            DockstoreWebserviceApplication.GA4GH_API_PATH + "/tools", Joiner.on('&').join(filters) + "&offset=" + pageOffset, null);
+        return pageURI.toURL().toString();
+    }
+
+    /**
+     * @return true if the entry is at or before the cursor in the order of toolsGet, by git URL then id
+     */
+    private static boolean isNotAfter(Entry entry, PageCursor cursor) {
+        int compared = entry.getGitUrl().compareTo((String)cursor.getKey(String.class));
+        return compared < 0 || compared == 0 && entry.getId() <= cursor.getId();
     }
 
     private void handleParameter(String parameter, String queryName, List<String> filters) {
@@ -458,7 +411,7 @@ public class ToolsApiServiceImpl extends ToolsApiService implements Authenticate
             return Response.status(status).build();
         }
 
-        final io.swagger.model.Tool convertedTool = ToolsImplCommon.convertEntryToTool(entry, config);
+        final io.swagger.model.Tool convertedTool = GA4GHToolCache.get(entry, config);
 
         String finalVersionId = versionId;
         if (convertedTool == null || convertedTool.getVersions() == null) {
@@ -66,6 +66,8 @@ public class ToolV1 {
             // looks like BeanUtils has issues due to https://issues.apache.org/jira/browse/BEANUTILS-321 and https://github.com/swagger-api/swagger-codegen/issues/7764
             this.verified = tool.isVerified().booleanValue();
             this.signed = tool.isSigned().booleanValue();
+            // BeanUtils copies lists by reference, do not share them with the (cached) Tool
+            this.contains = new ArrayList<>(tool.getContains());
 
             // convert versions now
             versions = new ArrayList<>();
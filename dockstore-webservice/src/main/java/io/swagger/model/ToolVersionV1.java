@@ -58,9 +58,9 @@ public class ToolVersionV1  {
             this.dockerfile = toolVersion.isContainerfile();
             this.verified = toolVersion.isVerified();
             // descriptor type seems to have issues, maybe because nextflow didn't exist
-            List<DescriptorType> newTypes = toolVersion.getDescriptorType();
-            descriptorType.clear();
-            for(DescriptorType type : newTypes) {
+            // BeanUtils copied the list of the (cached) ToolVersion by reference, so build a list of our own rather than clearing it
+            descriptorType = new ArrayList<>();
+            for (DescriptorType type : toolVersion.getDescriptorType()) {
                 if (type == DescriptorType.CWL) {
                     descriptorType.add(DescriptorTypeEnum.CWL);
                 }
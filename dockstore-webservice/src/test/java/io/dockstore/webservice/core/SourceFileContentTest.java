@@ -0,0 +1,60 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SourceFileContentTest {
+    private static final String CWL = Strings.repeat("cwlVersion: v1.0\nclass: CommandLineTool\n", 200);
+
+    @Test
+    public void uncompressedByDefault() {
+        SourceFileContent content = SourceFileContent.of(CWL);
+        Assert.assertArrayEquals(CWL.getBytes(StandardCharsets.UTF_8), content.getStored());
+        Assert.assertEquals(CWL, SourceFileContent.fromStored(content.getStored()).get());
+    }
+
+    @Test
+    public void compressedRoundTrip() {
+        byte[] stored = SourceFileContent.compressed(CWL).getStored();
+        Assert.assertTrue(stored.length < CWL.length());
+        Assert.assertEquals(CWL, SourceFileContent.fromStored(stored).get());
+        // the header holds the hash of the content itself
+        Assert.assertArrayEquals(Hashing.sha256().hashString(CWL, StandardCharsets.UTF_8).asBytes(), Arrays.copyOfRange(stored, 2, 34));
+        Assert.assertEquals(SourceFileContent.compressed(CWL), SourceFileContent.fromStored(stored));
+    }
+
+    @Test
+    public void compressedAndUncompressedContentHaveTheSameHash() {
+        String hash = Hashing.sha256().hashString(CWL, StandardCharsets.UTF_8).toString();
+        Assert.assertEquals(hash, SourceFileContent.of(CWL).getHash());
+        Assert.assertEquals(hash, SourceFileContent.compressed(CWL).getHash());
+        Assert.assertEquals(hash, SourceFileContent.fromStored(SourceFileContent.compressed(CWL).getStored()).getHash());
+    }
+
+    @Test
+    public void leadingZeroByteIsNotMistakenForHeader() {
+        String content = "\u0000abc";
+        Assert.assertEquals(content, SourceFileContent.fromStored(SourceFileContent.of(content).getStored()).get());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommitFileCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private void configure(String directory) {
+        DockstoreWebserviceConfiguration configuration = new DockstoreWebserviceConfiguration();
+        configuration.getCommitFileCacheConfig().setDirectory(directory);
+        CommitFileCache.setConfig(configuration);
+    }
+
+    @Test
+    public void readsOncePerCommit() {
+        configure(null);
+        AtomicInteger reads = new AtomicInteger();
+        Assert.assertEquals("a", CommitFileCache.get("org/repo", "sha1", "/Dockstore.cwl", () -> {
+            reads.incrementAndGet();
+            return "a";
+        }));
+        Assert.assertEquals("a", CommitFileCache.get("org/repo", "sha1", "/Dockstore.cwl", () -> {
+            reads.incrementAndGet();
+            return "b";
+        }));
+        Assert.assertEquals(1, reads.get());
+        // a different commit is read again
+        Assert.assertEquals("b", CommitFileCache.get("org/repo", "sha2", "/Dockstore.cwl", () -> "b"));
+        // missing files and files without a commit are not cached
+        Assert.assertNull(CommitFileCache.get("org/repo", "sha1", "/missing.cwl", () -> null));
+        Assert.assertNull(CommitFileCache.getIfPresent("org/repo", "sha1", "/missing.cwl"));
+        Assert.assertEquals("c", CommitFileCache.get("org/repo", null, "/Dockstore.cwl", () -> "c"));
+        Assert.assertNull(CommitFileCache.getIfPresent("org/repo", null, "/Dockstore.cwl"));
+    }
+
+    @Test
+    public void survivesRestartOnDisk() throws IOException {
+        String directory = temporaryFolder.newFolder().getAbsolutePath();
+        configure(directory);
+        CommitFileCache.get("org/repo", "sha1", "/Dockstore.wdl", () -> "workflow");
+        // configuring again starts with an empty memory cache
+        configure(directory);
+        Assert.assertEquals("workflow", CommitFileCache.getIfPresent("org/repo", "sha1", "/Dockstore.wdl"));
+    }
+}
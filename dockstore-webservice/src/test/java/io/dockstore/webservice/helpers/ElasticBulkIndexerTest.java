@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElasticBulkIndexerTest {
+
+    @Test
+    public void failedItemsAreNotCountedAsIndexed() {
+        // no retries, so nothing is sent again and the indexer does not need a client
+        ElasticBulkIndexer indexer = new ElasticBulkIndexer(null, "entry_1", 10, 1, 0, 0, 3);
+        List<ElasticBulkIndexer.BulkItem> items = Arrays.asList(new ElasticBulkIndexer.BulkItem("tool 1", ""),
+            new ElasticBulkIndexer.BulkItem("tool 2", ""), new ElasticBulkIndexer.BulkItem("workflow 3", ""));
+        indexer.handleResponse(items, "{\"took\":3,\"errors\":true,\"items\":["
+            + "{\"index\":{\"_type\":\"tool\",\"_id\":\"1\",\"status\":201}},"
+            + "{\"index\":{\"_type\":\"tool\",\"_id\":\"2\",\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\"}}},"
+            + "{\"index\":{\"_type\":\"workflow\",\"_id\":\"3\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}");
+        Assert.assertEquals(1, indexer.getIndexed());
+        try {
+            indexer.finish();
+            Assert.fail("an index with failed entries must not be used");
+        } catch (CustomWebApplicationException e) {
+            Assert.assertEquals(1, indexer.getIndexed());
+        }
+    }
+
+    @Test
+    public void responsesWithoutErrorsIndexEverything() {
+        ElasticBulkIndexer indexer = new ElasticBulkIndexer(null, "entry_1", 10, 1, 0, 0, 2);
+        indexer.handleResponse(Arrays.asList(new ElasticBulkIndexer.BulkItem("tool 1", ""), new ElasticBulkIndexer.BulkItem("tool 2", "")),
+            "{\"took\":3,\"errors\":false,\"items\":[{\"index\":{\"status\":201}},{\"index\":{\"status\":201}}]}");
+        Assert.assertEquals(2, indexer.finish());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.List;
+
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElasticIndexQueueTest {
+
+    private ElasticIndexQueue createQueue(int batchSize) {
+        DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig = new DockstoreWebserviceConfiguration().getEsConfiguration();
+        esConfig.setIndexBatchSize(batchSize);
+        // keep the background flush from running during the test, only the bookkeeping is exercised here
+        esConfig.setIndexFlushIntervalMillis(Integer.MAX_VALUE);
+        ElasticIndexQueue queue = new ElasticIndexQueue(esConfig);
+        queue.start();
+        return queue;
+    }
+
+    @Test
+    public void coalescesEventsPerEntry() {
+        ElasticIndexQueue queue = createQueue(10);
+        queue.enqueue("tool", 1, ElasticMode.UPDATE, "{\"doc\":{}}");
+        queue.enqueue("tool", 1, ElasticMode.DELETE, null);
+        queue.enqueue("workflow", 1, ElasticMode.UPDATE, "{\"doc\":{}}");
+        Assert.assertEquals(2, queue.size());
+        List<ElasticIndexQueue.IndexEvent> batch = queue.drain();
+        Assert.assertEquals(2, batch.size());
+        Assert.assertEquals(ElasticMode.DELETE, batch.get(0).getCommand());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void bulkBody() {
+        ElasticIndexQueue queue = createQueue(10);
+        queue.enqueue("tool", 1, ElasticMode.UPDATE, "{\"doc\":{\"name\":\"foo\"},\"doc_as_upsert\":true}");
+        queue.enqueue("workflow", 2, ElasticMode.DELETE, null);
+        String body = queue.getBulkBody(queue.drain());
+        Assert.assertEquals("{\"update\":{\"_id\":\"1\",\"_type\":\"tool\"}}\n{\"doc\":{\"name\":\"foo\"},\"doc_as_upsert\":true}\n"
+                + "{\"delete\":{\"_id\":\"2\",\"_type\":\"workflow\"}}\n", body);
+    }
+
+    @Test
+    public void onlyTemporarilyRejectedItemsAreRetried() {
+        ElasticIndexQueue queue = createQueue(10);
+        queue.enqueue("tool", 1, ElasticMode.UPDATE, "{\"doc\":{}}");
+        queue.enqueue("tool", 2, ElasticMode.UPDATE, "{\"doc\":{}}");
+        queue.enqueue("workflow", 3, ElasticMode.DELETE, null);
+        queue.enqueue("workflow", 4, ElasticMode.UPDATE, "{\"doc\":{}}");
+        List<ElasticIndexQueue.IndexEvent> batch = queue.drain();
+        String response = "{\"took\":3,\"errors\":true,\"items\":["
+                + "{\"update\":{\"_index\":\"entry_1\",\"_type\":\"tool\",\"_id\":\"1\",\"status\":200}},"
+                + "{\"update\":{\"_index\":\"entry_1\",\"_type\":\"tool\",\"_id\":\"2\",\"status\":429,"
+                + "\"error\":{\"type\":\"es_rejected_execution_exception\"}}},"
+                + "{\"delete\":{\"_index\":\"entry_1\",\"_type\":\"workflow\",\"_id\":\"3\",\"status\":404,\"result\":\"not_found\"}},"
+                + "{\"update\":{\"_index\":\"entry_1\",\"_type\":\"workflow\",\"_id\":\"4\",\"status\":400,"
+                + "\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}";
+        List<ElasticIndexQueue.IndexEvent> retryable = queue.getRetryableFailures(batch, response);
+        Assert.assertEquals(1, retryable.size());
+        Assert.assertSame(batch.get(1), retryable.get(0));
+        Assert.assertTrue(queue.getRetryableFailures(batch, "{\"took\":3,\"errors\":false,\"items\":[]}").isEmpty());
+    }
+
+    @Test
+    public void changesGoToTheRebuiltIndexAsWell() {
+        ElasticIndexQueue queue = createQueue(10);
+        queue.startRebuild("entry_2");
+        queue.enqueue("tool", 1, ElasticMode.DELETE, null);
+        Assert.assertEquals("{\"delete\":{\"_id\":\"1\",\"_type\":\"tool\"}}\n{\"delete\":{\"_index\":\"entry_2\",\"_id\":\"1\",\"_type\":\"tool\"}}\n",
+                queue.getBulkBody(queue.drain()));
+        queue.endRebuild();
+        queue.enqueue("tool", 1, ElasticMode.DELETE, null);
+        Assert.assertEquals("{\"delete\":{\"_id\":\"1\",\"_type\":\"tool\"}}\n", queue.getBulkBody(queue.drain()));
+    }
+}
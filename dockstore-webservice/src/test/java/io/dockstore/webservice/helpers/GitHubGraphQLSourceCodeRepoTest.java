@@ -0,0 +1,160 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GHContent;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class GitHubGraphQLSourceCodeRepoTest {
+
+    private static final String FIRST_SHA = "1111111111111111111111111111111111111111";
+    private static final String SECOND_SHA = "2222222222222222222222222222222222222222";
+    private static final String FILE_MODE = "33188";
+
+    private final MockWebServer server = new MockWebServer();
+    private final GHRepository repository = Mockito.mock(GHRepository.class);
+    private GitHubGraphQLSourceCodeRepo repo;
+
+    @Before
+    public void setUp() throws IOException {
+        // files are cached for the whole JVM, so each test reads from a repository of its own
+        DockstoreWebserviceConfiguration configuration = new DockstoreWebserviceConfiguration();
+        CommitFileCache.setConfig(configuration);
+        server.start();
+        GitHub github = Mockito.mock(GitHub.class);
+        when(github.getRepository(anyString())).thenReturn(repository);
+        repo = new GitHubGraphQLSourceCodeRepo("user", github, "token", 2, server.url("/graphql"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static WorkflowVersion version(String reference, String sha) {
+        WorkflowVersion version = new WorkflowVersion();
+        version.setReference(reference);
+        version.setName(reference);
+        version.setCommitID(sha);
+        version.setWorkflowPath("/Dockstore.cwl");
+        return version;
+    }
+
+    private static JsonObject variables(RecordedRequest request) {
+        return new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject().getAsJsonObject("variables");
+    }
+
+    @Test
+    public void referencesArePaged() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"data\": {\"repository\": {\"refs\": {"
+            + "\"pageInfo\": {\"hasNextPage\": true, \"endCursor\": \"cursor1\"},"
+            + "\"nodes\": [{\"name\": \"master\", \"target\": {\"oid\": \"" + FIRST_SHA + "\", \"committedDate\": \"2018-06-01T12:00:00Z\"}}]}}}}"));
+        server.enqueue(new MockResponse().setBody("{\"data\": {\"repository\": {\"refs\": {"
+            + "\"pageInfo\": {\"hasNextPage\": false, \"endCursor\": \"cursor2\"},"
+            + "\"nodes\": [{\"name\": \"1.0\", \"target\": {\"oid\": \"tagobject\", \"target\": {\"oid\": \"" + SECOND_SHA + "\","
+            + " \"committedDate\": \"2018-07-01T12:00:00Z\"}}}]}}}}"));
+
+        List<Triple<String, Date, String>> references = repo.getReferences("org", "paged", "refs/heads/");
+        Assert.assertEquals(2, references.size());
+        Assert.assertEquals("master", references.get(0).getLeft());
+        Assert.assertEquals(FIRST_SHA, references.get(0).getRight());
+        // annotated tags are resolved to the commit they point at
+        Assert.assertEquals("1.0", references.get(1).getLeft());
+        Assert.assertEquals(SECOND_SHA, references.get(1).getRight());
+        Assert.assertEquals(Date.from(Instant.parse("2018-07-01T12:00:00Z")), references.get(1).getMiddle());
+
+        // the second page starts where the first ended
+        Assert.assertFalse(variables(server.takeRequest()).has("cursor"));
+        Assert.assertEquals("cursor1", variables(server.takeRequest()).get("cursor").getAsString());
+    }
+
+    @Test
+    public void filesOfABatchAreReadInOneQuery() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"data\": {\"repository\": {"
+            + "\"d0\": {\"text\": \"first\", \"isBinary\": false, \"isTruncated\": false},"
+            + "\"d0dir\": {\"entries\": [{\"name\": \"Dockstore.cwl\", \"mode\": " + FILE_MODE + "}]},"
+            + "\"t0\": {\"text\": \"{}\", \"isBinary\": false, \"isTruncated\": false},"
+            + "\"t0dir\": {\"entries\": [{\"name\": \"test.json\", \"mode\": " + FILE_MODE + "}]},"
+            + "\"d1\": {\"text\": \"second\", \"isBinary\": false, \"isTruncated\": false},"
+            + "\"d1dir\": {\"entries\": [{\"name\": \"Dockstore.cwl\", \"mode\": " + FILE_MODE + "}]},"
+            + "\"t1\": null, \"t1dir\": {\"entries\": []}}}}"));
+        Workflow workflow = new Workflow();
+        workflow.setDefaultTestParameterFilePath("/test.json");
+
+        List<Pair<String, String>> contents = repo.readVersionFiles("org", "batched", "org/batched", workflow,
+            Arrays.asList(version("master", FIRST_SHA), version("develop", SECOND_SHA)));
+        Assert.assertEquals(Arrays.asList(Pair.of("first", "{}"), Pair.of("second", null)), contents);
+
+        // every file is read at its commit, under an alias of its own, in a single query
+        Assert.assertEquals(1, server.getRequestCount());
+        String query = new JsonParser().parse(server.takeRequest().getBody().readUtf8()).getAsJsonObject().get("query").getAsString();
+        Assert.assertTrue(query.contains("d0: object(expression: \"" + FIRST_SHA + ":Dockstore.cwl\")"));
+        Assert.assertTrue(query.contains("t0: object(expression: \"" + FIRST_SHA + ":test.json\")"));
+        Assert.assertTrue(query.contains("d1: object(expression: \"" + SECOND_SHA + ":Dockstore.cwl\")"));
+        Assert.assertTrue(query.contains("t1: object(expression: \"" + SECOND_SHA + ":test.json\")"));
+        Mockito.verifyZeroInteractions(repository);
+
+        // read files are cached, so reading them again queries nothing
+        Assert.assertEquals(Collections.singletonList(Pair.of("first", "{}")),
+            repo.readVersionFiles("org", "batched", "org/batched", workflow, Collections.singletonList(version("master", FIRST_SHA))));
+        Assert.assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void failedQueriesFallBackToRest() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"errors\": [{\"message\": \"Something went wrong\"}], \"data\": null}"));
+        GHContent listed = Mockito.mock(GHContent.class);
+        when(listed.getPath()).thenReturn("Dockstore.cwl");
+        GHContent file = Mockito.mock(GHContent.class);
+        when(file.getContent()).thenReturn("from rest");
+        when(repository.getDirectoryContent("/", FIRST_SHA)).thenReturn(Collections.singletonList(listed));
+        when(repository.getFileContent("Dockstore.cwl", FIRST_SHA)).thenReturn(file);
+
+        List<Pair<String, String>> contents = repo.readVersionFiles("org", "fallback", "org/fallback", new Workflow(),
+            Collections.singletonList(version("master", FIRST_SHA)));
+        Assert.assertEquals(Collections.singletonList(Pair.of("from rest", null)), contents);
+        Assert.assertEquals(1, server.getRequestCount());
+        // read at the commit the GraphQL query was for
+        Mockito.verify(repository).getFileContent("Dockstore.cwl", FIRST_SHA);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.apache.http.HttpStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kohsuke.github.GHContent;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class GitHubSourceCodeRepoTest {
+
+    private static final String SHA = "0123456789abcdef0123456789abcdef01234567";
+
+    private static GHRateLimit rateLimit(int remaining) {
+        GHRateLimit rateLimit = new GHRateLimit();
+        rateLimit.remaining = remaining;
+        return rateLimit;
+    }
+
+    private static int threads(ExecutorService executor) {
+        try {
+            return ((ThreadPoolExecutor)executor).getMaximumPoolSize();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void fetchThreadsFollowTheRateLimit() {
+        GitHubSourceCodeRepo repo = new GitHubSourceCodeRepo("user", Mockito.mock(GitHub.class));
+        // unknown or nearly used up rate limits fetch serially, and there are never more than 8 requests at once
+        Assert.assertEquals(1, threads(repo.createFetchExecutor(null)));
+        Assert.assertEquals(1, threads(repo.createFetchExecutor(rateLimit(50))));
+        Assert.assertEquals(2, threads(repo.createFetchExecutor(rateLimit(250))));
+        Assert.assertEquals(8, threads(repo.createFetchExecutor(rateLimit(5000))));
+    }
+
+    @Test
+    public void fetchInParallelKeepsTheOrderOfItems() {
+        GitHubSourceCodeRepo repo = new GitHubSourceCodeRepo("user", Mockito.mock(GitHub.class));
+        ExecutorService executor = repo.createFetchExecutor(rateLimit(5000));
+        try {
+            // earlier items take longer, so they finish last
+            List<Integer> results = repo.fetchInParallel(executor, Arrays.asList(40, 30, 20, 10, 0), delay -> {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return delay;
+            });
+            Assert.assertEquals(Arrays.asList(40, 30, 20, 10, 0), results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedFetchesAreReportedAsUnavailable() {
+        GitHubSourceCodeRepo repo = new GitHubSourceCodeRepo("user", Mockito.mock(GitHub.class));
+        ExecutorService executor = repo.createFetchExecutor(null);
+        try {
+            repo.fetchInParallel(executor, Collections.singletonList("refs/heads/master"), ref -> {
+                throw new IllegalStateException("connection reset");
+            });
+            Assert.fail("the failure of a fetch should fail the whole fetch");
+        } catch (CustomWebApplicationException e) {
+            Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, e.getResponse().getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A commit is not a reference, so the file is read at the commit without looking for it among the references
+     */
+    @Test
+    public void filesAreReadAtACommit() throws IOException {
+        GHContent listed = Mockito.mock(GHContent.class);
+        when(listed.getPath()).thenReturn("Dockstore.cwl");
+        GHContent file = Mockito.mock(GHContent.class);
+        when(file.getContent()).thenReturn("cwlVersion: v1.0");
+        GHRepository repository = Mockito.mock(GHRepository.class);
+        when(repository.getDirectoryContent("/", SHA)).thenReturn(Collections.singletonList(listed));
+        when(repository.getFileContent("Dockstore.cwl", SHA)).thenReturn(file);
+        GitHub github = Mockito.mock(GitHub.class);
+        when(github.getRepository(anyString())).thenReturn(repository);
+
+        GitHubSourceCodeRepo repo = new GitHubSourceCodeRepo("user", github);
+        Assert.assertEquals("cwlVersion: v1.0", repo.readFile("org/repo", "/Dockstore.cwl", SHA));
+        Mockito.verify(repository, Mockito.never()).getRefs();
+        Mockito.verify(repository).getFileContent("Dockstore.cwl", SHA);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PageCursorTest {
+
+    @Test
+    public void roundTrip() {
+        Timestamp updated = new Timestamp(1530000000123L);
+        updated.setNanos(123456789);
+        String token = new PageCursor("dbUpdateDate desc", 42, PageCursor.toKey(updated)).encode();
+        Assert.assertTrue(PageCursor.isCursor(token));
+        PageCursor cursor = PageCursor.decode(token, "dbUpdateDate desc");
+        Assert.assertEquals(42, cursor.getId());
+        Assert.assertEquals(updated, cursor.getKey(Date.class));
+
+        // keys may contain anything, including the separator
+        cursor = PageCursor.decode(new PageCursor("gitUrl", 7, "git@github.com:a/b\nc").encode(), "gitUrl");
+        Assert.assertEquals("git@github.com:a/b\nc", cursor.getKey(String.class));
+    }
+
+    @Test
+    public void numericOffsetsAreNotCursors() {
+        Assert.assertFalse(PageCursor.isCursor(null));
+        Assert.assertFalse(PageCursor.isCursor(""));
+        Assert.assertFalse(PageCursor.isCursor("100"));
+    }
+
+    @Test(expected = CustomWebApplicationException.class)
+    public void cursorForAnotherSortIsRejected() {
+        PageCursor.decode(new PageCursor("stars desc", 1, "3").encode(), "stars asc");
+    }
+
+    @Test(expected = CustomWebApplicationException.class)
+    public void cursorWithoutKeyIsRejected() {
+        PageCursor.decode(new PageCursor("gitUrl", 1, null).encode(), "gitUrl");
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.languages;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import io.dockstore.webservice.jdbi.ToolDAO;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class DockerImageUrlsTest {
+
+    /**
+     * The URLs are the ones looking up each image on its own with ToolDAO.findAllByPath made.
+     * URLs are cached for the whole JVM, so each test uses images of its own.
+     */
+    @Test
+    public void urlsAreTheSameAsLookingUpEachImage() {
+        ToolDAO toolDAO = Mockito.mock(ToolDAO.class);
+        when(toolDAO.findPublishedPaths(anyCollection())).thenReturn(new HashSet<>(Collections.singletonList("quay.io/published/tool")));
+
+        List<String> images = Arrays.asList("quay.io/published/tool:1.0", "quay.io/unpublished/tool", "pancancer/pcawg-oxog-tools:1.0",
+            "debian:8", "");
+        Map<String, String> urls = DockerImageUrls.getURLs(images, toolDAO);
+        Assert.assertEquals("https://www.dockstore.org/containers/quay.io/published/tool", urls.get("quay.io/published/tool:1.0"));
+        Assert.assertEquals("https://quay.io/repository/unpublished/tool", urls.get("quay.io/unpublished/tool"));
+        Assert.assertEquals("https://hub.docker.com/r/pancancer/pcawg-oxog-tools", urls.get("pancancer/pcawg-oxog-tools:1.0"));
+        Assert.assertEquals("https://hub.docker.com/_/debian", urls.get("debian:8"));
+        Assert.assertNull(urls.get(""));
+        Assert.assertEquals(4, urls.size());
+
+        // only images that can be on Dockstore are looked up, all in one go
+        Mockito.verify(toolDAO).findPublishedPaths(new HashSet<>(Arrays.asList("quay.io/published/tool", "quay.io/unpublished/tool",
+            "registry.hub.docker.com/pancancer/pcawg-oxog-tools")));
+        Mockito.verifyNoMoreInteractions(toolDAO);
+    }
+
+    /**
+     * The query matches every combination of the registries, namespaces and names of the paths, which may find published tools
+     * whose paths were not asked for
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void onlyRequestedPathsArePublished() {
+        Query<Object[]> query = Mockito.mock(Query.class, Answers.RETURNS_SELF);
+        when(query.list()).thenReturn(Arrays.asList(new Object[] { "quay.io", "first", "other" }, new Object[] { "quay.io", "second", "tool" }));
+        Session session = Mockito.mock(Session.class);
+        when(session.createQuery(anyString(), eq(Object[].class))).thenReturn(query);
+        SessionFactory sessionFactory = Mockito.mock(SessionFactory.class);
+        when(sessionFactory.getCurrentSession()).thenReturn(session);
+
+        ToolDAO toolDAO = new ToolDAO(sessionFactory);
+        Assert.assertEquals(Collections.singleton("quay.io/second/tool"),
+            toolDAO.findPublishedPaths(Arrays.asList("quay.io/first/tool", "quay.io/second/tool", "not a path")));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.languages;
+
+import java.util.Map;
+
+import com.google.common.collect.Sets;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.helpers.SourceCodeRepoInterface;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class ImportResolverTest {
+
+    @Test
+    public void eachFileIsReadOnceEvenInCycles() {
+        SourceCodeRepoInterface repo = Mockito.mock(SourceCodeRepoInterface.class);
+        Mockito.when(repo.readGitRepositoryFile(anyString(), any(), any(), anyString())).thenReturn(null);
+        Mockito.when(repo.readGitRepositoryFile(eq("org/repo"), any(), any(), eq("tools/a.cwl"))).thenReturn("steps:\n  - run: b.cwl\n");
+        Mockito.when(repo.readGitRepositoryFile(eq("org/repo"), any(), any(), eq("tools/b.cwl"))).thenReturn("steps:\n  - run: ../tools/a.cwl\n");
+
+        String main = "steps:\n  - run: tools/a.cwl\n  - run: {import: other/../tools/a.cwl}\n  - run: missing.cwl\n";
+        Map<String, SourceFile> imports = new CWLHandler().processImports("org/repo", main, new WorkflowVersion(), repo);
+
+        // both paths to a.cwl are kept, since descriptors refer to files by the path they imported them with
+        Assert.assertEquals(Sets.newHashSet("tools/a.cwl", "other/../tools/a.cwl", "tools/b.cwl", "tools/../tools/a.cwl"), imports.keySet());
+        Assert.assertEquals("steps:\n  - run: b.cwl\n", imports.get("other/../tools/a.cwl").getContent());
+        Mockito.verify(repo, Mockito.times(1)).readGitRepositoryFile(eq("org/repo"), any(), any(), eq("tools/a.cwl"));
+        Mockito.verify(repo, Mockito.never()).readGitRepositoryFile(eq("org/repo"), any(), any(), eq("other/../tools/a.cwl"));
+        Mockito.verify(repo, Mockito.times(1)).readGitRepositoryFile(eq("org/repo"), any(), any(), eq("tools/b.cwl"));
+        Mockito.verify(repo, Mockito.times(1)).readGitRepositoryFile(eq("org/repo"), any(), any(), eq("missing.cwl"));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.languages;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import io.dockstore.webservice.core.Workflow;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NextFlowHandlerTest {
+
+    @Test
+    public void simpleManifestIsReadWithoutCompiling() {
+        String config = "params.reads = 'data/*.fq'\nmanifest {\n  description = 'A pipeline' // what it does\n  mainScript = \"pipeline.nf\"\n}\n"
+            + "manifest.author = 'someone'\nincludeConfig 'base.config'\n";
+        Assert.assertEquals("A pipeline", NextFlowHandler.parseSimpleManifest(config).get("description"));
+        Assert.assertEquals("pipeline.nf", NextFlowHandler.parseSimpleManifest(config).get("mainScript"));
+        Assert.assertEquals("someone", NextFlowHandler.parseSimpleManifest(config).get("author"));
+
+        // anything but plain strings in a top level manifest is left to the config parser
+        Assert.assertNull(NextFlowHandler.parseSimpleManifest("manifest {\n  description = \"about ${params.x}\"\n}\n"));
+        Assert.assertNull(NextFlowHandler.parseSimpleManifest("profiles {\nmanifest {\n  description = 'a'\n}\n}\n"));
+        Assert.assertNull(NextFlowHandler.parseSimpleManifest("manifest.description = params.description\n"));
+    }
+
+    @Test
+    public void manifestThatNeedsCompilingIsStillRead() {
+        Workflow workflow = new Workflow();
+        String config = "def who = 'someone'\nmanifest {\n  description = 'A pipeline'\n  author = \"${who}\"\n}\n";
+        new NextFlowHandler().parseWorkflowContent(workflow, config, new HashSet<>());
+        Assert.assertEquals("A pipeline", workflow.getDescription());
+        Assert.assertEquals("someone", workflow.getAuthor());
+    }
+
+    @Test
+    public void configWithFunctionsIsParsed() {
+        Workflow workflow = new Workflow();
+        String config = "def check_max(obj) {\n  return obj\n}\nmanifest {\n  description = 'A pipeline'\n  author = check_max('someone')\n}\n";
+        new NextFlowHandler().parseWorkflowContent(workflow, config, new HashSet<>());
+        Assert.assertEquals("A pipeline", workflow.getDescription());
+        Assert.assertEquals("someone", workflow.getAuthor());
+    }
+
+    @Test
+    public void missingMainScriptHasNoContent() {
+        String config = "manifest.mainScript = 'pipeline.nf'\n";
+        Assert.assertNull(new NextFlowHandler().getContent("nextflow.config", config, Collections.emptyMap(),
+            LanguageHandlerInterface.Type.TOOLS, null));
+    }
+}
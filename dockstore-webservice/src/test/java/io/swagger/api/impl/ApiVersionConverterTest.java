@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2018 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.swagger.api.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.ws.rs.core.Response;
+
+import io.swagger.model.DescriptorType;
+import io.swagger.model.Tool;
+import io.swagger.model.ToolV1;
+import io.swagger.model.ToolVersion;
+import io.swagger.model.ToolVersionV1;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ApiVersionConverterTest {
+
+    private static Tool tool() {
+        ToolVersion toolVersion = new ToolVersion();
+        toolVersion.setName("master");
+        toolVersion.setDescriptorType(new ArrayList<>(Arrays.asList(DescriptorType.CWL, DescriptorType.NFL)));
+        toolVersion.setContainerfile(false);
+        toolVersion.setVerified(false);
+        Tool tool = new Tool();
+        tool.setId("#workflow/github.com/org/repo");
+        tool.setContains(new ArrayList<>(Collections.singletonList("#workflow/github.com/org/other")));
+        tool.setVerified(false);
+        tool.setSigned(false);
+        tool.setVersions(new ArrayList<>(Collections.singletonList(toolVersion)));
+        return tool;
+    }
+
+    /**
+     * GA4GH representations are cached and shared between requests, so converting them to V1 must leave them untouched
+     */
+    @Test
+    public void convertingToV1LeavesV2Untouched() {
+        Tool tool = tool();
+
+        ToolV1 toolV1 = (ToolV1)ApiVersionConverter.convertToVersion(Response.ok(tool).build()).getEntity();
+        assertEquals(Collections.singletonList(ToolVersionV1.DescriptorTypeEnum.CWL), toolV1.getVersions().get(0).getDescriptorType());
+        toolV1.getContains().clear();
+
+        // the V2 representation still has all of its descriptor types, and converts the same way again
+        assertEquals(Arrays.asList(DescriptorType.CWL, DescriptorType.NFL), tool.getVersions().get(0).getDescriptorType());
+        assertEquals(Collections.singletonList("#workflow/github.com/org/other"), tool.getContains());
+        ToolVersionV1 versionV1 = (ToolVersionV1)ApiVersionConverter.convertToVersion(Response.ok(tool.getVersions().get(0)).build())
+            .getEntity();
+        assertEquals(Collections.singletonList(ToolVersionV1.DescriptorTypeEnum.CWL), versionV1.getDescriptorType());
+        assertEquals(Arrays.asList(DescriptorType.CWL, DescriptorType.NFL), tool.getVersions().get(0).getDescriptorType());
+    }
+}